@@ -0,0 +1,36 @@
+#!/bin/bash
+#
+# JMH benchmarks for the game hot paths (see benchmarks/com/chanceit).
+#
+#   ./bench.sh                      run every benchmark
+#   ./bench.sh GamePlayWorker       run the benchmarks matching a regex
+#   ./bench.sh -h                   any other JMH options are passed through
+#
+# the JMH jars are fetched from Maven Central into benchmarks/lib the first time.
+
+JMH_VERSION=1.37
+LIB=benchmarks/lib
+CLASSES=benchmarks/classes
+MAVEN=https://repo1.maven.org/maven2
+
+fetch() {
+  if [ ! -f "$LIB/$2-$3.jar" ]; then
+    echo "fetching $2-$3.jar..."
+    curl -sSfL -o "$LIB/$2-$3.jar" "$MAVEN/$1/$2/$3/$2-$3.jar" || exit 1
+  fi
+}
+
+mkdir -p $LIB
+fetch org/openjdk/jmh jmh-core $JMH_VERSION
+fetch org/openjdk/jmh jmh-generator-annprocess $JMH_VERSION
+fetch net/sf/jopt-simple jopt-simple 5.0.4
+fetch org/apache/commons commons-math3 3.6.1
+
+echo "compiling..."
+rm -rf $CLASSES
+mkdir -p $CLASSES
+javac -encoding UTF-8 -cp "$LIB/*" -d $CLASSES com/chanceit/*.java com/chanceit/engine/*.java com/chanceit/journal/*.java com/chanceit/metrics/*.java com/chanceit/timer/*.java benchmarks/com/chanceit/*.java || exit 1
+
+echo "running..."
+# -prof gc reports gc.alloc.rate.norm: bytes allocated per operation
+java -cp "$CLASSES:$LIB/*" org.openjdk.jmh.Main -prof gc "$@"
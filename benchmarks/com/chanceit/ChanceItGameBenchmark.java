@@ -0,0 +1,56 @@
+package com.chanceit;
+
+import com.chanceit.engine.ChanceItGame;
+import com.chanceit.engine.DieSource;
+import com.chanceit.engine.GameListener;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * The rules engine on its own: whole turns played in-process by a "roll until the turn is worth 20" player.
+ * gc.alloc.rate.norm should be 0 B/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChanceItGameBenchmark {
+
+  ChanceItGame game ;
+
+  @Setup
+  public void setUp() {
+    final SplittableRandom random = new SplittableRandom(42) ;
+    game = new ChanceItGame(20, new DieSource() {
+      public int roll() { return random.nextInt(6) + 1 ; }
+    }, GameListener.NONE) ;
+  }
+
+  @Benchmark
+  public int turn() {
+    if (game.isOver()) {
+      game.reset() ;
+    }
+    game.startTurn() ;
+    while (game.getState() == ChanceItGame.AWAITING_DECISION) {
+      if (game.getTurnTotal() < 20) {
+        game.chanceIt() ;
+      } else {
+        game.bank() ;
+      }
+    }
+    return game.getScore(0) + game.getScore(1) ;
+  }
+}
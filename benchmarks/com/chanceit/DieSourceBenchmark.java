@@ -0,0 +1,73 @@
+package com.chanceit;
+
+import com.chanceit.engine.BufferedDieSource;
+import com.chanceit.engine.DieSource;
+import com.chanceit.engine.RandomDieSource;
+import com.chanceit.engine.SplittableRandomDieSource;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Rolls per second from each DieSource, 1000 rolls per call.
+ *
+ *   random      : java.util.Random (a CAS on the shared seed per call), two calls per roll of the dice
+ *   splittable  : SplittableRandom.nextInt(6) per die
+ *   buffered    : BufferedDieSource, what the server and the simulator use
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DieSourceBenchmark {
+
+  DieSource random ;
+  DieSource splittable ;
+  DieSource buffered ;
+
+  @Setup
+  public void setUp() {
+    random = new RandomDieSource(new Random(42)) ;
+    splittable = new SplittableRandomDieSource(new SplittableRandom(42)) ;
+    buffered = new BufferedDieSource(42) ;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(1000)
+  public int random() {
+    return rolls(random) ;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(1000)
+  public int splittable() {
+    return rolls(splittable) ;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(1000)
+  public int buffered() {
+    return rolls(buffered) ;
+  }
+
+  private static int rolls(DieSource dice) {
+    int sum = 0 ;
+    for (int i = 0; i < 1000; i++) {
+      sum += dice.roll() ;
+    }
+    return sum ;
+  }
+}
@@ -0,0 +1,65 @@
+package com.chanceit;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * The logGameOutcome path: GamePlayWorkers handing outcomes to a running GameLogWriter, which writes them to a
+ * temporary file.  Run with 1 and with 4 threads to see the cost with and without contention on the ring.
+ *
+ * dropped outcomes are printed at the end of each trial; if there are any, the writer could not keep up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GameLogWriterBenchmark {
+
+  GameLogWriter gameLog ;
+  GamePlayWorker worker ;
+  File file ;
+
+  @Setup
+  public void setUp() throws IOException {
+    file = File.createTempFile("gameLog", ".csv") ;
+    gameLog = new GameLogWriter(file.getPath(), new Properties()) ;
+    gameLog.start() ;
+    worker = new GamePlayWorker(new StubConnection("bench1"), new StubConnection("bench2"), new Properties(), gameLog, new TurnPolicies(new Properties()), null, null, null) ;
+    worker.seatPlayers() ;
+    worker.newGame(worker.ap1) ;
+  }
+
+  @TearDown
+  public void tearDown() {
+    gameLog.close() ;
+    file.delete() ;
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void logGameOutcome() {
+    worker.logGameOutcome(worker.ap1, worker.ap2, "FAIR_PLAY") ;
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void logGameOutcomeContended() {
+    worker.logGameOutcome(worker.ap1, worker.ap2, "FAIR_PLAY") ;
+  }
+}
@@ -0,0 +1,103 @@
+package com.chanceit;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import com.chanceit.engine.Strategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * The GamePlayWorker hot paths, with StubConnections in place of sockets and roll_time=0.
+ *
+ *   takeTurn        : one whole turn; the player chances it twice then stops (or busts on the way)
+ *   policyTurn      : one whole turn played by a stop:20 turn policy, with no prompts (see TurnPolicies)
+ *   displayStats    : encoding and sending the per-roll stats block
+ *   result          : encoding and sending the end of game result and score lines
+ *   getWhoGoesFirst : the opening roll-off
+ *   seatPlayers     : setting up a freshly paired game, as GamePlayWorker.run() does before playGame()
+ *
+ * Run with ./bench.sh (which adds -prof gc for bytes allocated per operation).  takeTurn, displayStats and result should all
+ * be 0 B/op, and so should policyTurn.
+ *
+ * @Param binary=true runs the same paths with the player speaking the binary protocol.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GamePlayWorkerBenchmark {
+
+  @Param({"false", "true"})
+  boolean binary ;
+
+  GamePlayWorker worker ;
+  GamePlayWorker.ActivePlayer player ;
+  StubConnection connection ;
+  Strategy policy ;
+
+  @Setup
+  public void setUp() {
+    Properties prop = new Properties() ;
+    prop.setProperty("roll_time", "0") ;
+    prop.setProperty("number_of_turns", "20") ;
+
+    connection = new StubConnection("bench1", "Y", "Y", "n") ;
+    connection.binary = binary ;
+    worker = new GamePlayWorker(connection, new StubConnection("bench2", "n"), prop, null, new TurnPolicies(prop), null, null, null) ;
+    worker.seatPlayers() ;
+    player = worker.ap1 ;
+    worker.newGame(player) ;
+    policy = new TurnPolicies(prop).parse("stop:20") ;
+  }
+
+  @Benchmark
+  public int takeTurn() throws Exception {
+    worker.game.reset() ;  // player is always in seat 0 and takes the first turn
+    player.takeTurn() ;
+    return worker.game.getScore(0) ;
+  }
+
+  @Benchmark
+  public int policyTurn() throws Exception {
+    worker.game.reset() ;
+    player.turnPolicy = policy ;  // ends with the turn
+    player.takeTurn() ;
+    return worker.game.getScore(0) ;
+  }
+
+  @Benchmark
+  public long displayStats() {
+    player.displayStats(3, 2, 41, 37, 18, 7, 3, 4) ;
+    player.send() ;
+    return connection.charsWritten ;
+  }
+
+  @Benchmark
+  public long result() {
+    player.result(MessageEncoder.WIN, MessageEncoder.FAIR_PLAY, player) ;
+    player.send() ;
+    return connection.charsWritten ;
+  }
+
+  @Benchmark
+  public Object getWhoGoesFirst() {
+    return worker.getWhoGoesFirst() ;
+  }
+
+  @Benchmark
+  public Object seatPlayers() {
+    worker.seatPlayers() ;
+    return worker.currentPlayer ;
+  }
+}
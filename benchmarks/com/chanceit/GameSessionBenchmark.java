@@ -0,0 +1,87 @@
+package com.chanceit;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * The GameSession (game_scheduler=events) hot path, with StubConnections in place of sockets, roll_time=0 and no
+ * player_input_timeout, so nothing waits on the timing wheel: every answer offered to the inbox of the player being
+ * prompted runs the session there and then, on an executor that runs it on the calling thread.
+ *
+ *   answer : one answered prompt: the answer is played, and the next prompt (this player's or the opponent's) goes out
+ *   turn   : one whole turn of the player being prompted: chance it twice, then stop (or bust on the way)
+ *
+ * Both cross the Prompt and Turn events, so with no recording they should be 0 B/op, like GamePlayWorkerBenchmark's
+ * takeTurn.  Each iteration starts a fresh session whose game is too long to end.
+ *
+ * @Param binary=true runs the same paths with the players speaking the binary protocol.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GameSessionBenchmark {
+
+  private static final String[] ANSWERS = { "Y", "Y", "n" } ;
+
+  @Param({"false", "true"})
+  boolean binary ;
+
+  GameSession session ;
+  int next ;
+
+  @Setup(Level.Iteration)
+  public void setUp() throws InterruptedException {
+    Properties prop = new Properties() ;
+    prop.setProperty("roll_time", "0") ;
+    prop.setProperty("player_input_timeout", "0") ;
+    prop.setProperty("number_of_turns", String.valueOf(Integer.MAX_VALUE)) ;
+
+    StubConnection c1 = new StubConnection("bench1") ;
+    StubConnection c2 = new StubConnection("bench2") ;
+    c1.binary = binary ;
+    c2.binary = binary ;
+    session = new GameSession(c1, c2, prop, null, new TurnPolicies(prop), null, null, null, Runnable::run) ;
+    session.OPPONENT_NOTIFY_DELAY = 0 ;
+    session.run() ;  // seats the players; the announcement comes from the timing wheel's thread, then the first prompt
+    for (int i = 0; i < 1000 && session.game == null; i++) {
+      Thread.sleep(10) ;
+    }
+    if (session.game == null) {
+      throw new IllegalStateException("the session never started") ;
+    }
+    Thread.sleep(100) ;  // for the wheel's thread to finish the roll-off and send the first prompt
+    next = 0 ;
+  }
+
+  @Benchmark
+  public int answer() {
+    GamePlayWorker.ActivePlayer player = session.currentPlayer ;
+    player.connection.getInbox().offer(ANSWERS[next]) ;
+    next = (next + 1) % ANSWERS.length ;
+    return session.game.getTurnTotal() ;
+  }
+
+  @Benchmark
+  public int turn() {
+    GamePlayWorker.ActivePlayer player = session.currentPlayer ;
+    for (int i = 0; session.currentPlayer == player; i = (i + 1) % ANSWERS.length) {
+      player.connection.getInbox().offer(ANSWERS[i]) ;
+    }
+    return session.game.getScore(player.seat) ;
+  }
+}
@@ -0,0 +1,53 @@
+package com.chanceit;
+
+import com.chanceit.metrics.LatencyHistogram;
+import com.chanceit.metrics.MetricsRegistry;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Recording a latency into a LatencyHistogram, as the game threads do for every prompt and roll.  Run with 1 and with
+ * 4 threads to see what the striping saves under contention.  record should be 0 B/op.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LatencyHistogramBenchmark {
+
+  final LatencyHistogram histogram = new MetricsRegistry().histogram("benchmark_seconds", "benchmark") ;
+
+  // a spread of values, so the runs don't hit one bucket only
+  @State(Scope.Thread)
+  public static class Value {
+    long nanos = 1000 ;
+
+    long next() {
+      nanos = (nanos * 31 + 17) & 0xFFFFFFFL ;
+      return nanos ;
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void record(Value value) {
+    histogram.record(value.next()) ;
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void recordContended(Value value) {
+    histogram.record(value.next()) ;
+  }
+}
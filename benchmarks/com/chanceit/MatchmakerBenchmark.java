@@ -0,0 +1,77 @@
+package com.chanceit;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Pairing: two players register with a running Matchmaker and the benchmark waits until their GamePlayWorker has
+ * been handed to the game executor.  The executor only counts games; nothing is played.  The "paired ..." line the
+ * Matchmaker prints for every game is part of the measured cost.
+ *
+ * (Pairing used to happen in GamePlayWorker.run(); it is the Matchmaker's job now.  GamePlayWorkerBenchmark.seatPlayers
+ * covers what is left of run() before the game starts.)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatchmakerBenchmark {
+
+  static class CountingExecutor extends AbstractExecutorService {
+    final AtomicLong games = new AtomicLong() ;
+    public void execute(Runnable command) { games.incrementAndGet() ; }
+    public void shutdown() {}
+    public List<Runnable> shutdownNow() { return Collections.emptyList() ; }
+    public boolean isShutdown() { return false ; }
+    public boolean isTerminated() { return false ; }
+    public boolean awaitTermination(long timeout, TimeUnit unit) { return true ; }
+  }
+
+  CountingExecutor gamePool ;
+  Matchmaker matchmaker ;
+  StubConnection player1 ;
+  StubConnection player2 ;
+
+  @Setup
+  public void setUp() {
+    gamePool = new CountingExecutor() ;
+    matchmaker = new Matchmaker(gamePool, new Properties(), null, new TurnPolicies(new Properties()), null, null,
+                                new Leaderboard(new PlayerRatings(new Properties()))) ;
+    matchmaker.start() ;
+    player1 = new StubConnection("bench1") ;
+    player2 = new StubConnection("bench2") ;
+  }
+
+  @TearDown
+  public void tearDown() {
+    matchmaker.shutdown() ;
+  }
+
+  @Benchmark
+  public long pairTwoPlayers() {
+    long expected = gamePool.games.get() + 1 ;
+    matchmaker.register(player1) ;
+    matchmaker.register(player2) ;
+    while (gamePool.games.get() < expected) {
+      Thread.onSpinWait() ;
+    }
+    return expected ;
+  }
+}
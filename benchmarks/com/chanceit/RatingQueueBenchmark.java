@@ -0,0 +1,73 @@
+package com.chanceit;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * matchmaking=rating with `waiting` players already in the RatingQueue, rated 100 points apart so that none of them
+ * can be paired with another (rating_gap_initial 50).  Each operation is one arrival that pairs with the player
+ * nearest its rating, a replacement for that player, which cannot pair and so goes into the line, and a recheck.  The
+ * queue stays `waiting` long; the cost should grow with log(waiting), not waiting.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RatingQueueBenchmark {
+
+  @Param({"1000", "100000"})
+  int waiting ;
+
+  RatingQueue queue ;
+  StubConnection[] players ;
+  StubConnection[] arrivals ;
+  long pairs ;
+  int next ;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    PlayerRatings ratings = new PlayerRatings(new Properties()) ;
+    queue = new RatingQueue(ratings, 50, 1, (first, second) -> pairs++) ;
+    players = new StubConnection[waiting] ;
+    arrivals = new StubConnection[waiting] ;
+    long now = System.nanoTime() ;
+    for (int i = 0; i < waiting; i++) {
+      players[i] = new StubConnection("player" + i) ;
+      arrivals[i] = new StubConnection("arrival" + i) ;
+      ratings.set(players[i].getPlayerName(), 100 * i) ;
+      ratings.set(arrivals[i].getPlayerName(), 100 * i + 10) ;
+      queue.add(registration(players[i], now), now) ;
+    }
+  }
+
+  private static Registration registration(StubConnection connection, long now) {
+    Registration r = new Registration(connection) ;
+    r.queuedAt = now ;
+    return r ;
+  }
+
+  @Benchmark
+  public long arriveAndPair() {
+    int i = next ;
+    next = (next + 7919) % waiting ;  // all over the line, not one end of it
+    long now = System.nanoTime() ;
+    queue.add(registration(arrivals[i], now), now) ;  // pairs with players[i]
+    queue.add(registration(players[i], now), now) ;   // and players[i] takes its place again
+    queue.recheck(now) ;
+    return pairs ;
+  }
+}
@@ -0,0 +1,78 @@
+package com.chanceit;
+
+import com.chanceit.journal.RollJournal;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Appending a roll to the RollJournal, as GamePlayWorker.onRoll() does, into 64 MB segments in a temporary directory
+ * (so the runs include rolling over to new segments).  Run with 1 and with 4 threads to see the cost with and without
+ * contention on the slot counter.  roll should be 0 B/op.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RollJournalBenchmark {
+
+  RollJournal journal ;
+  File dir ;
+
+  // one game per benchmark thread
+  @State(Scope.Thread)
+  public static class Game {
+    RollJournal.Appender appender ;
+    int roll ;
+
+    @Setup
+    public void setUp(RollJournalBenchmark benchmark) {
+      appender = benchmark.journal.newGame() ;
+    }
+  }
+
+  @Setup
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("journal").toFile() ;
+    journal = new RollJournal(dir.getPath(), 64 << 20) ;
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    journal.close() ;
+    File[] segments = dir.listFiles() ;
+    if (segments != null) {
+      for (File segment : segments) {
+        segment.delete() ;
+      }
+    }
+    dir.delete() ;
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void roll(Game game) {
+    game.appender.roll(0, 1, ++game.roll, 3, 4, false, 7 * game.roll) ;
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void rollContended(Game game) {
+    game.appender.roll(0, 1, ++game.roll, 3, 4, false, 7 * game.roll) ;
+  }
+}
@@ -0,0 +1,61 @@
+package com.chanceit;
+
+import java.nio.ByteBuffer;
+
+/*
+ * A PlayerConnection with no socket behind it, for the benchmarks.
+ *
+ * readLine() plays back a script of commands in a loop; println() and write() only count the characters (bytes) "sent"
+ * so that the output isn't optimized away.  A GameSession reads the inbox instead, which the benchmark fills.
+ */
+class StubConnection implements PlayerConnection {
+
+  private final String name ;
+  boolean binary = false ;
+  private final String[] script ;
+  private int next = 0 ;
+  long charsWritten = 0 ;
+  final PlayerInbox inbox = new PlayerInbox() ;
+
+  StubConnection(String name, String... script) {
+    this.name = name ;
+    this.script = script ;
+  }
+
+  @Override
+  public String getPlayerName() {
+    return name ;
+  }
+
+  @Override
+  public boolean isBinary() {
+    return binary ;
+  }
+
+  @Override
+  public String readLine(int timeout) {
+    String command = script[next] ;
+    next = (next + 1) % script.length ;
+    return command ;
+  }
+
+  @Override
+  public void println(String message) {
+    charsWritten += message.length() ;
+  }
+
+  @Override
+  public void write(ByteBuffer message) {
+    charsWritten += message.remaining() ;
+    message.position(message.limit()) ;
+  }
+
+  @Override
+  public PlayerInbox getInbox() {
+    return inbox ;
+  }
+
+  @Override
+  public void close() {
+  }
+}
@@ -0,0 +1,56 @@
+package com.chanceit;
+
+import com.chanceit.timer.TimingWheel;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * Setting and cancelling an input deadline on the TimingWheel, as PlayerInbox.take() does for every prompt, with
+ * `pending` other timers already in the wheel.  The cost should not grow with pending, and scheduleAndCancel should
+ * be 0 B/op.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TimingWheelBenchmark {
+
+  @Param({"0", "1000000"})
+  int pending ;
+
+  TimingWheel wheel ;
+  final TimingWheel.Task task = handle -> {} ;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    wheel = new TimingWheel(1, pending + 16, "TimingWheelBenchmark") ;
+    wheel.start() ;
+    for (int i = 0; i < pending; i++) {
+      wheel.schedule(task, 3600000 + i) ;  // an hour out: none of them fire during the run
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    wheel.shutdown() ;
+  }
+
+  @Benchmark
+  public boolean scheduleAndCancel() {
+    return wheel.cancel(wheel.schedule(task, 60000)) ;
+  }
+}
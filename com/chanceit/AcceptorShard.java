@@ -0,0 +1,141 @@
+package com.chanceit;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * One of acceptor_shards listening sockets bound to the server port.
+ *
+ * With more than one shard every socket is bound with SO_REUSEPORT and the kernel spreads incoming connections
+ * across them, so a burst of connections (e.g. a tournament start) is not queued behind a single accept backlog
+ * and a single set of threads convoying on accept().  Each shard feeds its own registration pipeline:
+ *   • transport=nio             : its own NioAcceptor thread
+ *   • executor_mode=virtual     : its own RegistrarAcceptor thread
+ *   • otherwise                 : its share of the PlayerRegistrar threads
+ *
+ * Each shard counts its accepts; see getAcceptsPerSecond().  With the blocking transport it also counts the
+ * PlayerRegistrars serving it and how many of them are idle in accept(), which the PoolSizer sizes the pool by.
+ */
+class AcceptorShard {
+
+  final int id ;
+  final ServerSocket listener ;          // transport=blocking
+  final ServerSocketChannel channel ;    // transport=nio
+
+  private final LongAdder accepts = new LongAdder() ;
+  private long lastAccepts = 0 ;
+  private long lastSampleNanos = System.nanoTime() ;
+
+  final AtomicInteger registrars = new AtomicInteger() ;  // PlayerRegistrars serving this shard
+  final AtomicInteger accepting = new AtomicInteger() ;   // ... and waiting in accept() for a connection
+
+  private AcceptorShard(int id, ServerSocket listener, ServerSocketChannel channel) {
+    this.id = id ;
+    this.listener = listener ;
+    this.channel = channel ;
+  }
+
+  /*
+   * open `count` listening sockets on addr:port.  Falls back to a single shard when SO_REUSEPORT is not available.
+   */
+  static AcceptorShard[] open(boolean nio, InetAddress addr, int port, int backlog, int count) throws IOException {
+    if (count > 1 && !reusePortSupported(nio)) {
+      System.out.println("    SO_REUSEPORT is not supported on this platform, using 1 acceptor shard...") ;
+      count = 1 ;
+    }
+    boolean reusePort = count > 1 ;
+    InetSocketAddress endpoint = new InetSocketAddress(addr, port) ;
+
+    AcceptorShard[] shards = new AcceptorShard[count] ;
+    for (int i = 0; i < count; i++) {
+      if (nio) {
+        ServerSocketChannel channel = ServerSocketChannel.open() ;
+        if (reusePort) {
+          channel.setOption(StandardSocketOptions.SO_REUSEPORT, true) ;
+        }
+        channel.bind(endpoint, backlog) ;
+        shards[i] = new AcceptorShard(i, null, channel) ;
+      } else {
+        ServerSocket listener = new ServerSocket() ;
+        if (reusePort) {
+          listener.setOption(StandardSocketOptions.SO_REUSEPORT, true) ;
+        }
+        listener.bind(endpoint, backlog) ;
+        shards[i] = new AcceptorShard(i, listener, null) ;
+      }
+    }
+    return shards ;
+  }
+
+  private static boolean reusePortSupported(boolean nio) throws IOException {
+    if (nio) {
+      try (ServerSocketChannel probe = ServerSocketChannel.open()) {
+        return probe.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT) ;
+      }
+    }
+    try (ServerSocket probe = new ServerSocket()) {
+      return probe.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT) ;
+    }
+  }
+
+  // transport=blocking
+  Socket accept() throws IOException {
+    Socket socket ;
+    accepting.incrementAndGet() ;
+    try {
+      socket = listener.accept() ;
+    } finally {
+      accepting.decrementAndGet() ;
+    }
+    accepts.increment() ;
+    ServerMetrics.ACCEPTED.increment() ;
+    accepted() ;
+    return socket ;
+  }
+
+  // transport=nio
+  SocketChannel acceptChannel() throws IOException {
+    SocketChannel socketChannel = channel.accept() ;
+    accepts.increment() ;
+    ServerMetrics.ACCEPTED.increment() ;
+    accepted() ;
+    return socketChannel ;
+  }
+
+  private void accepted() {
+    GameEvents.ConnectionAccepted event = new GameEvents.ConnectionAccepted() ;
+    if (event.shouldCommit()) {
+      event.shard = id ;
+      event.commit() ;
+    }
+  }
+
+  boolean isOpen() {
+    return channel != null ? channel.isOpen() : !listener.isClosed() ;
+  }
+
+  long getAccepts() {
+    return accepts.sum() ;
+  }
+
+  /*
+   * accepts per second since the previous call (or since the shard was opened)
+   */
+  synchronized double getAcceptsPerSecond() {
+    long now = System.nanoTime() ;
+    long total = accepts.sum() ;
+    double seconds = (now - lastSampleNanos) / 1e9 ;
+    double rate = seconds > 0 ? (total - lastAccepts) / seconds : 0 ;
+    lastAccepts = total ;
+    lastSampleNanos = now ;
+    return rate ;
+  }
+}
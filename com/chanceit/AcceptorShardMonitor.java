@@ -0,0 +1,38 @@
+package com.chanceit;
+
+/*
+ * Prints the accepts/sec of each AcceptorShard every accept_monitor_interval seconds.  Quiet intervals are skipped.
+ */
+class AcceptorShardMonitor implements Runnable {
+
+  private final AcceptorShard[] shards ;
+  private final int seconds ;
+  private volatile boolean run = true ;
+
+  AcceptorShardMonitor(AcceptorShard[] shards, int seconds) {
+    this.shards = shards ;
+    this.seconds = seconds ;
+  }
+
+  public void shutdown() {
+    this.run = false ;
+  }
+
+  @Override
+  public void run() {
+    while (run) {
+      try {
+        Thread.sleep(seconds * 1000L) ;
+      } catch (InterruptedException e) {
+        return ;
+      }
+      for (AcceptorShard shard : shards) {
+        double rate = shard.getAcceptsPerSecond() ;
+        if (rate > 0) {
+          System.out.println(String.format("AcceptorShard-%d: [monitor] accepts/sec: %.1f, total: %d",
+              shard.id, rate, shard.getAccepts())) ;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package com.chanceit;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Decides, as each connection is accepted, whether the server can take another player.  It can't when
+ *
+ *   • max_connections players are already connected, or
+ *   • admission_queued_games paired games are already waiting for a game thread
+ *
+ * and then the connection is sent one line, "SERVER BUSY, RETRY IN N s", and closed at once instead of being left to
+ * hang in the accept backlog or the game queue.  N is busy_retry_after, or longer when the game queue would take
+ * longer than that to drain (the PoolSizer estimates it; see setRetryAfter()).
+ *
+ * admit() and release() pair up: every admitted connection is released once, when it is closed.
+ */
+class AdmissionControl {
+
+  static final String BUSY_MESSAGE = "SERVER BUSY, RETRY IN " ;
+
+  private final int maxConnections ;     // 0 == no limit
+  private final int maxQueuedGames ;     // 0 == no limit
+  private final AtomicInteger connections = new AtomicInteger() ;
+  private volatile ThreadPoolExecutor gamePool ;  // null with executor_mode=virtual or game_scheduler=events
+  private volatile int retryAfter ;      // seconds
+
+  AdmissionControl(int maxConnections, int maxQueuedGames, int retryAfter) {
+    this.maxConnections = maxConnections ;
+    this.maxQueuedGames = maxQueuedGames ;
+    this.retryAfter = Math.max(1, retryAfter) ;
+  }
+
+  void setGamePool(ThreadPoolExecutor gamePool) {
+    this.gamePool = gamePool ;
+  }
+
+  // true if the connection may register; it must then be release()d when it closes
+  boolean admit() {
+    ThreadPoolExecutor pool = gamePool ;
+    if (maxQueuedGames > 0 && pool != null && pool.getQueue().size() >= maxQueuedGames) {
+      ServerMetrics.REJECTED.increment() ;
+      return false ;
+    }
+    int n ;
+    do {
+      n = connections.get() ;
+      if (maxConnections > 0 && n >= maxConnections) {
+        ServerMetrics.REJECTED.increment() ;
+        return false ;
+      }
+    } while (!connections.compareAndSet(n, n + 1)) ;
+    return true ;
+  }
+
+  void release() {
+    connections.decrementAndGet() ;
+  }
+
+  int getConnections() { return connections.get() ; }
+  int getMaxConnections() { return maxConnections ; }
+  int getRetryAfter() { return retryAfter ; }
+
+  void setRetryAfter(int seconds) {
+    retryAfter = Math.max(1, seconds) ;
+  }
+
+  String busyLine() {
+    return BUSY_MESSAGE + retryAfter + " s" ;
+  }
+
+  /*
+   * turn a connection away: the busy line and close.  The socket has only just been accepted, so the line fits in its
+   * send buffer and the write does not block.
+   */
+  void turnAway(Socket socket) {
+    try (Socket s = socket) {
+      OutputStream out = s.getOutputStream() ;
+      out.write((busyLine() + "\n").getBytes(StandardCharsets.UTF_8)) ;
+      out.flush() ;
+    } catch (IOException e) {}
+  }
+
+  void turnAway(SocketChannel channel) {
+    try (SocketChannel c = channel) {
+      c.write(ByteBuffer.wrap((busyLine() + "\n").getBytes(StandardCharsets.UTF_8))) ;
+    } catch (IOException e) {}
+  }
+}
@@ -0,0 +1,94 @@
+package com.chanceit;
+
+/*
+ * The binary protocol, for clients that register with HELLO:PLAYERNAME;binary (see HELLO_SUFFIX).
+ *
+ * The handshake is unchanged (the HELLO response is still a line of text) and so is everything the client sends:
+ * its decision frames are the two byte lines "Y\n" and "n\n" ("stop\n" still forfeits and "policy:..." lines still hand
+ * the decisions to the server, see TurnPolicies).  After the HELLO response every message from the server is a frame
+ * whose first byte says what it is.  Multi-byte fields are big endian, unsigned, and saturate at their maximum.
+ *
+ *   'O' OPPONENT  u8 name length, the name (up to 255 bytes of it)                 2 + n bytes
+ *   'F' ROLL_OFF  u8 my roll, u8 opponent's roll, u8 1 if I go first              4 bytes
+ *   'R' ROLL      u16 turn# (from 1), u16 roll# (from 1), u8 die 1, u8 die 2,
+ *                 u16 running turn score, u16 my score, u16 opponent's score       13 bytes
+ *   'B' BUST      as ROLL; the roll matched the first roll and the turn scores 0   13 bytes
+ *   'P' PROMPT    chance it? answer Y or n                                         1 byte
+ *   'E' RESULT    u8 outcome (0 win, 1 lose, 2 draw),
+ *                 u8 how (0 fair play, 1 timeout, 2 disconnect, 3 stop),
+ *                 u16 my score, u16 opponent's score                               7 bytes
+ *
+ * The scores in ROLL and BUST are the scores at the start of the turn, as in the text protocol's stats block.  The
+ * server closes the connection after RESULT.  A roll and its prompt are 14 bytes against about 120 as text.
+ *
+ * A game the server has no room to play (see GamePool) is instead the text line "SERVER BUSY, RETRY IN N s", as in
+ * the text protocol; no frame starts with its 'S'.
+ */
+final class BinaryMessageEncoder extends MessageEncoder {
+
+  // what a client appends to its HELLO to ask for this protocol; it is not part of the player's name
+  static final String HELLO_SUFFIX = ";binary" ;
+
+  static final byte OPPONENT = 'O' ;
+  static final byte ROLL_OFF = 'F' ;
+  static final byte ROLL     = 'R' ;
+  static final byte BUST     = 'B' ;
+  static final byte PROMPT   = 'P' ;
+  static final byte RESULT   = 'E' ;
+
+  @Override
+  MessageEncoder opponent() {
+    int length = Math.min(opponentName.length, 0xFF) ;
+    ensureCapacity(2 + length) ;
+    buffer.put(OPPONENT).put((byte) length).put(opponentName, 0, length) ;
+    return this ;
+  }
+
+  @Override
+  MessageEncoder rollOff(int myRoll, int opponentRoll, boolean meFirst) {
+    ensureCapacity(4) ;
+    buffer.put(ROLL_OFF).put(u8(myRoll)).put(u8(opponentRoll)).put((byte) (meFirst ? 1 : 0)) ;
+    return this ;
+  }
+
+  @Override
+  MessageEncoder stats(int turnNumber, int rollNumber, int startingScore, int opponentStartScore, int turnAccumulation, int rolledDie1, int rolledDie2) {
+    return roll(ROLL, turnNumber, rollNumber, startingScore, opponentStartScore, turnAccumulation, rolledDie1, rolledDie2) ;
+  }
+
+  @Override
+  MessageEncoder bust(int turnNumber, int rollNumber, int startingScore, int opponentStartScore, int rolledDie1, int rolledDie2) {
+    return roll(BUST, turnNumber, rollNumber, startingScore, opponentStartScore, 0, rolledDie1, rolledDie2) ;
+  }
+
+  @Override
+  MessageEncoder prompt() {
+    ensureCapacity(1) ;
+    buffer.put(PROMPT) ;
+    return this ;
+  }
+
+  @Override
+  MessageEncoder result(int outcome, int how, int myScore, int opponentScore, boolean meListedFirst) {
+    ensureCapacity(7) ;
+    buffer.put(RESULT).put((byte) outcome).put((byte) how).putShort(u16(myScore)).putShort(u16(opponentScore)) ;
+    return this ;
+  }
+
+  private MessageEncoder roll(byte type, int turnNumber, int rollNumber, int startingScore, int opponentStartScore, int turnAccumulation, int rolledDie1, int rolledDie2) {
+    ensureCapacity(13) ;
+    buffer.put(type)
+          .putShort(u16(turnNumber + 1)).putShort(u16(rollNumber))
+          .put(u8(rolledDie1)).put(u8(rolledDie2))
+          .putShort(u16(turnAccumulation)).putShort(u16(startingScore)).putShort(u16(opponentStartScore)) ;
+    return this ;
+  }
+
+  private static byte u8(int value) {
+    return (byte) Math.max(0, Math.min(value, 0xFF)) ;
+  }
+
+  private static short u16(int value) {
+    return (short) Math.max(0, Math.min(value, 0xFFFF)) ;
+  }
+}
@@ -0,0 +1,74 @@
+package com.chanceit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * A bounded multi-producer/single-consumer queue, for handing records from game threads to a writer stage.
+ *
+ * Each slot carries a sequence number; a producer claims a position with a CAS on tail, fills the slot and then
+ * publishes it by advancing the slot's sequence.  offer() never blocks and never takes a lock: if the ring is full it
+ * returns false and the caller decides what to do with the record.  poll() is for the one consumer thread only.
+ */
+final class BoundedRing<E> {
+
+  private final Object[] slots ;
+  private final AtomicLongArray sequences ;
+  private final int mask ;
+  private final AtomicLong tail = new AtomicLong() ;
+  private volatile long head ;  // consumer only; volatile so size() can read it
+
+  // capacity is rounded up to a power of two
+  BoundedRing(int capacity) {
+    capacity = Integer.highestOneBit(Math.max(2, capacity - 1) << 1) ;
+    this.slots = new Object[capacity] ;
+    this.sequences = new AtomicLongArray(capacity) ;
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, i) ;
+    }
+    this.mask = capacity - 1 ;
+  }
+
+  // any thread.  false if the ring is full
+  boolean offer(E element) {
+    while (true) {
+      long pos = tail.get() ;
+      int index = (int) pos & mask ;
+      long dif = sequences.get(index) - pos ;
+      if (dif == 0) {
+        if (tail.compareAndSet(pos, pos + 1)) {
+          slots[index] = element ;
+          sequences.set(index, pos + 1) ;  // publish
+          return true ;
+        }
+      } else if (dif < 0) {
+        return false ;
+      }
+      // else another producer took this position; try the next one
+    }
+  }
+
+  // consumer only.  null if nothing has been published yet
+  @SuppressWarnings("unchecked")
+  E poll() {
+    long pos = head ;
+    int index = (int) pos & mask ;
+    if (sequences.get(index) != pos + 1) {
+      return null ;  // not published yet
+    }
+    E element = (E) slots[index] ;
+    slots[index] = null ;
+    sequences.set(index, pos + mask + 1) ;  // free the slot for the producer one lap ahead
+    head = pos + 1 ;
+    return element ;
+  }
+
+  // elements offered but not yet polled
+  int size() {
+    return (int) Math.max(0, tail.get() - head) ;
+  }
+
+  int capacity() {
+    return mask + 1 ;
+  }
+}
@@ -3,13 +3,12 @@ package com.chanceit;
 import com.chanceit.GamePlayWorker;
 import com.chanceit.PlayerRegistrar;
 import com.chanceit.RegistrationWaitState;
-import java.io.BufferedWriter;
+import com.chanceit.journal.RollJournal;
+import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetAddress;
-import java.net.ServerSocket;
 import java.util.Properties;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -37,6 +36,13 @@ public class ChanceItServer2 {
     // The following two sets of variables will be reassigned by values from config.properties
     int SERVER_PORT                      = 1099 ;
     String HOST                          = "localhost" ;
+    int LISTEN_BACKLOG                   = 50 ;
+    int ACCEPTOR_SHARDS                  = 1 ;
+    int ACCEPT_MONITOR_INTERVAL          = 0 ;
+    String TRANSPORT                     = "blocking" ;
+    int NIO_EVENT_LOOP_COUNT             = 4 ;
+    String EXECUTOR_MODE                 = "platform" ;
+    String GAME_SCHEDULER                = "threads" ;
     int PLAYER_REGISTRAR_CORE_POOL_SIZE  = 2 ;
     int PLAYER_REGISTRAR_MAX_POOL_SIZE   = 4 ;
     int PLAYER_REGISTRAR_KEEP_ALIVE_TIME = 5000 ;
@@ -63,6 +69,27 @@ public class ChanceItServer2 {
         // host IP ?
         HOST = prop.getProperty("host", "localhost");  // not actuall used.
 
+        // length of each listening socket's accept queue
+        LISTEN_BACKLOG = Integer.parseInt(prop.getProperty("listen_backlog", "50"));
+
+        // number of listening sockets bound to the port with SO_REUSEPORT
+        ACCEPTOR_SHARDS = Integer.parseInt(prop.getProperty("acceptor_shards", "1"));
+
+        // seconds between accepts/sec reports for each shard, 0 == off
+        ACCEPT_MONITOR_INTERVAL = Integer.parseInt(prop.getProperty("accept_monitor_interval", "0"));
+
+        // blocking == a PlayerRegistrar thread per connection, nio == a few selector threads for all connections
+        TRANSPORT = prop.getProperty("transport", "blocking");
+
+        // number of selector threads when transport=nio
+        NIO_EVENT_LOOP_COUNT = Integer.parseInt(prop.getProperty("nio_event_loop_count", "4"));
+
+        // platform == the thread pools below, virtual == a virtual thread per connection and per game (Java 21+)
+        EXECUTOR_MODE = prop.getProperty("executor_mode", "platform");
+
+        // threads == a thread per game (executor_mode), events == games stepped by a few GameScheduler threads
+        GAME_SCHEDULER = prop.getProperty("game_scheduler", "threads");
+
 
 
         /*
@@ -114,89 +141,234 @@ public class ChanceItServer2 {
     System.out.println("********************************");
     System.out.println("ChanceIt Server is staring up...");
     InetAddress addr = InetAddress.getByName(HOST);
-    ServerSocket listener = new ServerSocket(SERVER_PORT, 50, addr);
-    System.out.println("Listening on: " + HOST + ":" + SERVER_PORT) ;
+    boolean nio = "nio".equals(TRANSPORT) ;
+    AcceptorShard[] shards = AcceptorShard.open(nio, addr, SERVER_PORT, LISTEN_BACKLOG, Math.max(1, ACCEPTOR_SHARDS)) ;
+    System.out.println("Listening on: " + HOST + ":" + SERVER_PORT + " (" + TRANSPORT + ", " + shards.length + " acceptor shard(s), backlog " + LISTEN_BACKLOG + ")") ;
+    if (ACCEPT_MONITOR_INTERVAL > 0) {
+        Thread acceptMonitorThread = new Thread(new AcceptorShardMonitor(shards, ACCEPT_MONITOR_INTERVAL), "AcceptorShardMonitor") ;
+        acceptMonitorThread.setDaemon(true) ;
+        acceptMonitorThread.start() ;
+    }
     System.out.println("********************************");
 
+    /*
+     * timer_tick: player input deadlines, roll_time and idle registrants all wait on one timing wheel
+     */
+    ServerTimers.start(prop) ;
+
+
+    /*
+     * the leaderboard: every player's rating and record, rebuilt from the game log before any new game is logged
+     */
+    Leaderboard leaderboard = new Leaderboard(new PlayerRatings(prop)) ;
+    if (Boolean.parseBoolean(prop.getProperty("leaderboard_replay", "true")) && new File(GAME_LOG).exists()) {
+      try {
+        long start = System.nanoTime() ;
+        long games = leaderboard.replay(GAME_LOG) ;
+        System.out.println(String.format("    leaderboard: replayed %d games of %d players from %s in %d ms...",
+            games, leaderboard.size(), GAME_LOG, (System.nanoTime() - start) / 1000000)) ;
+      } catch (IOException e) {
+        System.out.println("Could not replay the game log: " + e) ;
+      }
+    }
+    int LEADERBOARD_PORT = Integer.parseInt(prop.getProperty("leaderboard_port", "0")) ;
+    if (LEADERBOARD_PORT > 0) {
+      String host = prop.getProperty("leaderboard_host", "127.0.0.1") ;
+      try {
+        new LeaderboardEndpoint(leaderboard).start(host, LEADERBOARD_PORT) ;
+        System.out.println(String.format("Leaderboard at: http://%s:%d/leaderboard", host, LEADERBOARD_PORT)) ;
+      } catch (IOException e) {
+        System.out.println("Could not start the leaderboard endpoint: " + e) ;
+      }
+    }
 
     System.out.println("Logging outcomes to: " + GAME_LOG) ;
-    BufferedWriter gameLog = null ;
+    GameLogWriter gameLog = null ;
     try {
 
-      FileWriter fstream = new FileWriter(GAME_LOG, true) ; // append to the log file.
-      gameLog = new BufferedWriter(fstream);
+      // GamePlayWorkers queue outcomes; the writer thread writes them out in batches
+      gameLog = new GameLogWriter(GAME_LOG, prop) ;
+      gameLog.start() ;
 
-      // write the CSV header
-      gameLog.write("winner,wscore,loser,lscore,how\n");
-      gameLog.flush() ;
+      // write out whatever is still queued when the server is stopped
+      final GameLogWriter logWriter = gameLog ;
+      Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+        public void run() { logWriter.close() ; }
+      }, "GameLogWriter-shutdown")) ;
 
-    } catch (IOException e) {}
+    } catch (IOException e) {
+      System.out.println("Could not open the game log: " + e) ;
+    }
 
     /*
-     * instantiate a ConcurentLinkedQueue:
-     *  • PlayerRegistrar threads will produce playerRegistrations and add/remove (unregister) them to the queue
-     *  • GamePlayWorker threads will consume PlayerRegisratations and execute the games.
+     * persist=true: every game, turn and roll goes to the database through the GameRecorder's writer thread
      */
-
-     ConcurrentLinkedQueue<PlayerRegistrar> registrationQueue = new ConcurrentLinkedQueue<PlayerRegistrar>();
-     System.out.println("    registrationQueue created...");
+    GameRecorder gameRecorder = null ;
+    if (Boolean.parseBoolean(prop.getProperty("persist", "false"))) {
+      try {
+        gameRecorder = new GameRecorder(GameRecorder.pooledDataSource(prop), prop) ;
+        gameRecorder.start() ;
+        System.out.println("Recording games to: " + prop.getProperty("db_url")) ;
+
+        // write out whatever is still queued when the server is stopped
+        final GameRecorder recorder = gameRecorder ;
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+          public void run() { recorder.close() ; }
+        }, "GameRecorder-shutdown")) ;
+
+      } catch (Exception e) {
+        System.out.println("Could not open the game database, games will not be recorded: " + e) ;
+        gameRecorder = null ;
+      }
+    }
 
     /*
-     * spark up a pool of PlayerRegistrar(s)
+     * roll_journal=true: every roll is appended to a memory-mapped journal (see RollJournal, read it with journal.sh)
      */
-     ExecutorService playerRegistrarPool = new TaskRepeatingThreadPoolExecutor(
-        PLAYER_REGISTRAR_CORE_POOL_SIZE,
-        PLAYER_REGISTRAR_MAX_POOL_SIZE,
-        PLAYER_REGISTRAR_KEEP_ALIVE_TIME * 1000,
-        TimeUnit.MILLISECONDS,
-        new LinkedBlockingQueue<Runnable>()
-        ) ;
+    RollJournal rollJournal = null ;
+    if (Boolean.parseBoolean(prop.getProperty("roll_journal", "false"))) {
+      String dir = prop.getProperty("roll_journal_dir", "./journal") ;
+      try {
+        rollJournal = new RollJournal(dir, Integer.parseInt(prop.getProperty("roll_journal_segment_size", "67108864"))) ;
+        rollJournal.start(Integer.parseInt(prop.getProperty("roll_journal_force_interval", "1000"))) ;
+        System.out.println(String.format("Journaling rolls to: %s (segment %d, recovered %d records, truncated %d torn records)",
+            dir, rollJournal.getSegmentNumber(), rollJournal.getRecovered(), rollJournal.getTruncated())) ;
+
+        final RollJournal journal = rollJournal ;
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+          public void run() {
+            try { journal.close() ; } catch (IOException e) {}
+          }
+        }, "RollJournal-shutdown")) ;
+
+      } catch (IOException e) {
+        System.out.println("Could not open the roll journal, rolls will not be journaled: " + e) ;
+      }
+    }
 
     /*
-    PoolMonitor regstrarPoolMonitor = new PoolMonitor((ThreadPoolExecutor)playerRegistrarPool, 3, "PlayerRegistrarPool") ;
-    Thread registrarMonitorThread = new Thread(regstrarPoolMonitor) ;
-    registrarMonitorThread.start() ;
-    */
-
-    System.out.println("    playerRegistrarPool executor created...");
-    // System.out.println("      playerRegistrarPool PoolMonitor created") ;
-
-     // spark up some workers
-     for (int i = 0; i< PLAYER_REGISTRAR_THREAD_COUNT; i++) {
+     * executor_mode=virtual replaces both thread pools with a virtual thread per task
+     */
+     ExecutorService virtualPool = null ;
+     if ("virtual".equals(EXECUTOR_MODE)) {
+         virtualPool = VirtualThreads.newPerTaskExecutor() ;
+         if (virtualPool != null) {
+             System.out.println("    virtual thread executor created...");
+         } else {
+             System.out.println("    virtual threads are not available in this JVM, using platform thread pools...");
+         }
+     }
 
-         Runnable playerRegistrar = new PlayerRegistrar(listener, registrationQueue, prop) ;
-         playerRegistrarPool.execute(playerRegistrar) ;
+    /*
+     * admission control: turn new connections away with "SERVER BUSY, RETRY IN N s" once the server is full
+     */
+     int maxConnections = Integer.parseInt(prop.getProperty("max_connections", "0")) ;
+     if (!nio && virtualPool == null) {
+         // every connection holds a PlayerRegistrar, and one per shard has to be left to turn the next one away
+         int registrarLimit = Math.max(1, PLAYER_REGISTRAR_MAX_POOL_SIZE - shards.length) ;
+         maxConnections = (maxConnections <= 0) ? registrarLimit : Math.min(maxConnections, registrarLimit) ;
+     }
+     final AdmissionControl admission = new AdmissionControl(maxConnections,
+         Integer.parseInt(prop.getProperty("admission_queued_games", "128")),
+         Integer.parseInt(prop.getProperty("busy_retry_after", "5"))) ;
+     int POOL_RESIZE_INTERVAL = Integer.parseInt(prop.getProperty("pool_resize_interval", "500")) ;
 
+    /*
+     * the GamePlayWorker executor: the Matchmaker submits one GamePlayWorker per pair of players.
+     */
+     GamePool gamePool = null ;
+     ExecutorService gamePlayWorkerPool = virtualPool ;
+     if ("events".equals(GAME_SCHEDULER)) {
+         // game_scheduler=events: no thread per game, and so no game pool to size or to queue for
+         GameScheduler scheduler = new GameScheduler(Integer.parseInt(prop.getProperty("game_scheduler_threads", "0"))) ;
+         gamePlayWorkerPool = scheduler ;
+         System.out.println(String.format("    game scheduler created with %d threads for any number of concurrent games...",
+             scheduler.getParallelism()));
+     } else if (gamePlayWorkerPool == null) {
+         gamePool = new GamePool(
+            GAME_PLAY_WORKER_THREAD_COUNT,     // games played at once to start with
+            GAME_PLAY_WORKER_CORE_POOL_SIZE,   // the PoolSizer keeps it between these two
+            GAME_PLAY_WORKER_MAX_POOL_SIZE,
+            GAME_PLAY_WORKER_KEEP_ALIVE_TIME,
+            Integer.parseInt(prop.getProperty("gameplayworker_queue_size", "256")),
+            admission
+            ) ;
+         admission.setGamePool(gamePool) ;
+         gamePlayWorkerPool = gamePool ;
+
+         System.out.println(String.format("    gamePlayWorkerPool executor created for %d to %d concurrent games...",
+             gamePool.getMinGames(), gamePool.getMaxGames()));
      }
-     System.out.println(String.format("    created %d PlayerRegistrar Threads...", PLAYER_REGISTRAR_THREAD_COUNT));
 
     /*
-     * spark up a pool of GamePlayWorker(s)
+     * the Matchmaker:
+     *  • PlayerRegistrars (or NioEventLoops) hand it players after HELLO; players can withdraw with GOODBYE
+     *  • it pairs waiting players in arrival order (or by rating, matchmaking=rating) and starts their game on the
+     *    gamePlayWorkerPool
+     */
+     Matchmaker matchmaker = new Matchmaker(gamePlayWorkerPool, prop, gameLog, new TurnPolicies(prop), gameRecorder, rollJournal, leaderboard);
+     matchmaker.start();
+     System.out.println("    matchmaker created...");
+
+     TaskRepeatingThreadPoolExecutor playerRegistrarPool = null ;
+
+    if (nio) {
+      /*
+       * the non-blocking front end registers players from a few selector threads
+       */
+       NioServer nioServer = new NioServer(shards, matchmaker, admission, NIO_EVENT_LOOP_COUNT) ;
+       nioServer.start() ;
+       System.out.println(String.format("    created %d NioEventLoop Threads...", NIO_EVENT_LOOP_COUNT));
+    } else if (virtualPool != null) {
+      /*
+       * accept on one thread per shard and run a PlayerRegistrar per connection
+       */
+       for (AcceptorShard shard : shards) {
+           new Thread(new RegistrarAcceptor(shard, matchmaker, admission, prop, virtualPool), "RegistrarAcceptor-" + shard.id).start() ;
+       }
+       System.out.println(String.format("    created %d RegistrarAcceptor Threads...", shards.length));
+    } else {
+    /*
+     * spark up a pool of PlayerRegistrar(s)
      */
-     ExecutorService gamePlayWorkerPool = new TaskRepeatingThreadPoolExecutor(
-        GAME_PLAY_WORKER_CORE_POOL_SIZE,
-        GAME_PLAY_WORKER_MAX_POOL_SIZE,
-        GAME_PLAY_WORKER_KEEP_ALIVE_TIME * 1000,
+     // a PlayerRegistrar holds its thread for the whole connection, so every one of them has a thread of its own.
+     // The PoolSizer grows and shrinks the pool between init and max size; new registrars go to the emptiest shard
+     final AcceptorShard[] registrarShards = shards ;
+     playerRegistrarPool = new TaskRepeatingThreadPoolExecutor(
+        Math.max(shards.length, PLAYER_REGISTRAR_CORE_POOL_SIZE),
+        Math.max(shards.length + 1, PLAYER_REGISTRAR_MAX_POOL_SIZE),
+        PLAYER_REGISTRAR_KEEP_ALIVE_TIME,
         TimeUnit.MILLISECONDS,
-        new LinkedBlockingQueue<Runnable>()
+        () -> new PlayerRegistrar(leastServed(registrarShards), matchmaker, admission, prop)
         ) ;
 
-    /*
-    PoolMonitor gamePlayWorkerPoolMonitor = new PoolMonitor((ThreadPoolExecutor)gamePlayWorkerPool, 3, "GamePlayWorkerPool") ;
-    Thread gamePlayMonitorThread = new Thread(gamePlayWorkerPoolMonitor) ;
-    gamePlayMonitorThread.start() ;
-    */
-
-    System.out.println("    gamePlayWorkerPool executor created...");
-    // System.out.println("      gamePlayWorkerPool PoolMonitor created");
-     // spark up some workers
-     for (int i = 0; i< GAME_PLAY_WORKER_THREAD_COUNT; i++) {
+     // idle registrars wake from accept() this often, so a shrinking pool can retire them
+     for (AcceptorShard shard : shards) {
+         shard.listener.setSoTimeout(Math.max(10, POOL_RESIZE_INTERVAL)) ;
+     }
 
-         Runnable gamePlayWorker = new GamePlayWorker(registrationQueue, prop, gameLog) ;
-         gamePlayWorkerPool.execute(gamePlayWorker) ;
+     // spark up some workers, spread evenly over the shards
+     int registrars = playerRegistrarPool.resize(PLAYER_REGISTRAR_THREAD_COUNT) ;
+     System.out.println(String.format("    created %d PlayerRegistrar Threads (%d to %d)...", registrars,
+         playerRegistrarPool.getMinTasks(), playerRegistrarPool.getMaxTasks()));
+    }
 
+    /*
+     * pool_resize_interval: the PoolSizer follows demand with the registrar and game pools
+     */
+     if (playerRegistrarPool != null || gamePool != null) {
+         Thread poolSizer = new Thread(new PoolSizer(playerRegistrarPool, shards, gamePool, admission, POOL_RESIZE_INTERVAL,
+             Integer.parseInt(prop.getProperty("registrar_pool_spare", "4")),
+             Integer.parseInt(prop.getProperty("game_start_latency_target", "100"))), "PoolSizer") ;
+         poolSizer.setDaemon(true) ;
+         poolSizer.start() ;
      }
-     System.out.println(String.format("    created %d GamePlayWorker Threads...", GAME_PLAY_WORKER_THREAD_COUNT));
+     System.out.println(String.format("    admitting %s connections...", maxConnections > 0 ? "up to " + maxConnections : "any number of")) ;
+
+    /*
+     * metrics_port / metrics_jmx: export the ServerMetrics over HTTP (Prometheus) and JMX
+     */
+     ServerMetrics.start(prop, matchmaker, admission, gamePlayWorkerPool, playerRegistrarPool, gameLog, gameRecorder) ;
 
 
     /*
@@ -204,4 +376,15 @@ public class ChanceItServer2 {
      */
   }
 
+  // the shard with the fewest PlayerRegistrars
+  private static AcceptorShard leastServed(AcceptorShard[] shards) {
+    AcceptorShard least = shards[0] ;
+    for (AcceptorShard shard : shards) {
+      if (shard.registrars.get() < least.registrars.get()) {
+        least = shard ;
+      }
+    }
+    return least ;
+  }
+
 }
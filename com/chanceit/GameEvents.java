@@ -0,0 +1,175 @@
+package com.chanceit;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/*
+ * Java Flight Recorder events for the life of a player and a game, so a recording lines up GC pauses, lock contention
+ * and socket waits with what the games were doing at the time.  chanceit.jfc turns them on:
+ *
+ *   java -XX:StartFlightRecording:settings=./chanceit.jfc,filename=chanceit.jfr -cp . com.chanceit.ChanceItServer2
+ *   jfr print --categories ChanceIt chanceit.jfr
+ *
+ *   ConnectionAccepted  AcceptorShard          instant
+ *   Hello               PlayerRegistrar, NioConnection   instant
+ *   Goodbye             PlayerRegistrar, NioConnection   instant, GOODBYE or a disconnect before the game
+ *   Paired              Matchmaker             instant, with both players' waits
+ *   Turn                ActivePlayer, GameSession   from the first roll of a turn to its end
+ *   Prompt              ActivePlayer, GameSession   from a prompt to the player's answer
+ *   GameOutcome         GamePlayWorker         from the first turn to the outcome
+ *
+ * Every call site follows the same pattern: create the event, begin() if it has a duration, and only fill in its
+ * fields and commit() if shouldCommit().  With the events disabled (no recording, or a recording without them) that is
+ * a check of a flag; the event object does not escape and the JIT does not allocate it.  GameSession is the exception:
+ * its Turn and Prompt events outlive a step, so it only creates them while their EventType isEnabled().  None of the
+ * events record a stack trace.
+ */
+final class GameEvents {
+
+  private GameEvents() {}
+
+  @Name("com.chanceit.ConnectionAccepted")
+  @Label("Connection Accepted")
+  @Category({ "ChanceIt", "Registration" })
+  @StackTrace(false)
+  static final class ConnectionAccepted extends Event {
+    @Label("Acceptor Shard")
+    int shard ;
+  }
+
+  @Name("com.chanceit.Hello")
+  @Label("HELLO")
+  @Description("A player registered and was handed to the Matchmaker")
+  @Category({ "ChanceIt", "Registration" })
+  @StackTrace(false)
+  static final class Hello extends Event {
+    @Label("Player")
+    String player ;
+
+    @Label("Binary Protocol")
+    boolean binary ;
+  }
+
+  @Name("com.chanceit.Goodbye")
+  @Label("GOODBYE")
+  @Description("A registered player left before being paired (withdrawn) or too late to leave (paired)")
+  @Category({ "ChanceIt", "Registration" })
+  @StackTrace(false)
+  static final class Goodbye extends Event {
+    @Label("Player")
+    String player ;
+
+    @Label("Disconnected")
+    @Description("The connection closed, rather than the player sending GOODBYE")
+    boolean disconnected ;
+
+    @Label("Withdrawn")
+    @Description("The player was unregistered; false if the Matchmaker had already paired them")
+    boolean withdrawn ;
+  }
+
+  @Name("com.chanceit.Paired")
+  @Label("Paired")
+  @Category({ "ChanceIt", "Matchmaking" })
+  @StackTrace(false)
+  static final class Paired extends Event {
+    @Label("Player 1")
+    String player1 ;
+
+    @Label("Player 1 Wait")
+    @Description("From answering HELLO to being paired")
+    @Timespan(Timespan.NANOSECONDS)
+    long wait1 ;
+
+    @Label("Player 2")
+    String player2 ;
+
+    @Label("Player 2 Wait")
+    @Timespan(Timespan.NANOSECONDS)
+    long wait2 ;
+
+    @Label("Player 1 Rating")
+    int rating1 ;
+
+    @Label("Player 2 Rating")
+    int rating2 ;
+  }
+
+  @Name("com.chanceit.Turn")
+  @Label("Turn")
+  @Category({ "ChanceIt", "Game" })
+  @StackTrace(false)
+  static final class Turn extends Event {
+    @Label("Player")
+    String player ;
+
+    @Label("Turn Number")
+    @Description("From 1")
+    int turn ;
+
+    @Label("Rolls")
+    int rolls ;
+
+    @Label("Turn Total")
+    @Description("0 if the turn busted")
+    int turnTotal ;
+
+    @Label("Score")
+    int score ;
+
+    @Label("Policy")
+    @Description("A turn policy took the decisions")
+    boolean policy ;
+  }
+
+  @Name("com.chanceit.Prompt")
+  @Label("Prompt")
+  @Description("Waiting for a player to answer chance-it? [Y/n]")
+  @Category({ "ChanceIt", "Game" })
+  @StackTrace(false)
+  static final class Prompt extends Event {
+    @Label("Player")
+    String player ;
+
+    @Label("Turn Number")
+    int turn ;
+
+    @Label("Roll Number")
+    int roll ;
+
+    @Label("Answer")
+    String answer ;
+  }
+
+  @Name("com.chanceit.GameOutcome")
+  @Label("Game Outcome")
+  @Category({ "ChanceIt", "Game" })
+  @StackTrace(false)
+  static final class GameOutcome extends Event {
+    @Label("Winner")
+    @Description("Either player for a draw")
+    String winner ;
+
+    @Label("Winner Score")
+    int winnerScore ;
+
+    @Label("Loser")
+    String loser ;
+
+    @Label("Loser Score")
+    int loserScore ;
+
+    @Label("How")
+    @Description("FAIR_PLAY, FAIR_PLAY||TIE, TIMEOUT, DISCONNECT or STOP")
+    String how ;
+
+    @Label("Turns")
+    @Description("Turns each player started")
+    int turns ;
+  }
+}
@@ -0,0 +1,199 @@
+package com.chanceit;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * The game log writer stage.
+ *
+ * GamePlayWorkers put each outcome on a bounded lock-free ring buffer (a BoundedRing) and return straight away; they never take a
+ * lock, format a line or make a system call.  A single writer thread takes the records off, encodes them as CSV
+ * and writes them out in batches:
+ *   • as soon as game_log_batch_size records are waiting, or
+ *   • game_log_flush_interval milliseconds after the oldest unwritten record arrived.
+ * With game_log_fsync=true every batch is forced to disk before the next one is taken.
+ *
+ * If the ring is full the outcome is dropped and counted rather than stalling the game.  close() writes out everything
+ * still in the ring before it returns.  The shutdown hook calls it while games may still be finishing: a log() that
+ * comes too late is dropped and counted too, and close() waits for any log() already under way to publish its record
+ * first, so every outcome is either written or counted as dropped.
+ */
+class GameLogWriter implements Runnable {
+
+  private static final String CSV_HEADER = "winner,wscore,loser,lscore,how,seed\n" ;
+
+  static final class GameOutcome {
+    final String winnerName ;
+    final int winnerScore ;
+    final String loserName ;
+    final int loserScore ;
+    final String how ;
+    final long seed ;
+
+    GameOutcome(String winnerName, int winnerScore, String loserName, int loserScore, String how, long seed) {
+      this.winnerName = winnerName ;
+      this.winnerScore = winnerScore ;
+      this.loserName = loserName ;
+      this.loserScore = loserScore ;
+      this.how = how ;
+      this.seed = seed ;
+    }
+  }
+
+  private final BoundedRing<GameOutcome> ring ;
+
+  private final FileOutputStream file ;
+  private final FileChannel channel ;
+  private final int batchSize ;
+  private final long flushIntervalNanos ;
+  private final boolean fsync ;
+  private final StringBuilder batch = new StringBuilder(4096) ;  // writer thread only
+
+  private final LongAdder dropped = new LongAdder() ;
+  private final LongAdder written = new LongAdder() ;
+  private volatile Thread thread ;
+  private volatile boolean run = true ;
+  private final AtomicInteger logging = new AtomicInteger() ;  // log() calls under way
+
+  GameLogWriter(String path, Properties prop) throws IOException {
+    this.ring = new BoundedRing<>(Integer.parseInt(prop.getProperty("game_log_queue_size", "8192"))) ;
+    this.batchSize = Math.max(1, Integer.parseInt(prop.getProperty("game_log_batch_size", "64"))) ;
+    this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, Integer.parseInt(prop.getProperty("game_log_flush_interval", "200")))) ;
+    this.fsync = Boolean.parseBoolean(prop.getProperty("game_log_fsync", "false")) ;
+
+    this.file = new FileOutputStream(path, true) ; // append to the log file.
+    this.channel = file.getChannel() ;
+
+    // write the CSV header
+    writeFully(CSV_HEADER) ;
+  }
+
+  public void start() {
+    thread = new Thread(this, "GameLogWriter") ;
+    thread.start() ;
+  }
+
+  /*
+   * called by GamePlayWorkers.  Never blocks; returns false (and counts a drop) if the ring is full.
+   */
+  boolean log(String winnerName, int winnerScore, String loserName, int loserScore, String how, long seed) {
+    logging.incrementAndGet() ;
+    try {
+      if (!run || !ring.offer(new GameOutcome(winnerName, winnerScore, loserName, loserScore, how, seed))) {
+        dropped.increment() ;  // full, or closed: the writer will not take it
+        return false ;
+      }
+      if (ring.size() >= batchSize) {
+        LockSupport.unpark(thread) ;  // a full batch is waiting
+      }
+      return true ;
+    } finally {
+      logging.decrementAndGet() ;
+    }
+  }
+
+  // records waiting to be written
+  int getQueueDepth() {
+    return ring.size() ;
+  }
+
+  long getDropped() {
+    return dropped.sum() ;
+  }
+
+  long getWritten() {
+    return written.sum() ;
+  }
+
+  /*
+   * stop taking records, write out everything in the ring and close the file.
+   */
+  public void close() {
+    run = false ;
+    while (logging.get() > 0) {
+      Thread.yield() ;  // a log() that saw run still true is publishing its record
+    }
+    Thread t = thread ;
+    if (t != null) {
+      LockSupport.unpark(t) ;
+      try {
+        t.join() ;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt() ;
+      }
+    }
+    System.out.println(String.format("GameLogWriter: wrote %d outcomes, dropped %d", getWritten(), getDropped())) ;
+  }
+
+  @Override
+  public void run() {
+    long oldestPending = 0 ;  // nanoTime the first record of the current batch was taken
+    int pending = 0 ;
+
+    while (true) {
+      boolean stopping = !run ;
+
+      GameOutcome outcome ;
+      while (pending < batchSize && (outcome = ring.poll()) != null) {
+        if (pending == 0) {
+          oldestPending = System.nanoTime() ;
+        }
+        encode(outcome) ;
+        pending++ ;
+      }
+
+      if (pending > 0 && (stopping || pending >= batchSize || System.nanoTime() - oldestPending >= flushIntervalNanos)) {
+        flush(pending) ;
+        pending = 0 ;
+        continue ;  // more may be waiting
+      }
+
+      if (stopping) {
+        break ;  // everything published before close() has been written
+      }
+
+      LockSupport.parkNanos(this, pending > 0 ? flushIntervalNanos - (System.nanoTime() - oldestPending) : flushIntervalNanos) ;
+    }
+
+    try {
+      channel.force(true) ;
+      file.close() ;
+    } catch (IOException e) {}
+  }
+
+  /* csv header: winner,wscore,loser,lscore,how,seed */
+  private void encode(GameOutcome o) {
+    batch.append(o.winnerName).append(',').append(o.winnerScore).append(',')
+         .append(o.loserName).append(',').append(o.loserScore).append(',')
+         .append(o.how).append(',').append(o.seed).append('\n') ;
+  }
+
+  private void flush(int records) {
+    try {
+      writeFully(batch) ;
+      if (fsync) {
+        channel.force(false) ;
+      }
+      written.add(records) ;
+    } catch (IOException e) {
+      System.out.println("GameLogWriter: could not write the game log: " + e) ;
+      dropped.add(records) ;
+    }
+    batch.setLength(0) ;
+  }
+
+  private void writeFully(CharSequence text) throws IOException {
+    ByteBuffer buf = StandardCharsets.UTF_8.encode(text.toString()) ;
+    while (buf.hasRemaining()) {
+      channel.write(buf) ;
+    }
+  }
+}
@@ -1,79 +1,70 @@
 package com.chanceit;
 
-import com.chanceit.PlayerRegistrar ;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.InterruptedIOException;
-import java.io.PrintWriter;
-import java.net.ServerSocket;
-import java.net.Socket;
 import java.net.SocketException;
+import com.chanceit.engine.BufferedDieSource;
+import com.chanceit.engine.ChanceItGame;
+import com.chanceit.engine.DieSource;
+import com.chanceit.engine.GameListener;
+import com.chanceit.engine.RandomDieSource;
+import com.chanceit.engine.Strategy;
+import com.chanceit.journal.RollJournal;
+import com.chanceit.timer.TimingWheel;
 import java.util.Properties;
 import java.util.Random;
-import java.util.concurrent.ConcurrentLinkedQueue;
-
-class GamePlayWorker extends Thread implements RunnableRecycler {
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Plays one game between two connected players.  The rules live in the ChanceItGame engine; this class does the
+ * talking: it prompts the player whose turn it is, feeds their answers to the engine and shows them each roll as the
+ * engine reports it.  What the players are sent is built by each one's MessageEncoder, as text or as binary frames,
+ * so both protocols share this game logic.
+ *
+ * A player may instead hand the server a turn policy (see TurnPolicies), which then answers their prompts here without
+ * a round trip.
+ *
+ * The game's waits (ROLL_TIME, OPPONENT_NOTIFY_DELAY and each player's input deadline) are ServerTimers timers; the
+ * game thread parks until the timer's callback wakes it rather than sleeping with a timeout of its own.  With
+ * game_scheduler=events a GameSession plays the same game without a thread of its own.
+ */
+class GamePlayWorker implements Runnable, GameListener, TimingWheel.Task {
 
       // not set from a property
-      private int OPPONENT_NOTIFY_DELAY = 1 ; // 1 second delay before notifying each player who their opponent is.
-      private static final String WINNER_MESSAGE = "You Win!" ;
-      private static final String WINNER_MESSAGE_BY_TIMEOUT = "You Win! %s Timed Out." ;
-      private static final String WINNER_MESSAGE_BY_DISCONNECT = "You Win! %s Disconnected." ;
-      private static final String WINNER_MESSAGE_BY_FORFEIT = "You Win! %s Stopped." ;
-      private static final String LOSER_MESSAGE = "You Lose." ;
-      private static final String LOSER_MESSAGE_BY_FORFEIT = "You Lose by Forfeit." ;
-      private static final String LOSER_MESSAGE_BY_TIMEOUT = "You Lose by Timeout." ;
-      private static final String TIE_MESSAGE = "It's a Draw." ;
-      private static final String FINAL_SCORE = "Final Score: %s: %d, %s: %d" ;
-
-     /*
-      * There is a requirement that players can unregister before they get added to a game.
-      *
-      * This sets up a problems:  the registration thread will block on IO (after completing registration with the HELLO message) anticipating
-      * a GOODBYE message.  The GamePlayWorker, in another thread, can have picked up the registration and added it to a game.  Note: it does
-      * so in a synchronized block around the registrationQueue: it sets gameOn and canUnregister == false in the PlayerRegistrar object.
-      * After the registration have been added to a game the GamePlayWorker continues
-      * on to giving a turn to each player; they emit a "chance-it?" and wait on IO on the input stream.  And...
-      * Here lies the problem:
-      *
-      *   The registrar thread is already waiting on the same input stream--blocke on IO on the socket.
-      *
-      * The solution was to set a timeout of 1 second in the registrar thread and check, before doing the "realLine" for "GOODBYE".
-      * After each timeout perform a check for 'canUnregister == false'-- this will terminate the loop.
-      * In the GamePlayWorker thread, I set a short timeout on the input socket.  The timeouts will be sequential:
-      *   first the registrar IO block will timeout,
-      *   then the GamePlayWorker IO block and timeout.
-      * Following the timout in the GamePlayWorker thread, a check will be performed to see whether input was received from either the
-      * registrar thread or from the GamePlayWorker thread.  The SHORT_IO_TIMOUT below is the timeout period of the GamePlayWorker thead.
-      */
-      private int SHORT_IO_TIMEOUT = 250 ;  // used in ActivePlayer.  The registration thread can be blocked on IO when the game thread
-                                            // is also blocked on IO.  This can occur on the first turn of a game.  The registration thread
-                                            // will timeout after 1 second, check if  it is now part of a game.  The IO block in the game
-                                            // thread will timeout quickly and check whether the registration thread received data or the game
-                                            // thread received data. ... complicated, I know.  This is required so that players have the
-                                            // ability to unregister before a game starts.  Note: i chose 250 miliseconds arbirarily
+      int OPPONENT_NOTIFY_DELAY = 1 ; // 1 second delay before notifying each player who their opponent is.
 
       // these will be overriden in the construcor by values from config.properties
       private int NUMBER_OF_TURNS = 2;               // the number of turns that make up a game.
-      private int PLAYER_INPUT_TIMEOUT = 10 * 1000 ; // number of seconds (in milliseconds) the server waits for input from a player.
-      private int ROLL_TIME = 250 ;                  // a sumulation of how long a roll takes (in milliseconds)
-      private BufferedWriter gameLog ;
-
-      ConcurrentLinkedQueue<PlayerRegistrar> registrationQueue ;
+      int PLAYER_INPUT_TIMEOUT = 10 * 1000 ;         // number of seconds (in milliseconds) the server waits for input from a player.
+      int ROLL_TIME = 250 ;                          // a sumulation of how long a roll takes (in milliseconds)
+      private String DICE = "buffered" ;             // buffered (SplittableRandom, batched) or random (java.util.Random)
+      private String DICE_SEED = "" ;               // when set every game is dealt the dice of this seed
+      private GameLogWriter gameLog ;
+      private TurnPolicies policies ;
+      private GameRecorder recorder ;
+      private RollJournal journal ;
+      private Leaderboard leaderboard ;
+
+      PlayerConnection pc1 ;
+      PlayerConnection pc2 ;
+      final long pairedAt = System.nanoTime() ;  // the Matchmaker creates us as it pairs the players
       Properties prop ;
       boolean gameOn ;
       ActivePlayer currentPlayer ;
       ActivePlayer ap1 ;
       ActivePlayer ap2 ;
 
-      public class Data {
-        public int player0Score;
-        public int player1Score;
-      }
-
-      public Data playerData;
+      ChanceItGame game ;
+      ActivePlayer[] seats ;   // seats[n] is engine player n; seats[0] goes first
+      DieSource dice ;         // every roll of this game, the roll-off included
+      long seed ;              // the dice are a function of this; it is logged with the outcome
+      GameRecord record ;      // every turn and roll, for the GameRecorder; null without one
+      RollJournal.Appender journalGame ;  // this game's rolls, for the roll journal; null without one
+      long startedAt ;         // System.nanoTime() of newGame(), for the game duration metric
+      GameEvents.GameOutcome outcomeEvent ;  // begun in newGame(), committed by logGameOutcome()
+      private volatile Thread pausing ;      // the thread in pause(), for expire() to wake
+      private volatile boolean resumed ;
 
       @SuppressWarnings("serial")
       public class ActivePlayerTimeoutException extends Exception {
@@ -93,213 +84,174 @@ class GamePlayWorker extends Thread implements RunnableRecycler {
           public ActivePlayerStopException(ActivePlayer winner, ActivePlayer loser ) { super(); this.winner = winner; this.loser = loser; }
       }
 
-      public interface CallBack {
-        void setState(RegistrationWaitState state);
-        void setMessage(String message);
-      }
-
       class ActivePlayer {
 
-          Socket socket ;
-          PlayerRegistrar pr ;
+          PlayerConnection connection ;
           String name ;
+          byte[] nameBytes ;
+          final MessageEncoder out ;  // this player's pending output, in the protocol it asked for
           ActivePlayer opponent ;
-          BufferedReader input ;
-          PrintWriter output ;
-          Random die ;
-          RegistrationWaitState state ;
-          String registrarMessage ;
-
-          public ActivePlayer(Socket socket, PlayerRegistrar pr, String name, BufferedReader input, PrintWriter output) {
-              this.socket = socket ;   // necessary reference to close the socket when the game is done
-              this.pr = pr ;           // necessary reference. needed in CASE were PlayerRegistrar readline blocks on GOODBYE & times out
-              this.name = name ;
-              this.input = input ;     // references to input and output stream from PlayerRegistrar.
-              this.output = output ;
-              this.die = new Random(); // this is a die used in the game
+          int seat ;
+          Strategy turnPolicy ;    // decides for the player until the end of this turn (see TurnPolicies)
+          Strategy gamePolicy ;    // ... or until the end of the game
+
+          public ActivePlayer(PlayerConnection connection) {
+              this.connection = connection ;  // necessary reference to close the connection when the game is done
+              this.name = connection.getPlayerName() ;
+              this.nameBytes = MessageEncoder.bytes(name) ;
+              this.out = MessageEncoder.forConnection(connection) ;
+          }
+
+          public void println(String message) {
+              send() ;
+              connection.println(message) ;
+          }
+
+          // write out everything queued in the encoder
+          void send() {
+              out.send(connection) ;
+          }
+
+          public void close() {
+              send() ;
+              connection.close() ;
           }
 
           /*
            * Determine if this player goes first with a die roll
            */
           public int rollToSeeWhoGoesFirst() {
-            int roll = die.nextInt(6) + 1;
+            int roll = dice.roll();
             return roll;
           }
 
-          public void setSocketTimeout(int timeout) {
-              try {
-                  this.socket.setSoTimeout(timeout);
-              } catch (IOException ioe) {}
+          // queued; it goes out with the prompt that follows it (or with send() after a bust)
+          void displayStats(int turnNumber, int rollNumber, int startingScore, int opponentStartScore, int turnAccumulation, int turnScore, int rolledDie1, int rolledDie2){
+              out.stats(turnNumber, rollNumber, startingScore, opponentStartScore, turnAccumulation, rolledDie1, rolledDie2) ;
           }
 
-          private void displayStats(int turnNumber, int rollNumber, int startingScore, int opponentStartScore, int turnAccumulation, int turnScore, int rolledDie1, int rolledDie2){
-              output.println(String.format(
-                  "Turn Starting Score: %d-%d\nTurn#: %d\nRoll#: %d\nYou Rolled: [%d,%d]\nRunning Turn Score: %d\n--",
-                      startingScore,
-                      opponentStartScore,
-                      turnNumber + 1,
-                      rollNumber,
-                      rolledDie1,
-                      rolledDie2,
-                      turnAccumulation
-                        ));
+          // how the game ended for this player (MessageEncoder.WIN/LOSE/DRAW, FAIR_PLAY/TIMEOUT/...), with the final
+          // score; queued, like displayStats().  `listedFirst` is the player named first on the score line.
+          void result(int outcome, int how, ActivePlayer listedFirst) {
+              out.result(outcome, how, game.getScore(seat), game.getScore(opponent.seat), listedFirst == this) ;
           }
 
           private String getNextCommand() throws IOException, ActivePlayerDisconnectException {
 
               /*
-               * This is tricky as there is a race condition between threads:
-               *   PlayerRegistrar thread is blocking waiting for GOODBYE message
-               *   This thread wants to block/receive the next command -- 'Y' || '' || 'chance-it' || 'n' || 'stop'
+               * The connection's reader (PlayerRegistrar thread or NioEventLoop) is the only thing reading the socket;
+               * it hands us each line through the connection's inbox.  Wait at most PLAYER_INPUT_TIMEOUT for it.
                */
-              String command = null;
-
-              if (state != null && state == RegistrationWaitState.WAIT_TURN){
-
-                  // change here
-                  command = input.readLine();
-                  if (command == null) {
-                      // This means the player has terminated or disconnected the socket.
-                      // This player forfeits the game.
-                      throw new ActivePlayerDisconnectException(/*winner=*/this.opponent, /* loser-*/this);
-                  }
-
-              } else if (this.pr != null && this.pr.state == RegistrationWaitState.WAIT_GOODBYE) {
-                  // The corresponding registration thread is blocked waiting on IO on the socket in anticipation of a GOODBYE msg.
-                  // The readLine will block next after the other readline gets data or times-out.
-                  // I set a short timeout on the socket -- this will only affect the preceding wait on IO.
-                  // After this times out...there will be no data (I hope :) ) received from this readline, but
-                  // the other block in the other thread will have data and set pr.message.
-                  // get the value of pr.message.
-                  String nextCommand = "";
-                  // reset the timeout on the socket.
-                  int oldTimout = socket.getSoTimeout();
-                  socket.setSoTimeout(GamePlayWorker.this.SHORT_IO_TIMEOUT); // set a short timeout. -- may want to put the "chance-it" prompt in this block?
-                  try {
-
-                      nextCommand = input.readLine();  // could this potentially receive 'chance-it' given I've now set a
-                                                       // 1 sec timeout on the socket in the PlayerRegistrar thread ?
-                      if (null != nextCommand) {
-                          // got a command here
-                          command = nextCommand ;
-                      }
-
-                  } catch (InterruptedIOException e) {
-                    // if we are here the readLine timedout without data.  The PlayerRegistrar thread could have received data so check in the finally
-                  } finally {
-                        // The other thead has to be unblocked/received data before controll passes to this thread and
-                        // performs input.readLine() and Times out.
-                        if (null != this.pr.message) {
-                            // got command from the PlayerRegistrar thread
-                            command = this.pr.message ;
-                        } else if ( null != registrarMessage ){
-                            // the callback worked
-                            command = registrarMessage ;
-                        }
-                  }
-
-                  // unset pr to next time around we don't got through this.
-                  this.pr = null;
-
-                  // reset the timeout to the old value
-                  socket.setSoTimeout(oldTimout);
-
+              String command = connection.readLine(GamePlayWorker.this.PLAYER_INPUT_TIMEOUT);
+              if (command == null) {
+                  // This means the player has terminated or disconnected the socket.
+                  // This player forfeits the game.
+                  throw new ActivePlayerDisconnectException(/*winner=*/this.opponent, /* loser-*/this);
               }
               return command ;
           }
 
-          public void takeTurn(int turnNumber, Data playerData)  throws ActivePlayerTimeoutException, ActivePlayerDisconnectException, ActivePlayerStopException {
+          public void takeTurn()  throws ActivePlayerTimeoutException, ActivePlayerDisconnectException, ActivePlayerStopException {
               try {
 
-                  int firstRollDie1 = 0,  // for recording the first roll of each turn
-                      firstRollDie2 = 0,
-
-                      rolledDie1 = 0,     // subsequent rolls of each turn
-                      rolledDie2 = 0,
-
-                      turnAccumulation = 0,
-                      rollNum = -1,
-                      startingScore = playerData.player0Score;
-
-                  while (true) {
-
-                      rollNum++;
-
-                      if (0 == rollNum){  // on first roll
-                          // take the first roll, show stats and prompt player
-                          firstRollDie1 = rolledDie1 = die.nextInt(6) + 1;
-                          firstRollDie2 = rolledDie2 = die.nextInt(6) + 1;
-
-                          // accumulate this score
-                          turnAccumulation += rolledDie1 + rolledDie2 ;
-                          // show stats and prompt player for next moove will occurr in the next loop
-
-                      } else {
-                           // show stats, prompt for command, grab command,  follow instructions, loop or not
-
-                           // show stats
-                           displayStats(turnNumber, rollNum, startingScore, playerData.player1Score, turnAccumulation, rolledDie1 + rolledDie2, rolledDie1, rolledDie2) ;
-
-                           // prompt for command
-                           output.println("chance-it? [Y/n]");
-                           //output.flush();
-
-                           // get next command
-                           String command = getNextCommand() ;
-
-                           // simulate a human roll of the dice
-                           Thread.sleep(ROLL_TIME) ;
-                           //Thread.sleep(500 * 1) ;
-
-                           // [Y/n] means pressing enter defaults to 'Y'
-                           if (command.length() == 0 ||
-                               command.startsWith("Y") ||
-                               command.startsWith("chance-it")) {
-
-                               // taking the roll 'Y or [enter]' count as continue
-                               // take the next roll
-                               rolledDie1 = die.nextInt(6) + 1;
-                               rolledDie2 = die.nextInt(6) + 1;
-
-                               // test if same as initial roll
-                               if ( firstRollDie1 + firstRollDie2 == rolledDie1 + rolledDie2) {
-                                   // rolled the same as first roll so this turn gets 0
-                                   turnAccumulation = 0 ;
-                                   // show stats
-                                   displayStats(turnNumber, rollNum + 1, startingScore, playerData.player1Score, turnAccumulation, rolledDie1 + rolledDie2, rolledDie1, rolledDie2) ;
-
-                                   // break out of the turn loop
-                                   break;
-                               } else {
-                                   // did not roll the same score as the first so this gets added.
-                                   turnAccumulation += rolledDie1 + rolledDie2 ;
-                                   // show stats
-                                   // loop back
-                                   // displayStats(turnNumber + 1, rollNum, startingScore, playerData.player1Score, /* playerData.player0Score,*/ turnAccumulation, rolledDie1, rolledDie2) ;
-
-                               }
-                           // 'n' means stop the turn
-                           } else if (command.startsWith("n")) {
-                             // stopping the turn
-                             break ;
-                           // 'stop' now means quit the game
-                           } else if (command.startsWith("stop")) {
-                               // stopping the game
-                               throw new ActivePlayerStopException(opponent, this) ;
+                  GameEvents.Turn turnEvent = new GameEvents.Turn() ;
+                  turnEvent.begin() ;
+                  int turnNumber = game.getTurnNumber() + 1 ;
+                  boolean policyUsed = false ;
+
+                  // take the first roll; the engine reports it through onRoll() which shows the stats
+                  game.startTurn() ;
+
+                  while (game.getState() == ChanceItGame.AWAITING_DECISION) {
+
+                       // a turn policy answers for the player: no prompt, no round trip and no roll time.  The stats
+                       // of each roll it takes are queued and go out together when the turn ends
+                       Strategy policy = (turnPolicy != null) ? turnPolicy : gamePolicy ;
+                       if (policy != null) {
+                           policyUsed = true ;
+                           if (policy.chanceIt(game)) {
+                               game.chanceIt() ;
+                           } else {
+                               game.bank() ;
                            }
-                      }
-                    } // end while loop
+                           continue ;
+                       }
+
+                       // prompt for command; the stats of the roll go out in the same write
+                       out.prompt();
+                       send();
+
+                       // get next command
+                       GameEvents.Prompt promptEvent = new GameEvents.Prompt() ;
+                       promptEvent.begin() ;
+                       long prompted = System.nanoTime() ;
+                       String command = getNextCommand() ;
+                       ServerMetrics.PROMPT_RESPONSE.recordSince(prompted) ;
+                       if (promptEvent.shouldCommit()) {
+                           promptEvent.player = name ;
+                           promptEvent.turn = turnNumber ;
+                           promptEvent.roll = game.getRollNumber() ;
+                           promptEvent.answer = command ;
+                           promptEvent.commit() ;
+                       }
 
-                    playerData.player0Score += turnAccumulation ;
+                       // 'policy:turn:SPEC' or 'policy:game:SPEC' hands the decisions over to the server (see TurnPolicies)
+                       if (command.startsWith(TurnPolicies.POLICY_COMMAND)) {
+                           adoptPolicy(command.substring(TurnPolicies.POLICY_COMMAND.length())) ;
+                           continue ;
+                       }
+
+                       // simulate a human roll of the dice
+                       long sleeping = System.nanoTime() ;
+                       pause(ROLL_TIME) ;
+                       ServerMetrics.ROLL_TIME_OVERHEAD.record(System.nanoTime() - sleeping - ROLL_TIME * 1000000L) ;
+
+                       // [Y/n] means pressing enter defaults to 'Y'
+                       if (command.length() == 0 ||
+                           command.startsWith("Y") ||
+                           command.startsWith("chance-it")) {
+
+                           // taking the roll 'Y or [enter]' count as continue.  A roll matching the first roll ends
+                           // the turn with 0 (onBust() shows it)
+                           game.chanceIt() ;
+
+                       // 'n' means stop the turn
+                       } else if (command.startsWith("n")) {
+                           game.bank() ;
+                       // 'stop' now means quit the game
+                       } else if (command.startsWith("stop")) {
+                           game.forfeit(seat) ;
+                           throw new ActivePlayerStopException(opponent, this) ;
+                       }
+                  }
+
+                  // the turn is over: a turn policy ends with it, and anything still queued goes out
+                  turnPolicy = null ;
+                  send() ;
+
+                  turnEvent.end() ;
+                  if (turnEvent.shouldCommit()) {
+                      turnEvent.player = name ;
+                      turnEvent.turn = turnNumber ;
+                      turnEvent.rolls = game.getRollNumber() ;
+                      turnEvent.turnTotal = game.getTurnTotal() ;
+                      turnEvent.score = game.getScore(seat) ;
+                      turnEvent.policy = policyUsed ;
+                      turnEvent.commit() ;
+                  }
 
                 } catch (InterruptedIOException iioe) {
                     // re-throw the exception and catch it in the loop to end the game.
                     // include a reference to the other player -- the winner.
+                    game.forfeit(seat) ;
                     throw new ActivePlayerTimeoutException(/*winner=*/this.opponent, /* loser-*/this);
                 } catch (SocketException se) {
                     // found this in testing when my driver script had fewer turns configured than were set for the game.
+                    game.forfeit(seat) ;
                     throw new ActivePlayerDisconnectException(/*winner=*/this.opponent, /* loser-*/this);
+                } catch (ActivePlayerDisconnectException apde) {
+                    game.forfeit(seat) ;
+                    throw apde ;
                 } catch (InterruptedException e) {
                     // This should never occur
                     e.printStackTrace() ;
@@ -308,78 +260,126 @@ class GamePlayWorker extends Thread implements RunnableRecycler {
                 }
           } // end takeTurn()
 
+          // an unknown or malformed policy is ignored, like any other unknown command: the player is prompted again
+          void adoptPolicy(String scopeAndSpec) {
+              try {
+                  if (scopeAndSpec.startsWith(TurnPolicies.TURN_SCOPE)) {
+                      turnPolicy = policies.parse(scopeAndSpec.substring(TurnPolicies.TURN_SCOPE.length())) ;
+                  } else if (scopeAndSpec.startsWith(TurnPolicies.GAME_SCOPE)) {
+                      gamePolicy = policies.parse(scopeAndSpec.substring(TurnPolicies.GAME_SCOPE.length())) ;
+                  }
+              } catch (IllegalArgumentException e) {
+                  System.out.println(String.format("    %s: %s", name, e.getMessage())) ;
+              }
+          }
+
           public void setOpponent(ActivePlayer opponent){
             this.opponent = opponent;
           }
       }
 
-      public GamePlayWorker(ConcurrentLinkedQueue<PlayerRegistrar> registrationQueue, Properties prop, BufferedWriter gameLog) {
-          this.registrationQueue = registrationQueue ;
+     /*
+      *  The Matchmaker creates one GamePlayWorker per pair of players and runs it on the game executor.
+      */
+      public GamePlayWorker(PlayerConnection pc1, PlayerConnection pc2, Properties prop, GameLogWriter gameLog, TurnPolicies policies, GameRecorder recorder, RollJournal journal, Leaderboard leaderboard) {
+          this.pc1 = pc1 ;
+          this.pc2 = pc2 ;
           this.prop = prop ;
           this.gameLog = gameLog ;
+          this.policies = policies ;
+          this.recorder = recorder ;
+          this.journal = journal ;
+          this.leaderboard = leaderboard ;
           this.gameOn = false ;
           this.NUMBER_OF_TURNS = Integer.parseInt(prop.getProperty("number_of_turns", "20")) ;
           this.PLAYER_INPUT_TIMEOUT = Integer.parseInt(prop.getProperty("player_input_timeout", "60000")) ; // 60 sec
           this.ROLL_TIME = Integer.parseInt(prop.getProperty("roll_time", "250")) ; // 1/4 sec or 250 milliseconds
-          this.playerData = new Data() ;
+          this.DICE = prop.getProperty("dice", "buffered") ;
+          this.DICE_SEED = prop.getProperty("dice_seed", "").trim() ;
+      }
+
+      // the game pool is full: tell both players to come back later, without a game
+      void turnAway(String busyLine) {
+          pc1.println(busyLine) ;
+          pc1.close() ;
+          pc2.println(busyLine) ;
+          pc2.close() ;
       }
 
-     /*
-      *  GamePlayWorker objects are re-used in the ExecutorService therefore certain data members need to be reset.
-      *  Thus GamePlayWorker implements the RunnableRecycler interface here.
-      */
       @Override
-      public void resetData() {
+      public void run() {
 
-          this.gameOn = false ;
-          this.currentPlayer = null;
-          this.ap1 = null;
-          this.ap2 = null;
-          this.playerData = new Data() ;
+          seatPlayers() ;
 
+          // this Game is now ON!!
+          playGame() ;
+          // System.out.println(Thread.currentThread().getName() + " From GamePlayWorker has finished");
       }
 
-      @Override
-      public void run() {
+      // pair the two connections up as opponents
+      void seatPlayers() {
+          ap1 = new ActivePlayer(pc1) ;
+          ap2 = new ActivePlayer(pc2) ;
+
+          ap1.setOpponent(ap2);
+          ap2.setOpponent(ap1);
+          ap1.out.players(ap1.nameBytes, ap2.nameBytes);
+          ap2.out.players(ap2.nameBytes, ap1.nameBytes);
+          currentPlayer = ap1;
+          gameOn = true ;
+
+          // the game's dice: the same seed and the same answers from the players replay the same game
+          seed = DICE_SEED.isEmpty() ? ThreadLocalRandom.current().nextLong() : Long.parseLong(DICE_SEED) ;
+          dice = "random".equals(DICE) ? new RandomDieSource(new Random(seed)) : new BufferedDieSource(seed) ;
+      }
 
-          while (gameOn == false) {  // the queue could have been unblocked and less that 2 players are in it so continue looping
+      // a fresh engine with `first` in seat 0
+      void newGame(ActivePlayer first) {
+          seats = new ActivePlayer[] { first, first.opponent } ;
+          first.seat = 0 ;
+          first.opponent.seat = 1 ;
+          game = new ChanceItGame(NUMBER_OF_TURNS, dice, this) ;
+          record = (recorder != null) ? new GameRecord(first.name, first.opponent.name) : null ;
+          journalGame = (journal != null) ? journal.newGame() : null ;
+          startedAt = System.nanoTime() ;
+          outcomeEvent = new GameEvents.GameOutcome() ;
+          outcomeEvent.begin() ;
+      }
 
-              try {
+      /*
+       *  GameListener: show the player each roll, and record it
+       */
+      @Override
+      public void onRoll(int player, int rollNumber, int die1, int die2, int turnTotal) {
+          if (record != null) {
+              record.roll(player, game.getTurnNumber(), rollNumber, die1, die2) ;
+          }
+          if (journalGame != null) {
+              journalGame.roll(player, game.getTurnNumber() + 1, rollNumber, die1, die2, false, turnTotal) ;
+          }
+          ActivePlayer ap = seats[player] ;
+          ap.displayStats(game.getTurnNumber(), rollNumber, game.getScore(player), game.getScore(1 - player), turnTotal, die1 + die2, die1, die2) ;
+      }
 
-                  synchronized (registrationQueue) {
-                      registrationQueue.wait() ;
-                      if (registrationQueue.size() > 1) {
-                        PlayerRegistrar pr1 = registrationQueue.poll();
-                        PlayerRegistrar pr2 = registrationQueue.poll();
-                        pr1.canUnregister = false;
-                        pr2.canUnregister = false;
-
-                        ap1 = new ActivePlayer(pr1.socket, pr1, pr1.name, pr1.input, pr1.output) ;
-                        pr1.callback = new CallBack() {
-                          public void setState(RegistrationWaitState s) { ap1.state = s; System.out.println(Thread.currentThread().getName() + ": :" + ap1.name + ": REGISTER STATE FROM PR1"); }
-                          public void setMessage(String s) { ap1.registrarMessage = s; System.out.println(Thread.currentThread().getName() + ":  :" + ap1.name + ": REGISTER MESSAGE FROM PR1"); }
-                        } ;
-
-                        ap2 = new ActivePlayer(pr2.socket, pr2, pr2.name, pr2.input, pr2.output) ;
-                        pr2.callback = new CallBack() {
-                          public void setState(RegistrationWaitState s) { ap2.state = s ; System.out.println(Thread.currentThread().getName() + ": :" + ap2.name + ": REGISTER STATE FROM PR2"); }
-                          public void setMessage(String s) { ap2.registrarMessage = s; System.out.println(Thread.currentThread().getName() + ": :" + ap2.name + ": REGISTER MESSAGE FROM PR2"); }
-                        } ;
-
-                        ap1.setOpponent(ap2);
-                        ap2.setOpponent(ap1);
-                        currentPlayer = ap1;
-                        gameOn = true ;
-                      }
-                      if (registrationQueue.size() > 1) {
-                          registrationQueue.notify();
-                      }
-                }
-            } catch (InterruptedException e) {}
-        }
-        // we've broken out of the loop and this Game is now ON!!
-        playGame() ;
-        // System.out.println(Thread.currentThread().getName() + " From GamePlayWorker has finished");
+      @Override
+      public void onBust(int player, int rollNumber, int die1, int die2) {
+          // rolled the same as first roll so this turn gets 0
+          if (record != null) {
+              record.roll(player, game.getTurnNumber(), rollNumber, die1, die2) ;
+          }
+          if (journalGame != null) {
+              journalGame.roll(player, game.getTurnNumber() + 1, rollNumber, die1, die2, true, 0) ;
+          }
+          ActivePlayer ap = seats[player] ;
+          ap.out.bust(game.getTurnNumber(), rollNumber, game.getScore(player), game.getScore(1 - player), die1, die2) ;
+          ap.send() ;
+      }
+
+      @Override
+      public void onTurnEnd(int player, int turnTotal, int score) {
+          if (record != null) {
+              record.turnEnd(player, game.getTurnNumber(), turnTotal) ;
+          }
       }
 
       public void playGame() {
@@ -391,15 +391,15 @@ class GamePlayWorker extends Thread implements RunnableRecycler {
            if (false) {
                try {
                  Thread.sleep(ROLL_TIME);                 // sleep 1/4 second
-                 ap1.output.println(WINNER_MESSAGE);      // notify player 1 they won
+                 ap1.out.result(MessageEncoder.WIN, MessageEncoder.FAIR_PLAY, 0, 0, true);      // notify player 1 they won
                  System.out.println(String.format("     > Player %s WON!!!", ap1.name));
-                 ap2.output.println(LOSER_MESSAGE);     // notify player 2 they lost
+                 ap2.out.result(MessageEncoder.LOSE, MessageEncoder.FAIR_PLAY, 0, 0, false);     // notify player 2 they lost
                  System.out.println(String.format("     > Player %s Lost!!!", ap2.name));
                } catch (InterruptedException e) {}
                  finally {
                    // close these sockets.
-                   try { ap1.socket.close(); } catch (IOException e) {}
-                   try { ap2.socket.close(); } catch (IOException e) {}
+                   ap1.close();
+                   ap2.close();
                }
            } else {
 
@@ -409,134 +409,108 @@ class GamePlayWorker extends Thread implements RunnableRecycler {
                notifyNameOfOpponent();
 
                 // Determine which player goes first.
-               currentPlayer = getWhoGoesFirst();
-
-               // set socket timeouts
-               ap1.setSocketTimeout(PLAYER_INPUT_TIMEOUT); // TIMEOUT is in milliseconds
-               ap2.setSocketTimeout(PLAYER_INPUT_TIMEOUT);
+               newGame(getWhoGoesFirst());
 
                try {
-                   // the game turn loop
-                   for(int i=0; i<NUMBER_OF_TURNS; i++)
+                   // the game turn loop: the engine says whose turn it is until the last turn is over
+                   while (!game.isOver())
                    {
+                       currentPlayer = seats[game.getCurrentPlayer()];
                        try {
-                           currentPlayer.takeTurn(i, playerData);
-                           currentPlayer = currentPlayer.opponent;
-
-                           // swap the scores
-                           int n = playerData.player0Score;
-                           playerData.player0Score = playerData.player1Score;
-                           playerData.player1Score = n;
+                           currentPlayer.takeTurn();
 
                        } catch (GamePlayWorker.ActivePlayerTimeoutException apte) {
                            // currentPlayer player timed out so they loose the game
-                           logGameOutcome(apte.winner.name, playerData.player1Score, apte.loser.name, playerData.player0Score, "TIMEOUT") ;
-                           apte.winner.output.println(String.format(WINNER_MESSAGE_BY_TIMEOUT, apte.loser.name));
-                           apte.winner.output.println(String.format(FINAL_SCORE, apte.winner.name, playerData.player1Score, apte.loser.name, playerData.player0Score));
-
-                           apte.loser.output.println(LOSER_MESSAGE_BY_TIMEOUT);
-                           apte.loser.output.println(String.format(FINAL_SCORE, apte.winner.name, playerData.player1Score, apte.loser.name, playerData.player0Score));
-
+                           timedOut(apte.winner, apte.loser) ;
                            return ;
                        } catch (GamePlayWorker.ActivePlayerDisconnectException apde) {
                            // currentPlayer player Disconnected out so they loose the game
-                           logGameOutcome(apde.winner.name, playerData.player1Score, apde.loser.name, playerData.player0Score, "DISCONNECT") ;
-                           apde.winner.output.println(String.format(WINNER_MESSAGE_BY_DISCONNECT, apde.loser.name));
-                           apde.winner.output.println(String.format(FINAL_SCORE, apde.winner.name, playerData.player1Score, apde.loser.name, playerData.player0Score));
+                           disconnected(apde.winner, apde.loser) ;
                            return ;
                        } catch (GamePlayWorker.ActivePlayerStopException apse) {
                            // currentPlayer player Disconnected out so they loose the game
-                           logGameOutcome(apse.winner.name, playerData.player1Score, apse.loser.name, playerData.player0Score, "STOP") ;
-                           apse.winner.output.println(String.format(WINNER_MESSAGE_BY_FORFEIT, apse.loser.name));
-                           apse.winner.output.println(String.format(FINAL_SCORE, apse.winner.name, playerData.player1Score, apse.loser.name, playerData.player0Score));
-
-                           apse.loser.output.println(LOSER_MESSAGE_BY_FORFEIT);
-                           apse.loser.output.println(String.format(FINAL_SCORE, apse.winner.name, playerData.player1Score, apse.loser.name, playerData.player0Score));
-                           return ;
-                       }
-                       try {
-                           currentPlayer.takeTurn(i, playerData);
-                           currentPlayer = currentPlayer.opponent;
-
-                           // swap the scores
-                           int n = playerData.player0Score;
-                           playerData.player0Score = playerData.player1Score;
-                           playerData.player1Score = n;
-
-                       } catch (GamePlayWorker.ActivePlayerTimeoutException apte) {
-                           // currentPlayer player timed out so they loose the game
-                           logGameOutcome(apte.winner.name, playerData.player1Score, apte.loser.name, playerData.player0Score, "TIMEOUT") ;
-                           apte.winner.output.println(String.format(WINNER_MESSAGE_BY_TIMEOUT, apte.loser.name));
-                           apte.winner.output.println(String.format(FINAL_SCORE, apte.winner.name, playerData.player1Score, apte.loser.name, playerData.player0Score));
-
-                           apte.loser.output.println(LOSER_MESSAGE_BY_TIMEOUT);
-                           apte.loser.output.println(String.format(FINAL_SCORE, apte.winner.name, playerData.player1Score, apte.loser.name, playerData.player0Score));
-                           return ;
-                       } catch (GamePlayWorker.ActivePlayerDisconnectException apde) {
-                           // currentPlayer player Disconnected out so they loose the game
-                           logGameOutcome(apde.winner.name, playerData.player1Score, apde.loser.name, playerData.player0Score, "DISCONNECT") ;
-                           apde.winner.output.println(String.format(WINNER_MESSAGE_BY_DISCONNECT, apde.loser.name));
-                           apde.winner.output.println(String.format(FINAL_SCORE, apde.winner.name, playerData.player1Score, apde.loser.name, playerData.player0Score));
-                           return ;
-                       } catch (GamePlayWorker.ActivePlayerStopException apse) {
-                           // currentPlayer player Disconnected out so they loose the game
-                           logGameOutcome(apse.winner.name, playerData.player1Score, apse.loser.name, playerData.player0Score, "STOP") ;
-                           apse.winner.output.println(String.format(WINNER_MESSAGE_BY_FORFEIT, apse.loser.name));
-                           apse.winner.output.println(String.format(FINAL_SCORE, apse.winner.name, playerData.player1Score, apse.loser.name, playerData.player0Score));
-
-                           apse.loser.output.println(LOSER_MESSAGE_BY_FORFEIT);
-                           apse.loser.output.println(String.format(FINAL_SCORE, apse.winner.name, playerData.player1Score, apse.loser.name, playerData.player0Score));
+                           stopped(apse.winner, apse.loser) ;
                            return ;
                        }
                    }
 
                    // notifiy the winner and the loser
-                   if (playerData.player0Score > playerData.player1Score) {
-                       logGameOutcome(currentPlayer.name, playerData.player0Score, currentPlayer.opponent.name, playerData.player1Score, "FAIR_PLAY") ;
-                       // winner notice
-                       currentPlayer.output.println(WINNER_MESSAGE);
-                       currentPlayer.output.println(String.format(FINAL_SCORE, currentPlayer.name, playerData.player0Score, currentPlayer.opponent.name, playerData.player1Score));
-                       // loser notice
-                       currentPlayer.opponent.output.println(LOSER_MESSAGE);
-                       currentPlayer.opponent.output.println(String.format(FINAL_SCORE, currentPlayer.name, playerData.player0Score, currentPlayer.opponent.name, playerData.player1Score));
-                   } else if (playerData.player0Score < playerData.player1Score) {
-                       logGameOutcome(currentPlayer.opponent.name, playerData.player1Score, currentPlayer.name, playerData.player0Score, "FAIR_PLAY") ;
-                       // winner notice
-                       currentPlayer.opponent.output.println(WINNER_MESSAGE);
-                       currentPlayer.opponent.output.println(String.format(FINAL_SCORE, currentPlayer.name, playerData.player0Score, currentPlayer.opponent.name, playerData.player1Score));
-                       // loser notice
-                       currentPlayer.output.println(LOSER_MESSAGE);
-                       currentPlayer.output.println(String.format(FINAL_SCORE, currentPlayer.name, playerData.player0Score, currentPlayer.opponent.name, playerData.player1Score));
-                   } else { // it's a draw
-                       logGameOutcome(currentPlayer.opponent.name, playerData.player1Score, currentPlayer.name, playerData.player0Score, "FAIR_PLAY||TIE") ;
-                       currentPlayer.opponent.output.println(TIE_MESSAGE);
-                       currentPlayer.opponent.output.println(String.format(FINAL_SCORE, currentPlayer.name, playerData.player0Score, currentPlayer.opponent.name, playerData.player1Score));
-                       currentPlayer.output.println(TIE_MESSAGE);
-                       currentPlayer.output.println(String.format(FINAL_SCORE, currentPlayer.name, playerData.player0Score, currentPlayer.opponent.name, playerData.player1Score));
-                   }
+                   finished() ;
 
                } finally {
           //         System.out.println(String.format("Players %s and %s have finished their game", currentPlayer.name, currentPlayer.opponent.name));
                    // close each players open socket.
-                   try { ap1.socket.close();} catch (IOException e) {}
-                   try { ap2.socket.close();} catch (IOException e) {}
+                   ap1.close();
+                   ap2.close();
                }
            }
       }
 
-      public void logGameOutcome(String winnerName, int winnerScore, String loserName, int loserScore, String how) {
+      /*
+       * how a game ends: log the outcome and queue each player's result.  The caller then closes both players.
+       */
+      void timedOut(ActivePlayer winner, ActivePlayer loser) {
+          logGameOutcome(winner, loser, "TIMEOUT") ;
+          winner.result(MessageEncoder.WIN, MessageEncoder.TIMEOUT, winner);
+          loser.result(MessageEncoder.LOSE, MessageEncoder.TIMEOUT, winner);
+      }
+
+      void disconnected(ActivePlayer winner, ActivePlayer loser) {
+          logGameOutcome(winner, loser, "DISCONNECT") ;
+          winner.result(MessageEncoder.WIN, MessageEncoder.DISCONNECT, winner);
+      }
+
+      void stopped(ActivePlayer winner, ActivePlayer loser) {
+          logGameOutcome(winner, loser, "STOP") ;
+          winner.result(MessageEncoder.WIN, MessageEncoder.STOP, winner);
+          loser.result(MessageEncoder.LOSE, MessageEncoder.STOP, winner);
+      }
+
+      // every turn has been played
+      void finished() {
+          ActivePlayer first = seats[0], second = seats[1] ;
+          if (game.getWinner() != ChanceItGame.DRAW) {
+              ActivePlayer winner = seats[game.getWinner()] ;
+              logGameOutcome(winner, winner.opponent, "FAIR_PLAY") ;
+              // winner notice
+              winner.result(MessageEncoder.WIN, MessageEncoder.FAIR_PLAY, first);
+              // loser notice
+              winner.opponent.result(MessageEncoder.LOSE, MessageEncoder.FAIR_PLAY, first);
+          } else { // it's a draw
+              logGameOutcome(second, first, "FAIR_PLAY||TIE") ;
+              second.result(MessageEncoder.DRAW, MessageEncoder.FAIR_PLAY, first);
+              first.result(MessageEncoder.DRAW, MessageEncoder.FAIR_PLAY, first);
+          }
+      }
+
+      // for a draw winner is either player
+      public void logGameOutcome(ActivePlayer winner, ActivePlayer loser, String how) {
+          ServerMetrics.GAME_DURATION.recordSince(startedAt) ;
+          ServerMetrics.outcome(how).increment() ;
+          outcomeEvent.end() ;
+          if (outcomeEvent.shouldCommit()) {
+              outcomeEvent.winner = winner.name ;
+              outcomeEvent.winnerScore = game.getScore(winner.seat) ;
+              outcomeEvent.loser = loser.name ;
+              outcomeEvent.loserScore = game.getScore(loser.seat) ;
+              outcomeEvent.how = how ;
+              outcomeEvent.turns = Math.min(game.getTurnNumber() + 1, game.getTurnsPerPlayer()) ;
+              outcomeEvent.commit() ;
+          }
+          int winnerScore = game.getScore(winner.seat) ;
           if (null != gameLog) {
-              synchronized (gameLog) {
-                  try {
-
-                                    /* csv header: winner,wscore,loser,lscore,how */
-                      gameLog.write(String.format("%s,%s,%s,%s,%s\n",
-                                  /* winner => */  winnerName, winnerScore,
-                                  /* loser => */   loserName, loserScore,
-                                                   how));
-                      gameLog.flush() ;  // leaving this uncomented for now.
-                  } catch (IOException e) {}
-              }
+              // queued for the GameLogWriter thread; this never blocks the game
+              gameLog.log(winner.name, winnerScore, loser.name, game.getScore(loser.seat), how, seed) ;
+          }
+          if (null != record) {
+              // queued for the GameRecorder thread; neither does this
+              boolean draw = game.isOver() && game.getWinner() == ChanceItGame.DRAW ;
+              recorder.record(record.finish(draw ? GameRecord.DRAW : winner.seat, winnerScore)) ;
+              record = null ;
+          }
+          if (null != leaderboard) {
+              // ratings, records and ranks
+              leaderboard.record(winner.name, winnerScore, loser.name, game.getScore(loser.seat), how) ;
           }
       }
 
@@ -545,14 +519,47 @@ class GamePlayWorker extends Thread implements RunnableRecycler {
           // let each player know that another player has registerred
           try {
 
-              Thread.sleep(1000 * OPPONENT_NOTIFY_DELAY); // arbitrary delay
-              ap1.output.println("Opponent: " + ap2.name);
-              ap2.output.println("Opponent: " + ap1.name);
+              pause(1000 * OPPONENT_NOTIFY_DELAY); // arbitrary delay
+              announceOpponents();
 
           } catch (InterruptedException ie) {}
 
       }
 
+      void announceOpponents() {
+          ap1.out.opponent();
+          ap2.out.opponent();
+          ap1.send();
+          ap2.send();
+      }
+
+      /*
+       * wait millis on the timing wheel: the timer's expire() unparks us.  Takes the place of Thread.sleep(), and
+       * like it throws InterruptedException.
+       */
+      void pause(int millis) throws InterruptedException {
+          if (millis <= 0) {
+              return ;
+          }
+          resumed = false ;
+          pausing = Thread.currentThread() ;
+          long timer = ServerTimers.wheel().schedule(this, millis) ;
+          while (!resumed) {
+              LockSupport.park(this) ;
+              if (Thread.interrupted()) {
+                  ServerTimers.wheel().cancel(timer) ;
+                  throw new InterruptedException() ;
+              }
+          }
+      }
+
+      // TimingWheel.Task: the pause is over
+      @Override
+      public void expire(long handle) {
+          resumed = true ;
+          LockSupport.unpark(pausing) ;
+      }
+
       public ActivePlayer getWhoGoesFirst() {
 
           ActivePlayer whoGoesFirst = null ;
@@ -566,14 +573,16 @@ class GamePlayWorker extends Thread implements RunnableRecycler {
 
               if (player1Roll > player2Roll) {
                   whoGoesFirst = ap1;
-                  ap1.output.println("Your roll was: " + player1Roll + ". Opponent roll was: " + player2Roll + ". You go first.");
-                  ap2.output.println("Your roll was: " + player2Roll + ". Opponent roll was: " + player1Roll + ". " + ap1.name + " goes first.");
+                  ap1.out.rollOff(player1Roll, player2Roll, true);
+                  ap2.out.rollOff(player2Roll, player1Roll, false);
               } else if (player1Roll < player2Roll) {
                   whoGoesFirst = ap2;
-                  ap1.output.println("Your roll was: " + player1Roll + ". Opponent roll was: " + player2Roll + ". " + ap2.name + " goes first.");
-                  ap2.output.println("Your roll was: " + player2Roll + ". Opponent roll was: " + player1Roll + ". You go first.");
+                  ap1.out.rollOff(player1Roll, player2Roll, false);
+                  ap2.out.rollOff(player2Roll, player1Roll, true);
               }
           }
+          ap1.send();
+          ap2.send();
 
           return whoGoesFirst;
       }
@@ -0,0 +1,56 @@
+package com.chanceit;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/*
+ * The GamePlayWorker executor for executor_mode=platform: a thread per game being played, between minGames and
+ * maxGames threads, and a bounded queue of paired games waiting for one.
+ *
+ * The PoolSizer moves the core size with demand: up when paired games wait longer than the latency target for a
+ * thread, down when threads sit idle.  The queue is bounded, so once it is full the pool also grows past its core
+ * size, up to maxGames, on its own.  A game that finds the queue full and every thread busy is turned away: both players
+ * get "SERVER BUSY, RETRY IN N s".  AdmissionControl normally stops new connections well before that.
+ */
+class GamePool extends ThreadPoolExecutor {
+
+  private final int minGames ;
+  private final int maxGames ;
+  private final LongAccumulator maxStartDelay = new LongAccumulator(Long::max, 0) ;  // since the PoolSizer last looked
+
+  GamePool(int initGames, int minGames, int maxGames, long keepAliveMillis, int queueSize, AdmissionControl admission) {
+    super(Math.max(1, minGames), Math.max(1, Math.max(minGames, maxGames)), keepAliveMillis, TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<Runnable>(Math.max(1, queueSize)), turnAway(admission)) ;
+    this.minGames = getCorePoolSize() ;
+    this.maxGames = getMaximumPoolSize() ;
+    setCorePoolSize(Math.max(this.minGames, Math.min(this.maxGames, initGames))) ;
+  }
+
+  private static RejectedExecutionHandler turnAway(final AdmissionControl admission) {
+    return new RejectedExecutionHandler() {
+      public void rejectedExecution(Runnable r, ThreadPoolExecutor pool) {
+        ServerMetrics.GAMES_TURNED_AWAY.increment() ;
+        ((GamePlayWorker) r).turnAway(admission.busyLine()) ;
+      }
+    } ;
+  }
+
+  @Override
+  protected void beforeExecute(Thread t, Runnable r) {
+    super.beforeExecute(t, r) ;
+    long delay = System.nanoTime() - ((GamePlayWorker) r).pairedAt ;
+    ServerMetrics.PAIRED_TO_STARTED.record(delay) ;
+    maxStartDelay.accumulate(delay) ;
+  }
+
+  // the longest a game waited for a thread since the last call
+  long takeMaxStartDelay() {
+    return maxStartDelay.getThenReset() ;
+  }
+
+  int getMinGames() { return minGames ; }
+  int getMaxGames() { return maxGames ; }
+}
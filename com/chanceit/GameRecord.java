@@ -0,0 +1,81 @@
+package com.chanceit;
+
+import java.util.Arrays;
+
+/*
+ * Everything about one game that GameRecorder persists: the players, the start and end times, the winner, and every
+ * turn and roll.  A GamePlayWorker fills it in on its own thread as the engine reports the game (see
+ * GamePlayWorker.onRoll() etc.) and hands it to the GameRecorder once the game is over; after that it belongs to the
+ * recorder's writer thread.
+ *
+ * Turns and rolls are kept as rows of ints in two growable arrays rather than an object per roll.
+ */
+final class GameRecord {
+
+  static final int DRAW = -1 ;   // winner, when nobody won
+
+  // a turn: seat, turn# (from 1), first roll die 1, first roll die 2, turn score
+  static final int TURN_FIELDS = 5 ;
+  // a roll: seat, turn# (from 1), roll# (from 1), die 1, die 2
+  static final int ROLL_FIELDS = 5 ;
+
+  final String[] names ;          // names[seat]; seat 0 went first
+  final long startTime ;          // System.currentTimeMillis()
+  long endTime ;
+  int winner = DRAW ;             // a seat or DRAW
+  int winnerScore ;
+
+  int[] turns = new int[TURN_FIELDS * 40] ;
+  int turnCount ;
+  int[] rolls = new int[ROLL_FIELDS * 128] ;
+  int rollCount ;
+
+  private int firstDie1, firstDie2 ;  // of the turn in progress
+
+  GameRecord(String firstName, String secondName) {
+    this.names = new String[] { firstName, secondName } ;
+    this.startTime = System.currentTimeMillis() ;
+  }
+
+  // turnNumber and rollNumber as the engine counts them: turnNumber from 0, rollNumber from 1
+  void roll(int seat, int turnNumber, int rollNumber, int die1, int die2) {
+    if (rollNumber == 1) {
+      firstDie1 = die1 ;
+      firstDie2 = die2 ;
+    }
+    if (rolls.length < (rollCount + 1) * ROLL_FIELDS) {
+      rolls = Arrays.copyOf(rolls, rolls.length * 2) ;
+    }
+    int i = rollCount++ * ROLL_FIELDS ;
+    rolls[i] = seat ;
+    rolls[i + 1] = turnNumber + 1 ;
+    rolls[i + 2] = rollNumber ;
+    rolls[i + 3] = die1 ;
+    rolls[i + 4] = die2 ;
+  }
+
+  void turnEnd(int seat, int turnNumber, int turnScore) {
+    if (turns.length < (turnCount + 1) * TURN_FIELDS) {
+      turns = Arrays.copyOf(turns, turns.length * 2) ;
+    }
+    int i = turnCount++ * TURN_FIELDS ;
+    turns[i] = seat ;
+    turns[i + 1] = turnNumber + 1 ;
+    turns[i + 2] = firstDie1 ;
+    turns[i + 3] = firstDie2 ;
+    turns[i + 4] = turnScore ;
+  }
+
+  // winner is a seat or DRAW; score is the winning score (either score for a draw)
+  GameRecord finish(int winner, int score) {
+    this.winner = winner ;
+    this.winnerScore = score ;
+    this.endTime = System.currentTimeMillis() ;
+    return this ;
+  }
+
+  // rows this game adds to Games, Turns and TurnRolls
+  int rows() {
+    return 1 + turnCount + rollCount ;
+  }
+}
@@ -0,0 +1,331 @@
+package com.chanceit;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import javax.sql.DataSource;
+
+/*
+ * The database writer stage: persists every game, turn and roll to the Games, Turns and TurnRolls tables (the
+ * com.chanceit.orm models), and each player to Players.
+ *
+ * Game threads never touch JDBC.  A GamePlayWorker fills in a GameRecord as the game is played and offers the finished
+ * record to a BoundedRing, which never blocks.  A single writer thread takes the records off and writes them with JDBC
+ * batch inserts (addBatch/executeBatch) over the c3p0 pool, one transaction per batch:
+ *   • as soon as db_batch_size games are waiting, or
+ *   • db_flush_interval milliseconds after the oldest unwritten game arrived.
+ *
+ * Backpressure: if db_queue_size games are already waiting the new one is dropped and counted rather than stalling the
+ * game.  A batch the database rejects is rolled back and its games counted as failed.  The queue depth and its
+ * high-water mark, drops, failures and batch times are printed every db_monitor_interval seconds and by close().
+ *
+ * Games.id and Players.id are assigned here, carrying on from the largest id in each table at start-up, so only one
+ * server may write to a database at a time.  Players are identified by name.
+ */
+class GameRecorder implements Runnable {
+
+  // the tables, for a database that doesn't have them yet (db_create_tables).  Valid for MySQL and H2
+  private static final String[] CREATE_TABLES = {
+    "CREATE TABLE IF NOT EXISTS Players (id INT NOT NULL PRIMARY KEY, name VARCHAR(255) NOT NULL UNIQUE)",
+    "CREATE TABLE IF NOT EXISTS Games (id BIGINT NOT NULL PRIMARY KEY, player1 INT NOT NULL, player2 INT NOT NULL, "
+        + "startTime TIMESTAMP NULL, endTime TIMESTAMP NULL, winner INT NULL, score INT NOT NULL)",
+    "CREATE TABLE IF NOT EXISTS Turns (gameId BIGINT NOT NULL, playerId INT NOT NULL, turnNum INT NOT NULL, "
+        + "firstRollDie1 INT NOT NULL, firstRollDie2 INT NOT NULL, turnScore INT NOT NULL, PRIMARY KEY (gameId, playerId, turnNum))",
+    "CREATE TABLE IF NOT EXISTS TurnRolls (gameId BIGINT NOT NULL, playerId INT NOT NULL, turnNum INT NOT NULL, rollNum INT NOT NULL, "
+        + "die1 INT NOT NULL, die2 INT NOT NULL, PRIMARY KEY (gameId, playerId, turnNum, rollNum))",
+  } ;
+
+  private static final String INSERT_PLAYER = "INSERT INTO Players (id, name) VALUES (?, ?)" ;
+  private static final String INSERT_GAME = "INSERT INTO Games (id, player1, player2, startTime, endTime, winner, score) VALUES (?, ?, ?, ?, ?, ?, ?)" ;
+  private static final String INSERT_TURN = "INSERT INTO Turns (gameId, playerId, turnNum, firstRollDie1, firstRollDie2, turnScore) VALUES (?, ?, ?, ?, ?, ?)" ;
+  private static final String INSERT_ROLL = "INSERT INTO TurnRolls (gameId, playerId, turnNum, rollNum, die1, die2) VALUES (?, ?, ?, ?, ?, ?)" ;
+
+  private final BoundedRing<GameRecord> ring ;
+  private final DataSource dataSource ;
+  private final int batchSize ;
+  private final long flushIntervalNanos ;
+  private final long monitorIntervalNanos ;
+
+  // writer thread only
+  private final List<GameRecord> batch = new ArrayList<>() ;
+  private final Map<String, Integer> playerIds = new HashMap<>() ;
+  private int lastPlayerId ;
+  private long lastGameId ;
+
+  private final AtomicInteger maxQueueDepth = new AtomicInteger() ;
+  private final LongAdder dropped = new LongAdder() ;
+  private final LongAdder failed = new LongAdder() ;
+  private final LongAdder written = new LongAdder() ;
+  private final LongAdder rows = new LongAdder() ;
+  private final LongAdder batches = new LongAdder() ;
+  private final LongAdder batchNanos = new LongAdder() ;
+  private volatile long maxBatchNanos ;
+  private volatile Thread thread ;
+  private volatile boolean run = true ;
+  private final AtomicInteger recording = new AtomicInteger() ;  // record() calls under way
+
+  /*
+   * creates the tables if asked to, and reads the ids already taken.  Throws if the database can't be reached, so the
+   * server can say so at start-up rather than at the first game.
+   */
+  GameRecorder(DataSource dataSource, Properties prop) throws SQLException {
+    this.dataSource = dataSource ;
+    this.ring = new BoundedRing<>(Integer.parseInt(prop.getProperty("db_queue_size", "4096"))) ;
+    this.batchSize = Math.max(1, Integer.parseInt(prop.getProperty("db_batch_size", "32"))) ;
+    this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, Integer.parseInt(prop.getProperty("db_flush_interval", "500")))) ;
+    this.monitorIntervalNanos = TimeUnit.SECONDS.toNanos(Integer.parseInt(prop.getProperty("db_monitor_interval", "10"))) ;
+
+    try (Connection c = dataSource.getConnection(); Statement s = c.createStatement()) {
+      if (Boolean.parseBoolean(prop.getProperty("db_create_tables", "true"))) {
+        for (String ddl : CREATE_TABLES) {
+          s.execute(ddl) ;
+        }
+      }
+      try (ResultSet rs = s.executeQuery("SELECT id, name FROM Players")) {
+        while (rs.next()) {
+          playerIds.put(rs.getString(2), rs.getInt(1)) ;
+          lastPlayerId = Math.max(lastPlayerId, rs.getInt(1)) ;
+        }
+      }
+      try (ResultSet rs = s.executeQuery("SELECT MAX(id) FROM Games")) {
+        lastGameId = rs.next() ? rs.getLong(1) : 0 ;
+      }
+    }
+  }
+
+  /*
+   * the c3p0 pool of com.chanceit.conpool.DataSource, configured from the db_* properties.  It is loaded by name so the
+   * server builds and runs without c3p0 and a JDBC driver on the classpath when persist=false.
+   */
+  static DataSource pooledDataSource(Properties prop) throws ReflectiveOperationException {
+    try {
+      Class<?> pool = Class.forName("com.chanceit.conpool.DataSource") ;
+      Object instance = pool.getMethod("getInstance", Properties.class).invoke(null, prop) ;
+      return (DataSource) pool.getMethod("getPool").invoke(instance) ;
+    } catch (LinkageError e) {
+      throw new ClassNotFoundException("c3p0 is not on the classpath (see run.sh)", e) ;
+    }
+  }
+
+  public void start() {
+    thread = new Thread(this, "GameRecorder") ;
+    thread.start() ;
+  }
+
+  /*
+   * called by GamePlayWorkers with a finished game.  Never blocks; returns false (and counts a drop) if the queue is full.
+   */
+  boolean record(GameRecord game) {
+    recording.incrementAndGet() ;
+    try {
+      if (!run || !ring.offer(game)) {
+        dropped.increment() ;  // full, or closed: the writer will not take it
+        return false ;
+      }
+      int depth = ring.size() ;
+      if (depth > maxQueueDepth.get()) {
+        maxQueueDepth.accumulateAndGet(depth, Math::max) ;
+      }
+      if (depth >= batchSize) {
+        LockSupport.unpark(thread) ;  // a full batch is waiting
+      }
+      return true ;
+    } finally {
+      recording.decrementAndGet() ;
+    }
+  }
+
+  // games waiting to be written
+  int getQueueDepth() {
+    return ring.size() ;
+  }
+
+  int getMaxQueueDepth() {
+    return maxQueueDepth.get() ;
+  }
+
+  long getDropped() {
+    return dropped.sum() ;
+  }
+
+  long getFailed() {
+    return failed.sum() ;
+  }
+
+  long getWritten() {
+    return written.sum() ;
+  }
+
+  /*
+   * stop taking games, write out everything queued and return.  A record() after this is counted as dropped; one
+   * already under way is waited for, so every game is either written or counted.
+   */
+  public void close() {
+    run = false ;
+    while (recording.get() > 0) {
+      Thread.yield() ;  // a record() that saw run still true is publishing its game
+    }
+    Thread t = thread ;
+    if (t != null) {
+      LockSupport.unpark(t) ;
+      try {
+        t.join() ;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt() ;
+      }
+    }
+    System.out.println(status()) ;
+  }
+
+  String status() {
+    long n = batches.sum() ;
+    return String.format("GameRecorder: queued %d (max %d of %d), wrote %d games in %d rows, %d batches (avg %.1f ms, max %.1f ms), dropped %d, failed %d",
+        getQueueDepth(), getMaxQueueDepth(), ring.capacity(), getWritten(), rows.sum(), n,
+        n == 0 ? 0.0 : batchNanos.sum() / 1e6 / n, maxBatchNanos / 1e6, getDropped(), getFailed()) ;
+  }
+
+  @Override
+  public void run() {
+    long oldestPending = 0 ;  // nanoTime the first game of the current batch was taken
+    long lastReport = System.nanoTime() ;
+
+    while (true) {
+      boolean stopping = !run ;
+
+      GameRecord game ;
+      while (batch.size() < batchSize && (game = ring.poll()) != null) {
+        if (batch.isEmpty()) {
+          oldestPending = System.nanoTime() ;
+        }
+        batch.add(game) ;
+      }
+
+      if (!batch.isEmpty() && (stopping || batch.size() >= batchSize || System.nanoTime() - oldestPending >= flushIntervalNanos)) {
+        flush() ;
+        continue ;  // more may be waiting
+      }
+
+      if (stopping) {
+        break ;  // everything published before close() has been written
+      }
+
+      if (monitorIntervalNanos > 0 && System.nanoTime() - lastReport >= monitorIntervalNanos) {
+        System.out.println(status()) ;
+        lastReport = System.nanoTime() ;
+      }
+
+      LockSupport.parkNanos(this, !batch.isEmpty() ? flushIntervalNanos - (System.nanoTime() - oldestPending) : flushIntervalNanos) ;
+    }
+  }
+
+  // writer thread only: the batch in one transaction
+  private void flush() {
+    long start = System.nanoTime() ;
+    int playerMark = lastPlayerId ;
+    List<String> newPlayers = new ArrayList<>() ;
+    int batchRows = 0 ;
+
+    try (Connection c = dataSource.getConnection()) {
+      c.setAutoCommit(false) ;
+      try (PreparedStatement players = c.prepareStatement(INSERT_PLAYER) ;
+           PreparedStatement games = c.prepareStatement(INSERT_GAME) ;
+           PreparedStatement turns = c.prepareStatement(INSERT_TURN) ;
+           PreparedStatement rolls = c.prepareStatement(INSERT_ROLL)) {
+
+        for (GameRecord g : batch) {
+          long gameId = ++lastGameId ;
+          int[] seatIds = { playerId(g.names[0], players, newPlayers), playerId(g.names[1], players, newPlayers) } ;
+
+          games.setLong(1, gameId) ;
+          games.setInt(2, seatIds[0]) ;
+          games.setInt(3, seatIds[1]) ;
+          games.setTimestamp(4, new Timestamp(g.startTime)) ;
+          games.setTimestamp(5, new Timestamp(g.endTime)) ;
+          if (g.winner == GameRecord.DRAW) {
+            games.setNull(6, Types.INTEGER) ;
+          } else {
+            games.setInt(6, seatIds[g.winner]) ;
+          }
+          games.setInt(7, g.winnerScore) ;
+          games.addBatch() ;
+
+          for (int i = 0; i < g.turnCount * GameRecord.TURN_FIELDS; i += GameRecord.TURN_FIELDS) {
+            turns.setLong(1, gameId) ;
+            turns.setInt(2, seatIds[g.turns[i]]) ;
+            for (int f = 1; f < GameRecord.TURN_FIELDS; f++) {
+              turns.setInt(2 + f, g.turns[i + f]) ;
+            }
+            turns.addBatch() ;
+          }
+
+          for (int i = 0; i < g.rollCount * GameRecord.ROLL_FIELDS; i += GameRecord.ROLL_FIELDS) {
+            rolls.setLong(1, gameId) ;
+            rolls.setInt(2, seatIds[g.rolls[i]]) ;
+            for (int f = 1; f < GameRecord.ROLL_FIELDS; f++) {
+              rolls.setInt(2 + f, g.rolls[i + f]) ;
+            }
+            rolls.addBatch() ;
+          }
+          batchRows += g.rows() ;
+        }
+
+        if (!newPlayers.isEmpty()) {
+          players.executeBatch() ;
+        }
+        games.executeBatch() ;
+        turns.executeBatch() ;
+        rolls.executeBatch() ;
+        c.commit() ;
+      } catch (SQLException e) {
+        c.rollback() ;
+        throw e ;
+      }
+
+      written.add(batch.size()) ;
+      rows.add(batchRows + newPlayers.size()) ;
+    } catch (SQLException e) {
+      System.out.println("GameRecorder: could not write " + batch.size() + " games: " + e) ;
+      failed.add(batch.size()) ;
+      // the new players were not written either
+      for (String name : newPlayers) {
+        playerIds.remove(name) ;
+      }
+      lastPlayerId = playerMark ;
+    }
+
+    long took = System.nanoTime() - start ;
+    batches.increment() ;
+    batchNanos.add(took) ;
+    if (took > maxBatchNanos) {
+      maxBatchNanos = took ;
+    }
+    batch.clear() ;
+  }
+
+  // the id for a player's name, adding a new player to this batch's inserts
+  private int playerId(String name, PreparedStatement players, List<String> newPlayers) throws SQLException {
+    Integer id = playerIds.get(name) ;
+    if (id == null) {
+      id = ++lastPlayerId ;
+      playerIds.put(name, id) ;
+      newPlayers.add(name) ;
+      players.setInt(1, id) ;
+      players.setString(2, name) ;
+      players.addBatch() ;
+    }
+    return id ;
+  }
+}
@@ -0,0 +1,32 @@
+package com.chanceit;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/*
+ * The game executor for game_scheduler=events: a few threads, one per core by default, running GameSessions a step
+ * at a time, so the number of games in play is not bounded by threads.
+ *
+ * It is a ForkJoinPool in async (FIFO) mode.  Each scheduler thread has a deque of its own; events from the NIO
+ * loops and the timer thread land in the pool's submission queues, and a scheduler thread that runs out of work
+ * steals from the others' deques and from those queues, so a burst of events on one thread is spread over all of
+ * them.  A step never blocks (see GameSession), so the threads are only ever busy playing.
+ */
+final class GameScheduler extends ForkJoinPool {
+
+  GameScheduler(int threads) {
+    super(threads > 0 ? threads : Runtime.getRuntime().availableProcessors(), GameScheduler::newThread,
+          (thread, e) -> e.printStackTrace(), true) ;
+  }
+
+  private static ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool) ;
+    thread.setName("GameScheduler-" + thread.getPoolIndex()) ;
+    return thread ;
+  }
+
+  // steps waiting for a scheduler thread
+  long getQueued() {
+    return getQueuedSubmissionCount() + getQueuedTaskCount() ;
+  }
+}
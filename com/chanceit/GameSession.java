@@ -0,0 +1,326 @@
+package com.chanceit;
+
+import com.chanceit.engine.ChanceItGame;
+import com.chanceit.engine.Strategy;
+import com.chanceit.journal.RollJournal;
+import com.chanceit.timer.TimingWheel;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import jdk.jfr.EventType;
+
+/*
+ * A game for game_scheduler=events: a GamePlayWorker driven as a state machine on the GameScheduler instead of
+ * holding a thread for the whole game.
+ *
+ * Where playGame() would block in readLine() or pause(), a GameSession records what it is waiting for and returns.
+ * The next event runs it again, on whichever scheduler thread picks it up:
+ *   • a line from either player, or either connection closing (PlayerInbox.Listener)
+ *   • its one pending ServerTimers timer firing (TimingWheel.Task)
+ *
+ *   NEW         --first run-->           ANNOUNCING (OPPONENT_NOTIFY_DELAY)
+ *   ANNOUNCING  --timer-->               roll-off, first turn, then PROMPTED (or OVER if policies play every turn)
+ *   PROMPTED    --line-->                ROLLING (ROLL_TIME); a policy: command prompts again
+ *   PROMPTED    --timer / closed-->      OVER: TIMEOUT / DISCONNECT
+ *   ROLLING     --timer-->               the answer is played, then PROMPTED for the next decision or turn, or OVER
+ *
+ * Only the inbox of the player whose turn it is is read, so as with playGame() whatever the other player sends waits
+ * for their next prompt.  Players, rules, messages and outcome logging are all GamePlayWorker's.
+ *
+ * A game never runs on two threads at once: signal() counts events and only the first of a run submits the game,
+ * and run() keeps stepping until it has accounted for every event counted while it was running.
+ *
+ * The Turn and Prompt events span steps, so they have to be kept in fields, where they escape and the JIT can no longer
+ * leave out the allocation as it does in playGame().  They are only created while their event type is enabled; with
+ * no recording the fields stay null and a turn allocates nothing (GameSessionBenchmark).
+ */
+class GameSession extends GamePlayWorker implements PlayerInbox.Listener {
+
+  private static final int NEW        = 0 ;
+  private static final int ANNOUNCING = 1 ;
+  private static final int PROMPTED   = 2 ;
+  private static final int ROLLING    = 3 ;
+  private static final int OVER       = 4 ;
+
+  static final AtomicInteger ACTIVE = new AtomicInteger() ;  // games started and not yet over
+
+  private static final EventType TURN_EVENTS = EventType.getEventType(GameEvents.Turn.class) ;
+  private static final EventType PROMPT_EVENTS = EventType.getEventType(GameEvents.Prompt.class) ;
+
+  private final Executor scheduler ;
+  private final AtomicInteger signals = new AtomicInteger(1) ;  // the Matchmaker's execute() is the first
+  private final AtomicLong firedTimer = new AtomicLong(TimingWheel.NONE) ;
+
+  // owned by whichever thread is running the game
+  private int state = NEW ;
+  private long timer = TimingWheel.NONE ;
+  private ActivePlayer current ;
+  private String answer ;         // the command being rolled for
+  private long waitStarted ;      // System.nanoTime() of the prompt, or of the start of the roll
+  private GameEvents.Turn turnEvent ;      // null unless TURN_EVENTS is enabled
+  private GameEvents.Prompt promptEvent ;  // null unless PROMPT_EVENTS is enabled
+  private int turnNumber ;
+  private boolean policyUsed ;
+
+  GameSession(PlayerConnection pc1, PlayerConnection pc2, Properties prop, GameLogWriter gameLog, TurnPolicies policies,
+              GameRecorder recorder, RollJournal journal, Leaderboard leaderboard, Executor scheduler) {
+    super(pc1, pc2, prop, gameLog, policies, recorder, journal, leaderboard) ;
+    this.scheduler = scheduler ;
+  }
+
+  // PlayerInbox.Listener
+  @Override
+  public void inputArrived() {
+    signal() ;
+  }
+
+  // TimingWheel.Task
+  @Override
+  public void expire(long handle) {
+    firedTimer.set(handle) ;
+    signal() ;
+  }
+
+  private void signal() {
+    if (signals.getAndIncrement() == 0) {
+      scheduler.execute(this) ;
+    }
+  }
+
+  @Override
+  public void run() {
+    for (int n = signals.get(); n != 0; n = signals.addAndGet(-n)) {
+      try {
+        step() ;
+      } catch (RuntimeException e) {
+        // a bug must not leave two players connected to a game nobody is running
+        e.printStackTrace() ;
+        end() ;
+      }
+    }
+  }
+
+  private void step() {
+    if (state == OVER) {
+      return ;
+    }
+    if (state == NEW) {
+      start() ;
+      return ;
+    }
+
+    long fired = firedTimer.getAndSet(TimingWheel.NONE) ;
+    boolean due = (fired != TimingWheel.NONE && fired == timer) ;  // not a timer cancelled too late
+    if (due) {
+      timer = TimingWheel.NONE ;
+    }
+
+    switch (state) {
+      case ANNOUNCING:
+        if (due) {
+          announceOpponents() ;
+          newGame(getWhoGoesFirst()) ;
+          play() ;
+        }
+        break ;
+
+      case PROMPTED:
+        PlayerInbox inbox = current.connection.getInbox() ;
+        String line = inbox.poll() ;
+        if (line != null) {
+          cancelTimer() ;
+          answered(line) ;
+        } else if (inbox.isClosed()) {
+          // the player has terminated or disconnected the socket; this player forfeits the game.
+          cancelTimer() ;
+          game.forfeit(current.seat) ;
+          disconnected(current.opponent, current) ;
+          end() ;
+        } else if (due) {
+          game.forfeit(current.seat) ;
+          timedOut(current.opponent, current) ;
+          end() ;
+        }
+        break ;
+
+      case ROLLING:
+        if (due) {
+          rolled() ;
+        }
+        break ;
+    }
+  }
+
+  private void start() {
+    ACTIVE.incrementAndGet() ;
+    ServerMetrics.PAIRED_TO_STARTED.recordSince(pairedAt) ;
+    seatPlayers() ;
+    pc1.getInbox().listen(this) ;
+    pc2.getInbox().listen(this) ;
+    state = ANNOUNCING ;
+    timer = ServerTimers.wheel().schedule(this, 1000 * OPPONENT_NOTIFY_DELAY) ;
+  }
+
+  /*
+   * play on until a player has to be asked something or the game is over.  Turn policies answer here, as in
+   * ActivePlayer.takeTurn(), without a prompt or ROLL_TIME.
+   */
+  private void play() {
+    while (state != OVER) {
+      switch (game.getState()) {
+
+        case ChanceItGame.TURN_PENDING:
+          current = seats[game.getCurrentPlayer()] ;
+          currentPlayer = current ;
+          turnEvent = TURN_EVENTS.isEnabled() ? new GameEvents.Turn() : null ;
+          if (turnEvent != null) {
+            turnEvent.begin() ;
+          }
+          turnNumber = game.getTurnNumber() + 1 ;
+          policyUsed = false ;
+          game.startTurn() ;  // the engine reports the first roll through onRoll(), which shows the stats
+          break ;
+
+        case ChanceItGame.AWAITING_DECISION:
+          Strategy policy = (current.turnPolicy != null) ? current.turnPolicy : current.gamePolicy ;
+          if (policy == null) {
+            prompt() ;
+            return ;
+          }
+          policyUsed = true ;
+          if (policy.chanceIt(game)) {
+            game.chanceIt() ;
+          } else {
+            game.bank() ;
+          }
+          turnOver() ;
+          break ;
+
+        default:  // GAME_OVER
+          finished() ;
+          end() ;
+          return ;
+      }
+    }
+  }
+
+  private void prompt() {
+    // the stats of the roll go out in the same write
+    current.out.prompt() ;
+    current.send() ;
+    promptEvent = PROMPT_EVENTS.isEnabled() ? new GameEvents.Prompt() : null ;
+    if (promptEvent != null) {
+      promptEvent.begin() ;
+    }
+    waitStarted = System.nanoTime() ;
+    state = PROMPTED ;
+    if (PLAYER_INPUT_TIMEOUT > 0) {
+      timer = ServerTimers.wheel().schedule(this, PLAYER_INPUT_TIMEOUT) ;
+    }
+    if (current.connection.getInbox().isReady()) {
+      signal() ;  // the answer is already here: the loop in run() steps again
+    }
+  }
+
+  private void answered(String command) {
+    ServerMetrics.PROMPT_RESPONSE.recordSince(waitStarted) ;
+    if (promptEvent != null && promptEvent.shouldCommit()) {
+      promptEvent.player = current.name ;
+      promptEvent.turn = turnNumber ;
+      promptEvent.roll = game.getRollNumber() ;
+      promptEvent.answer = command ;
+      promptEvent.commit() ;
+    }
+    promptEvent = null ;
+
+    // 'policy:turn:SPEC' or 'policy:game:SPEC' hands the decisions over to the server (see TurnPolicies)
+    if (command.startsWith(TurnPolicies.POLICY_COMMAND)) {
+      current.adoptPolicy(command.substring(TurnPolicies.POLICY_COMMAND.length())) ;
+      play() ;
+      return ;
+    }
+
+    // simulate a human roll of the dice
+    answer = command ;
+    waitStarted = System.nanoTime() ;
+    if (ROLL_TIME > 0) {
+      state = ROLLING ;
+      timer = ServerTimers.wheel().schedule(this, ROLL_TIME) ;
+    } else {
+      rolled() ;
+    }
+  }
+
+  private void rolled() {
+    ServerMetrics.ROLL_TIME_OVERHEAD.record(System.nanoTime() - waitStarted - ROLL_TIME * 1000000L) ;
+    String command = answer ;
+    answer = null ;
+
+    // [Y/n] means pressing enter defaults to 'Y'
+    if (command.length() == 0 || command.startsWith("Y") || command.startsWith("chance-it")) {
+      game.chanceIt() ;
+    // 'n' means stop the turn
+    } else if (command.startsWith("n")) {
+      game.bank() ;
+    // 'stop' now means quit the game
+    } else if (command.startsWith("stop")) {
+      game.forfeit(current.seat) ;
+      stopped(current.opponent, current) ;
+      end() ;
+      return ;
+    }
+    // anything else: the player is prompted again
+    turnOver() ;
+    play() ;
+  }
+
+  // after a decision: if the turn is over a turn policy ends with it, and anything still queued goes out
+  private void turnOver() {
+    if (game.getState() == ChanceItGame.AWAITING_DECISION) {
+      return ;
+    }
+    current.turnPolicy = null ;
+    current.send() ;
+    if (turnEvent != null) {
+      turnEvent.end() ;
+      if (turnEvent.shouldCommit()) {
+        turnEvent.player = current.name ;
+        turnEvent.turn = turnNumber ;
+        turnEvent.rolls = game.getRollNumber() ;
+        turnEvent.turnTotal = game.getTurnTotal() ;
+        turnEvent.score = game.getScore(current.seat) ;
+        turnEvent.policy = policyUsed ;
+        turnEvent.commit() ;
+      }
+      turnEvent = null ;
+    }
+  }
+
+  private void cancelTimer() {
+    if (timer != TimingWheel.NONE) {
+      ServerTimers.wheel().cancel(timer) ;
+      timer = TimingWheel.NONE ;
+    }
+  }
+
+  // close each player's connection; their results go out first
+  private void end() {
+    if (state == OVER) {
+      return ;
+    }
+    boolean started = (state != NEW) ;
+    state = OVER ;
+    cancelTimer() ;
+    if (ap1 != null) {
+      ap1.close() ;
+      ap2.close() ;
+    } else {
+      pc1.close() ;
+      pc2.close() ;
+    }
+    if (started) {
+      ACTIVE.decrementAndGet() ;
+    }
+  }
+}
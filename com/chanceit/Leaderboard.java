@@ -0,0 +1,245 @@
+package com.chanceit;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Every player's record, kept up to date game by game, and their place in a ranking by rating.
+ *
+ * GamePlayWorker.logGameOutcome() calls record() once per game.  It moves both players' ratings (PlayerRatings) and
+ * their counters: wins, losses, ties, points for and against, and games by how they ended.  Counters are an
+ * AtomicLongArray per player, so games finishing at once never wait on each other for them.
+ *
+ * The ranking is an order-statistics index over ratings rather than over players: ratings are small integers, so a
+ * Fenwick tree keeps how many players are filed at each rating from rating_initial - 2048 to rating_initial + 2047
+ * (beyond that a rating is filed at the end of the range), and the players at one rating hang off it in a list.
+ * rank() is one prefix sum, O(log RANGE); top() finds the rating rank `from` falls in the same way and walks the lists
+ * from there, O(log RANGE + k).  The whole index is a 16 KB array that stays in cache, where a tree of players would
+ * miss it on every step down.  Players with the same rating share a rank (1, 2, 2, 4).  A game re-files both players
+ * under the leaderboard's lock; the index is touched for nothing else.
+ *
+ * At start-up replay() rebuilds it all, ratings included, by feeding the game_log CSV back through record() in the
+ * order the games finished.  LeaderboardEndpoint serves it over HTTP.
+ */
+class Leaderboard {
+
+  // how games end, as logGameOutcome() logs them; a tie is logged as FAIR_PLAY||TIE
+  static final String[] ENDINGS = { "FAIR_PLAY", "TIE", "TIMEOUT", "DISCONNECT", "STOP" } ;
+
+  // Standing.counts
+  static final int WINS           = 0 ;
+  static final int LOSSES         = 1 ;
+  static final int TIES           = 2 ;
+  static final int POINTS_FOR     = 3 ;
+  static final int POINTS_AGAINST = 4 ;
+  static final int ENDED          = 5 ;  // ENDED + i: games that ended as ENDINGS[i]
+
+  static final int RANGE = 1 << 12 ;  // ratings the index tells apart
+
+  static final class Standing {
+    final String name ;
+    final AtomicLongArray counts = new AtomicLongArray(ENDED + ENDINGS.length) ;
+
+    // the index, guarded by the Leaderboard
+    private int bucket = -1 ;  // the rating it is filed under, less lowest; -1 until its first game
+    private Standing prev ;    // the other players filed under that rating
+    private Standing next ;
+
+    Standing(String name) {
+      this.name = name ;
+    }
+
+    long games() {
+      return counts.get(WINS) + counts.get(LOSSES) + counts.get(TIES) ;
+    }
+  }
+
+  private final PlayerRatings ratings ;
+  private final ConcurrentHashMap<String, Standing> standings = new ConcurrentHashMap<String, Standing>() ;
+  private final int lowest ;  // the rating of bucket 0
+
+  // guarded by this
+  private final int[] tree = new int[RANGE + 1] ;  // Fenwick tree, 1 based, over RANGE - bucket: highest rating first
+  private final Standing[] heads = new Standing[RANGE] ;
+
+  Leaderboard(PlayerRatings ratings) {
+    this.ratings = ratings ;
+    this.lowest = ratings.getInitial() - RANGE / 2 ;
+  }
+
+  PlayerRatings getRatings() {
+    return ratings ;
+  }
+
+  int getRating(String name) {
+    return ratings.get(name) ;
+  }
+
+  int size() {
+    return standings.size() ;
+  }
+
+  Standing get(String name) {
+    return standings.get(name) ;
+  }
+
+  // one finished game; for a draw winner is either player
+  void record(String winner, int winnerScore, String loser, int loserScore, String how) {
+    boolean draw = how.endsWith("TIE") ;
+    ratings.record(winner, loser, draw) ;
+
+    Standing w = standing(winner) ;
+    Standing l = standing(loser) ;
+    int ending = ENDED + ending(how) ;
+    w.counts.incrementAndGet(draw ? TIES : WINS) ;
+    w.counts.addAndGet(POINTS_FOR, winnerScore) ;
+    w.counts.addAndGet(POINTS_AGAINST, loserScore) ;
+    w.counts.incrementAndGet(ending) ;
+    if (l != w) {
+      l.counts.incrementAndGet(draw ? TIES : LOSSES) ;
+      l.counts.addAndGet(POINTS_FOR, loserScore) ;
+      l.counts.addAndGet(POINTS_AGAINST, winnerScore) ;
+      l.counts.incrementAndGet(ending) ;
+    }
+
+    synchronized (this) {
+      refile(w) ;
+      if (l != w) {
+        refile(l) ;
+      }
+    }
+  }
+
+  private Standing standing(String name) {
+    Standing s = standings.get(name) ;
+    return (s != null) ? s : standings.computeIfAbsent(name, Standing::new) ;
+  }
+
+  private static int ending(String how) {
+    if (how.endsWith("TIE")) {
+      return 1 ;
+    }
+    for (int i = 0; i < ENDINGS.length; i++) {
+      if (ENDINGS[i].equals(how)) {
+        return i ;
+      }
+    }
+    return 0 ;
+  }
+
+  // 1 for the highest rated player, 1 + the number rated above them for everybody else; 0 for a name that has not
+  // finished a game
+  synchronized int rank(String name) {
+    Standing s = standings.get(name) ;
+    return (s == null || s.bucket < 0) ? 0 : 1 + prefix(RANGE - s.bucket - 1) ;
+  }
+
+  // up to k standings from place `from` (1 based) down
+  synchronized List<Standing> top(int from, int k) {
+    int skip = Math.max(0, from - 1) ;
+    int filed = prefix(RANGE) ;
+    List<Standing> out = new ArrayList<Standing>(Math.max(0, Math.min(k, filed - skip))) ;
+    if (skip >= filed) {
+      return out ;
+    }
+    // the last index whose prefix sum is <= skip: the bucket just after it holds place skip + 1
+    int i = 0 ;
+    for (int step = RANGE; step > 0; step >>= 1) {
+      if (i + step <= RANGE && tree[i + step] <= skip) {
+        i += step ;
+        skip -= tree[i] ;
+      }
+    }
+    for (int bucket = RANGE - i - 1; bucket >= 0 && out.size() < k; bucket--) {
+      for (Standing s = heads[bucket]; s != null && out.size() < k; s = s.next) {
+        if (skip > 0) {
+          skip-- ;
+        } else {
+          out.add(s) ;
+        }
+      }
+    }
+    return out ;
+  }
+
+  /*
+   * rebuild from a game log, oldest game first.  Lines are winner,wscore,loser,lscore,how,seed or, as logged before
+   * games had seeds, winner,wscore,loser,lscore,how; a log the server has appended to across that change has both.
+   * Header lines (one per server start) and lines that do not parse, e.g. a name with a comma in it, are skipped.
+   * Returns the games replayed.
+   */
+  long replay(String path) throws IOException {
+    long games = 0, skipped = 0 ;
+    try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8), 1 << 16)) {
+      String line ;
+      while ((line = in.readLine()) != null) {
+        if (line.startsWith("winner,") || line.isEmpty()) {
+          continue ;
+        }
+        String[] f = line.split(",", -1) ;
+        try {
+          if (f.length != 5 && f.length != 6) {
+            throw new NumberFormatException() ;
+          }
+          record(f[0], Integer.parseInt(f[1]), f[2], Integer.parseInt(f[3]), f[4]) ;
+          games++ ;
+        } catch (NumberFormatException e) {
+          skipped++ ;
+        }
+      }
+    }
+    if (skipped > 0) {
+      System.out.println(String.format("    leaderboard: skipped %d lines of %s that are not games", skipped, path)) ;
+    }
+    return games ;
+  }
+
+  // (re)file s under its current rating
+  private void refile(Standing s) {
+    int bucket = Math.max(0, Math.min(RANGE - 1, ratings.get(s.name) - lowest)) ;
+    if (bucket == s.bucket) {
+      return ;
+    }
+    if (s.bucket >= 0) {
+      if (s.prev != null) {
+        s.prev.next = s.next ;
+      } else {
+        heads[s.bucket] = s.next ;
+      }
+      if (s.next != null) {
+        s.next.prev = s.prev ;
+      }
+      add(RANGE - s.bucket, -1) ;
+    }
+    s.prev = null ;
+    s.next = heads[bucket] ;
+    if (s.next != null) {
+      s.next.prev = s ;
+    }
+    heads[bucket] = s ;
+    add(RANGE - bucket, 1) ;
+    s.bucket = bucket ;
+  }
+
+  private void add(int i, int delta) {
+    for (; i <= RANGE; i += i & -i) {
+      tree[i] += delta ;
+    }
+  }
+
+  // players filed at indexes 1..i
+  private int prefix(int i) {
+    int sum = 0 ;
+    for (; i > 0; i -= i & -i) {
+      sum += tree[i] ;
+    }
+    return sum ;
+  }
+}
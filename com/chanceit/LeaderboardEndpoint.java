@@ -0,0 +1,119 @@
+package com.chanceit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+/*
+ * Serves a Leaderboard, read only, at http://leaderboard_host:leaderboard_port/leaderboard as tab-separated text:
+ * a header line, then one line per player.
+ *
+ *   /leaderboard                   the top 10
+ *   /leaderboard?top=K&from=R      K players from place R (K up to MAX_TOP); players with the same rating share a rank
+ *   /leaderboard?player=NAME       that player, with their rank; 404 if they have not finished a game
+ *
+ * Like the metrics endpoint it answers one request at a time on a single daemon thread.
+ */
+class LeaderboardEndpoint implements HttpHandler {
+
+  static final int MAX_TOP = 1000 ;
+  private static final String HEADER = "rank\tname\trating\tgames\twins\tlosses\tties\tpoints_for\tpoints_against" ;
+
+  private final Leaderboard leaderboard ;
+  private HttpServer server ;
+
+  LeaderboardEndpoint(Leaderboard leaderboard) {
+    this.leaderboard = leaderboard ;
+  }
+
+  void start(String host, int port) throws IOException {
+    server = HttpServer.create(new InetSocketAddress(host, port), 0) ;
+    server.createContext("/leaderboard", this) ;
+    server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+      Thread t = new Thread(r, "LeaderboardEndpoint") ;
+      t.setDaemon(true) ;
+      return t ;
+    })) ;
+    server.start() ;
+  }
+
+  @Override
+  public void handle(HttpExchange exchange) throws IOException {
+    if (!"GET".equals(exchange.getRequestMethod())) {
+      respond(exchange, 405, "read only\n") ;
+      return ;
+    }
+    Map<String, String> query = parse(exchange.getRequestURI().getRawQuery()) ;
+    StringBuilder text = new StringBuilder(HEADER) ;
+    for (String ending : Leaderboard.ENDINGS) {
+      text.append('\t').append(ending.toLowerCase()) ;
+    }
+    text.append('\n') ;
+
+    try {
+      String player = query.get("player") ;
+      if (player != null) {
+        int rank = leaderboard.rank(player) ;
+        if (rank == 0) {
+          respond(exchange, 404, "no games for " + player + "\n") ;
+          return ;
+        }
+        line(text, rank, leaderboard.get(player)) ;
+      } else {
+        int from = Math.max(1, Integer.parseInt(query.getOrDefault("from", "1"))) ;
+        int top = Math.min(MAX_TOP, Integer.parseInt(query.getOrDefault("top", "10"))) ;
+        List<Leaderboard.Standing> standings = leaderboard.top(from, top) ;
+        for (Leaderboard.Standing s : standings) {
+          line(text, leaderboard.rank(s.name), s) ;
+        }
+      }
+    } catch (NumberFormatException e) {
+      respond(exchange, 400, "top and from are numbers\n") ;
+      return ;
+    }
+    respond(exchange, 200, text.toString()) ;
+  }
+
+  private void line(StringBuilder text, int rank, Leaderboard.Standing s) {
+    text.append(rank).append('\t').append(s.name).append('\t').append(leaderboard.getRating(s.name)).append('\t')
+        .append(s.games()).append('\t').append(s.counts.get(Leaderboard.WINS)).append('\t')
+        .append(s.counts.get(Leaderboard.LOSSES)).append('\t').append(s.counts.get(Leaderboard.TIES)).append('\t')
+        .append(s.counts.get(Leaderboard.POINTS_FOR)).append('\t').append(s.counts.get(Leaderboard.POINTS_AGAINST)) ;
+    for (int i = 0; i < Leaderboard.ENDINGS.length; i++) {
+      text.append('\t').append(s.counts.get(Leaderboard.ENDED + i)) ;
+    }
+    text.append('\n') ;
+  }
+
+  private static Map<String, String> parse(String rawQuery) throws UnsupportedEncodingException {
+    Map<String, String> query = new HashMap<String, String>() ;
+    if (rawQuery != null) {
+      for (String pair : rawQuery.split("&")) {
+        int eq = pair.indexOf('=') ;
+        if (eq > 0) {
+          query.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), "UTF-8")) ;
+        }
+      }
+    }
+    return query ;
+  }
+
+  private static void respond(HttpExchange exchange, int status, String text) throws IOException {
+    byte[] body = text.getBytes(StandardCharsets.UTF_8) ;
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8") ;
+    exchange.sendResponseHeaders(status, body.length) ;
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body) ;
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package com.chanceit;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/*
+ * Incremental line decoder for the non-blocking transport.
+ *
+ * Splits bytes into lines the same way BufferedReader.readLine() does -- a line is terminated by '\n', '\r' or "\r\n" --
+ * so NioConnection sees exactly the commands a PlayerRegistrar would.  Bytes of an unfinished line are kept between reads.
+ */
+class LineDecoder {
+
+  private static final int MAX_LINE_LENGTH = 8 * 1024 ;  // longer lines are cut here rather than growing without bound
+
+  private final Charset charset ;
+  private byte[] line = new byte[64] ;
+  private int length = 0 ;
+  private boolean skipLF = false ;  // the last terminator was '\r'; swallow a following '\n'
+
+  LineDecoder(Charset charset) {
+    this.charset = charset ;
+  }
+
+  /*
+   * returns the next complete line in the buffer, or null when the buffer is exhausted mid-line.
+   */
+  String next(ByteBuffer in) {
+    while (in.hasRemaining()) {
+      byte b = in.get() ;
+
+      if (skipLF) {
+        skipLF = false ;
+        if (b == '\n') {
+          continue ;
+        }
+      }
+
+      if (b == '\n' || b == '\r') {
+        skipLF = (b == '\r') ;
+        return take() ;
+      }
+
+      if (length == line.length) {
+        if (length >= MAX_LINE_LENGTH) {
+          String cut = take() ;
+          line[length++] = b ;  // b starts the rest of the line
+          return cut ;
+        }
+        byte[] bigger = new byte[Math.min(length * 2, MAX_LINE_LENGTH)] ;
+        System.arraycopy(line, 0, bigger, 0, length) ;
+        line = bigger ;
+      }
+      line[length++] = b ;
+    }
+    return null ;
+  }
+
+  /*
+   * at end of stream BufferedReader hands back an unterminated last line; so do we.
+   */
+  String remainder() {
+    return (length > 0) ? take() : null ;
+  }
+
+  private String take() {
+    String s = new String(line, 0, length, charset) ;
+    length = 0 ;
+    return s ;
+  }
+}
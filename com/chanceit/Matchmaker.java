@@ -0,0 +1,211 @@
+package com.chanceit;
+
+import com.chanceit.journal.RollJournal;
+import java.util.ArrayDeque;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * The single matchmaking stage.
+ *
+ * Registrars (PlayerRegistrar threads or NioEventLoops) hand new Registrations over through a lock-free queue and
+ * unpark the matchmaker thread.  Only this thread looks at the waiting line, so pairing needs no lock: it takes
+ * registrants in arrival order, claims two, and hands the pair to the game executor as a GamePlayWorker (a GameSession
+ * on the GameScheduler).  Players who unregistered in the meantime fail the claim and are dropped; a player claimed
+ * for a partner who turns out to have gone is unclaimed and put back at the head of the line.
+ *
+ * With matchmaking=rating the waiting line is a RatingQueue instead: each player is paired with the nearest-rated
+ * player waiting, within a gap that widens with waiting time, and the thread also wakes for the RatingQueue's rechecks.
+ * Ratings (PlayerRatings, kept by the Leaderboard) are kept in either mode.
+ *
+ * For every pairing the time each player spent between HELLO and being paired, and the gap between their ratings,
+ * are reported.
+ */
+class Matchmaker implements Runnable {
+
+  private final ConcurrentLinkedQueue<Registration> arrivals = new ConcurrentLinkedQueue<Registration>() ;
+  private final ArrayDeque<Registration> waiting = new ArrayDeque<Registration>() ;  // matchmaker thread only
+  private final ExecutorService gamePool ;
+  private final Properties prop ;
+  private final GameLogWriter gameLog ;
+  private final TurnPolicies policies ;
+  private final GameRecorder recorder ;  // null with persist=false
+  private final RollJournal journal ;    // null with roll_journal=false
+  private final int idleTimeout ;        // registrant_idle_timeout, ms; 0 == wait for ever
+  private final Leaderboard leaderboard ;
+  private final PlayerRatings ratings ;
+  private final RatingQueue byRating ;   // null with matchmaking=fifo
+  private volatile Thread thread ;
+  private volatile boolean run = true ;
+  private volatile int waitingCount ;  // waiting.size(), published for other threads
+
+  // wait time between HELLO and being paired
+  private final LongAdder pairedPlayers = new LongAdder() ;
+  private final LongAdder totalWaitNanos = new LongAdder() ;
+  private final AtomicLong maxWaitNanos = new AtomicLong() ;
+
+  Matchmaker(ExecutorService gamePool, Properties prop, GameLogWriter gameLog, TurnPolicies policies, GameRecorder recorder, RollJournal journal, Leaderboard leaderboard) {
+    this.gamePool = gamePool ;
+    this.prop = prop ;
+    this.gameLog = gameLog ;
+    this.policies = policies ;
+    this.recorder = recorder ;
+    this.journal = journal ;
+    this.idleTimeout = Integer.parseInt(prop.getProperty("registrant_idle_timeout", "0")) ;
+    this.leaderboard = leaderboard ;
+    this.ratings = leaderboard.getRatings() ;
+    if ("rating".equals(prop.getProperty("matchmaking", "fifo"))) {
+      byRating = new RatingQueue(ratings, Double.parseDouble(prop.getProperty("rating_gap_initial", "50")),
+                                 Double.parseDouble(prop.getProperty("rating_gap_growth", "25")), this::startGame) ;
+    } else {
+      byRating = null ;
+    }
+  }
+
+  public void start() {
+    thread = new Thread(this, "Matchmaker") ;
+    thread.start() ;
+  }
+
+  public void shutdown() {
+    run = false ;
+    LockSupport.unpark(thread) ;
+  }
+
+  /*
+   * called by registrars after the HELLO response has been sent.
+   */
+  Registration register(PlayerConnection connection) {
+    Registration registration = new Registration(connection) ;
+    if (idleTimeout > 0) {
+      registration.idleTimer = ServerTimers.wheel().schedule(registration, idleTimeout) ;
+    }
+    arrivals.add(registration) ;
+    LockSupport.unpark(thread) ;
+    return registration ;
+  }
+
+  // approximate; registrations that have unregistered are only dropped when the matchmaker reaches them.
+  int queueDepth() {
+    return waitingCount + arrivals.size() ;
+  }
+
+  long getPairedPlayers() {
+    return pairedPlayers.sum() ;
+  }
+
+  long getAverageWaitMillis() {
+    long n = pairedPlayers.sum() ;
+    return (n == 0) ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.sum() / n) ;
+  }
+
+  long getMaxWaitMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()) ;
+  }
+
+  @Override
+  public void run() {
+    while (run) {
+
+      Registration r ;
+      while ((r = arrivals.poll()) != null) {
+        if (r.canUnregister()) {
+          r.queuedAt = System.nanoTime() ;
+          ServerMetrics.HELLO_TO_QUEUED.record(r.queuedAt - r.registeredAt) ;
+          if (byRating != null) {
+            byRating.add(r, r.queuedAt) ;
+          } else {
+            waiting.add(r) ;
+          }
+        }
+      }
+
+      long nextRecheck = RatingQueue.NEVER ;
+      if (byRating != null) {
+        nextRecheck = byRating.recheck(System.nanoTime()) ;
+        waitingCount = byRating.size() ;
+      } else {
+        pair() ;
+        waitingCount = waiting.size() ;
+      }
+
+      if (arrivals.isEmpty()) {
+        if (nextRecheck == RatingQueue.NEVER) {
+          LockSupport.park(this) ;
+        } else {
+          LockSupport.parkNanos(this, nextRecheck - System.nanoTime()) ;
+        }
+      }
+    }
+  }
+
+  private void pair() {
+    while (waiting.size() > 1) {
+
+      Registration first = waiting.poll() ;
+      if (!first.claim()) {
+        continue ;  // unregistered while waiting
+      }
+      Registration second = null ;
+      while (second == null && !waiting.isEmpty()) {
+        second = waiting.poll() ;
+        if (!second.claim()) {
+          second = null ;
+        }
+      }
+      if (second == null) {
+        first.unclaim() ;  // everybody after it had gone: it waits on, first in line
+        waiting.addFirst(first) ;
+        return ;
+      }
+      first.confirm() ;
+      second.confirm() ;
+      startGame(first, second) ;
+    }
+  }
+
+  // two confirmed players; first is the one who has waited longer
+  private void startGame(Registration first, Registration second) {
+    long now = System.nanoTime() ;
+    ServerMetrics.QUEUED_TO_PAIRED.record(now - first.queuedAt) ;
+    ServerMetrics.QUEUED_TO_PAIRED.record(now - second.queuedAt) ;
+    long wait1 = recordWait(now - first.registeredAt) ;
+    long wait2 = recordWait(now - second.registeredAt) ;
+    String name1 = first.connection.getPlayerName() ;
+    String name2 = second.connection.getPlayerName() ;
+    int rating1 = ratings.get(name1) ;
+    int rating2 = ratings.get(name2) ;
+    ServerMetrics.RATING_GAP.record(Math.abs(rating1 - rating2)) ;
+    GameEvents.Paired paired = new GameEvents.Paired() ;
+    if (paired.shouldCommit()) {
+      paired.player1 = name1 ;
+      paired.wait1 = now - first.registeredAt ;
+      paired.rating1 = rating1 ;
+      paired.player2 = name2 ;
+      paired.wait2 = now - second.registeredAt ;
+      paired.rating2 = rating2 ;
+      paired.commit() ;
+    }
+    System.out.println(String.format("    paired %s (%d, waited %d ms) with %s (%d, waited %d ms)",
+                                     name1, rating1, wait1, name2, rating2, wait2)) ;
+
+    if (gamePool instanceof GameScheduler) {
+      gamePool.execute(new GameSession(first.connection, second.connection, prop, gameLog, policies, recorder, journal, leaderboard, gamePool)) ;
+    } else {
+      gamePool.execute(new GamePlayWorker(first.connection, second.connection, prop, gameLog, policies, recorder, journal, leaderboard)) ;
+    }
+  }
+
+  private long recordWait(long waitNanos) {
+    pairedPlayers.increment() ;
+    totalWaitNanos.add(waitNanos) ;
+    long max ;
+    while ((max = maxWaitNanos.get()) < waitNanos && !maxWaitNanos.compareAndSet(max, waitNanos)) {}
+    return TimeUnit.NANOSECONDS.toMillis(waitNanos) ;
+  }
+}
@@ -0,0 +1,221 @@
+package com.chanceit;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/*
+ * Builds the game's protocol messages as bytes in a reusable buffer and hands them to the PlayerConnection in one
+ * write.
+ *
+ * The constant text of every message is encoded once, here; integers are written as ASCII digits straight into the
+ * buffer and player names are encoded once per game (see bytes()).  Once the buffer has grown to fit the longest
+ * message nothing on this path allocates: no String.format, no intermediate Strings and no charset encoding per call.
+ *
+ * Messages accumulate until send(), so e.g. a roll's stats block and the prompt that follows it go out together.
+ * The output is byte-for-byte what PrintWriter.println() sent before.  Not thread safe; one per player per game.
+ *
+ * This is the text protocol.  BinaryMessageEncoder overrides the message methods with fixed-size frames for the
+ * players that asked for them at HELLO; forConnection() picks the one a connection speaks.
+ */
+class MessageEncoder {
+
+  static final Charset CHARSET = Charset.defaultCharset() ;                  // what PrintWriter uses
+  static final byte[] LINE_SEPARATOR = bytes(System.lineSeparator()) ;       // what PrintWriter.println() uses
+
+  // result(): how the game ended for this player, and why
+  static final int WIN  = 0 ;
+  static final int LOSE = 1 ;
+  static final int DRAW = 2 ;
+
+  static final int FAIR_PLAY  = 0 ;
+  static final int TIMEOUT    = 1 ;
+  static final int DISCONNECT = 2 ;
+  static final int STOP       = 3 ;
+
+  // "Turn Starting Score: %d-%d\nTurn#: %d\nRoll#: %d\nYou Rolled: [%d,%d]\nRunning Turn Score: %d\n--"
+  private static final byte[] TURN_STARTING_SCORE = bytes("Turn Starting Score: ") ;
+  private static final byte[] TURN_NUMBER         = bytes("\nTurn#: ") ;
+  private static final byte[] ROLL_NUMBER         = bytes("\nRoll#: ") ;
+  private static final byte[] YOU_ROLLED          = bytes("\nYou Rolled: [") ;
+  private static final byte[] RUNNING_TURN_SCORE  = bytes("]\nRunning Turn Score: ") ;
+  private static final byte[] END_OF_STATS        = bytes("\n--") ;
+
+  private static final byte[] CHANCE_IT_PROMPT    = bytes("chance-it? [Y/n]") ;
+  private static final byte[] OPPONENT            = bytes("Opponent: ") ;
+
+  // "Your roll was: %d. Opponent roll was: %d. You go first."  or  "... was: %d. %s goes first."
+  private static final byte[] YOUR_ROLL_WAS       = bytes("Your roll was: ") ;
+  private static final byte[] OPPONENT_ROLL_WAS   = bytes(". Opponent roll was: ") ;
+  private static final byte[] YOU_GO_FIRST        = bytes(". You go first.") ;
+  private static final byte[] PERIOD              = bytes(". ") ;
+  private static final byte[] GOES_FIRST          = bytes(" goes first.") ;
+
+  // the result lines.  "You Win! %s Timed Out." etc., %s being the opponent's name
+  private static final byte[] WINNER_MESSAGE           = bytes("You Win!") ;
+  private static final byte[] WINNER_MESSAGE_BY        = bytes("You Win! ") ;
+  private static final byte[] BY_TIMEOUT               = bytes(" Timed Out.") ;
+  private static final byte[] BY_DISCONNECT            = bytes(" Disconnected.") ;
+  private static final byte[] BY_FORFEIT               = bytes(" Stopped.") ;
+  private static final byte[] LOSER_MESSAGE            = bytes("You Lose.") ;
+  private static final byte[] LOSER_MESSAGE_BY_FORFEIT = bytes("You Lose by Forfeit.") ;
+  private static final byte[] LOSER_MESSAGE_BY_TIMEOUT = bytes("You Lose by Timeout.") ;
+  private static final byte[] TIE_MESSAGE              = bytes("It's a Draw.") ;
+
+  // "Final Score: %s: %d, %s: %d"
+  private static final byte[] FINAL_SCORE         = bytes("Final Score: ") ;
+  private static final byte[] COLON               = bytes(": ") ;
+  private static final byte[] COMMA               = bytes(", ") ;
+
+  protected ByteBuffer buffer = ByteBuffer.allocate(256) ;
+  protected byte[] myName = new byte[0] ;
+  protected byte[] opponentName = new byte[0] ;
+
+  // the encoder for the protocol this connection asked for at HELLO
+  static MessageEncoder forConnection(PlayerConnection connection) {
+    return connection.isBinary() ? new BinaryMessageEncoder() : new MessageEncoder() ;
+  }
+
+  // encode once, e.g. a constant or a player's name
+  static byte[] bytes(String text) {
+    return text.getBytes(CHARSET) ;
+  }
+
+  // who is playing, for the messages that name them
+  void players(byte[] myName, byte[] opponentName) {
+    this.myName = myName ;
+    this.opponentName = opponentName ;
+  }
+
+  /*
+   * the protocol messages
+   */
+
+  MessageEncoder opponent() {
+    return append(OPPONENT).line(opponentName) ;
+  }
+
+  // the roll-off for who goes first
+  MessageEncoder rollOff(int myRoll, int opponentRoll, boolean meFirst) {
+    append(YOUR_ROLL_WAS).append(myRoll).append(OPPONENT_ROLL_WAS).append(opponentRoll) ;
+    return meFirst ? line(YOU_GO_FIRST) : append(PERIOD).append(opponentName).line(GOES_FIRST) ;
+  }
+
+  // the stats block shown after every roll
+  MessageEncoder stats(int turnNumber, int rollNumber, int startingScore, int opponentStartScore, int turnAccumulation, int rolledDie1, int rolledDie2) {
+    return append(TURN_STARTING_SCORE).append(startingScore).append('-').append(opponentStartScore)
+          .append(TURN_NUMBER).append(turnNumber + 1)
+          .append(ROLL_NUMBER).append(rollNumber)
+          .append(YOU_ROLLED).append(rolledDie1).append(',').append(rolledDie2)
+          .append(RUNNING_TURN_SCORE).append(turnAccumulation)
+          .append(END_OF_STATS).endLine() ;
+  }
+
+  // a roll that matched the first roll: the text protocol shows it as stats with a running score of 0
+  MessageEncoder bust(int turnNumber, int rollNumber, int startingScore, int opponentStartScore, int rolledDie1, int rolledDie2) {
+    return stats(turnNumber, rollNumber, startingScore, opponentStartScore, 0, rolledDie1, rolledDie2) ;
+  }
+
+  MessageEncoder prompt() {
+    return line(CHANCE_IT_PROMPT) ;
+  }
+
+  /*
+   * the end of the game: the result line (if there is one for this outcome) and the final score.  The score line
+   * lists this player first if meListedFirst.
+   */
+  MessageEncoder result(int outcome, int how, int myScore, int opponentScore, boolean meListedFirst) {
+    if (outcome == WIN) {
+      switch (how) {
+        case TIMEOUT:    append(WINNER_MESSAGE_BY).append(opponentName).line(BY_TIMEOUT) ; break ;
+        case DISCONNECT: append(WINNER_MESSAGE_BY).append(opponentName).line(BY_DISCONNECT) ; break ;
+        case STOP:       append(WINNER_MESSAGE_BY).append(opponentName).line(BY_FORFEIT) ; break ;
+        default:         line(WINNER_MESSAGE) ;
+      }
+    } else if (outcome == LOSE) {
+      switch (how) {
+        case TIMEOUT:    line(LOSER_MESSAGE_BY_TIMEOUT) ; break ;
+        case STOP:       line(LOSER_MESSAGE_BY_FORFEIT) ; break ;
+        default:         line(LOSER_MESSAGE) ;
+      }
+    } else {
+      line(TIE_MESSAGE) ;
+    }
+    return meListedFirst ? finalScore(myName, myScore, opponentName, opponentScore)
+                         : finalScore(opponentName, opponentScore, myName, myScore) ;
+  }
+
+  private MessageEncoder finalScore(byte[] firstName, int firstScore, byte[] secondName, int secondScore) {
+    return append(FINAL_SCORE).append(firstName).append(COLON).append(firstScore)
+          .append(COMMA).append(secondName).append(COLON).append(secondScore).endLine() ;
+  }
+
+  /*
+   * building blocks
+   */
+
+  MessageEncoder append(byte[] fragment) {
+    ensureCapacity(fragment.length) ;
+    buffer.put(fragment) ;
+    return this ;
+  }
+
+  // an ASCII character
+  MessageEncoder append(char c) {
+    ensureCapacity(1) ;
+    buffer.put((byte) c) ;
+    return this ;
+  }
+
+  // the decimal digits of value, as Integer.toString() would give them
+  MessageEncoder append(int value) {
+    ensureCapacity(11) ;
+    long v = value ;
+    if (v < 0) {
+      buffer.put((byte) '-') ;
+      v = -v ;
+    }
+    int digits = 1 ;
+    for (long p = 10; p <= v; p *= 10) {
+      digits++ ;
+    }
+    int end = buffer.position() + digits ;
+    for (int i = end - 1; i >= buffer.position(); i--) {
+      buffer.put(i, (byte) ('0' + v % 10)) ;
+      v /= 10 ;
+    }
+    buffer.position(end) ;
+    return this ;
+  }
+
+  MessageEncoder endLine() {
+    return append(LINE_SEPARATOR) ;
+  }
+
+  // a whole line of pre-encoded text
+  MessageEncoder line(byte[] text) {
+    return append(text).endLine() ;
+  }
+
+  boolean isEmpty() {
+    return buffer.position() == 0 ;
+  }
+
+  // write everything appended since the last send() to the player
+  void send(PlayerConnection connection) {
+    if (isEmpty()) {
+      return ;
+    }
+    buffer.flip() ;
+    connection.write(buffer) ;
+    buffer.clear() ;
+  }
+
+  protected void ensureCapacity(int bytes) {
+    if (buffer.remaining() < bytes) {
+      ByteBuffer bigger = ByteBuffer.allocate(Math.max(2 * buffer.capacity(), buffer.position() + bytes)) ;
+      buffer.flip() ;
+      bigger.put(buffer) ;
+      buffer = bigger ;
+    }
+  }
+}
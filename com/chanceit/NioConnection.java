@@ -0,0 +1,264 @@
+package com.chanceit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+
+/*
+ * One player connection on the non-blocking transport.
+ *
+ * The NioEventLoop that owns the channel is the only reader.  It decodes lines and dispatches them:
+ *   • WAIT_HELLO   : HELLO:PLAYERNAME (or HELLO:PLAYERNAME;binary) registers the player with the Matchmaker
+ *   • WAIT_GOODBYE : GOODBYE:PLAYERNAME unregisters the player if the Matchmaker has not paired it yet
+ *   • WAIT_TURN    : once in a game every line is handed to the GamePlayWorker through the inbox
+ *
+ * Writes may come from any thread.  They are attempted straight away and whatever the socket will not take is
+ * queued for the event loop to finish when the channel becomes writable.
+ */
+class NioConnection implements PlayerConnection {
+
+  private static final String HELLO_REQUEST_MESSAGE  = "HELLO:" ;
+  private static final String HELLO_RESPONSE_MESSAGE = "IS IT ME YOU'RE LOOKIN FOR?" ;
+  private static final String GOODBY_REQUEST_MESSAGE = "GOODBYE:" ;
+
+  private static final Charset CHARSET = Charset.defaultCharset() ;       // what InputStreamReader/PrintWriter use
+  private static final String LINE_SEPARATOR = System.lineSeparator() ;   // what PrintWriter.println() uses
+
+  final SocketChannel channel ;
+  final NioEventLoop loop ;
+  SelectionKey key ;
+
+  private final Matchmaker matchmaker ;
+  private final AdmissionControl admission ;
+  private final LineDecoder decoder = new LineDecoder(CHARSET) ;
+  private final PlayerInbox inbox = new PlayerInbox() ;
+  private final ArrayDeque<ByteBuffer> writeQueue = new ArrayDeque<ByteBuffer>() ;  // guarded by itself
+
+  volatile String name ;
+  volatile boolean binary ;
+  volatile RegistrationWaitState state ;
+  volatile Registration registration ;
+  private volatile boolean closeRequested ;
+  private volatile boolean closed ;
+
+  NioConnection(SocketChannel channel, NioEventLoop loop, Matchmaker matchmaker, AdmissionControl admission) {
+    this.channel = channel ;
+    this.loop = loop ;
+    this.matchmaker = matchmaker ;
+    this.admission = admission ;
+    this.state = RegistrationWaitState.WAIT_HELLO ;
+  }
+
+  /*
+   *  PlayerConnection
+   */
+  @Override
+  public String getPlayerName() {
+    return name ;
+  }
+
+  @Override
+  public boolean isBinary() {
+    return binary ;
+  }
+
+  @Override
+  public String readLine(int timeout) throws IOException {
+    return inbox.take(timeout) ;
+  }
+
+  @Override
+  public void println(String message) {
+    send(ByteBuffer.wrap((message + LINE_SEPARATOR).getBytes(CHARSET)), false) ;
+  }
+
+  @Override
+  public void write(ByteBuffer message) {
+    // the caller reuses message, so if the socket will not take all of it the rest is copied onto the queue
+    send(message, true) ;
+  }
+
+  @Override
+  public PlayerInbox getInbox() {
+    return inbox ;
+  }
+
+  @Override
+  public void close() {
+    // let queued output (e.g. the final score) go out first; the event loop closes the channel once it has drained.
+    closeRequested = true ;
+    loop.requestFlush(this) ;
+  }
+
+  /*
+   *  called on the event loop thread
+   */
+  void onReadable(ByteBuffer readBuffer) {
+    int n ;
+    readBuffer.clear() ;
+    try {
+      n = channel.read(readBuffer) ;
+    } catch (IOException e) {
+      n = -1 ;
+    }
+
+    if (n < 0) {
+      String last = decoder.remainder() ;
+      if (last != null) {
+        dispatch(last) ;
+      }
+      onDisconnect() ;
+      return ;
+    }
+
+    readBuffer.flip() ;
+    String line ;
+    while (!closed && (line = decoder.next(readBuffer)) != null) {
+      dispatch(line) ;
+    }
+  }
+
+  void flush() {
+    synchronized (writeQueue) {
+      try {
+        ByteBuffer buf ;
+        while ((buf = writeQueue.peek()) != null) {
+          channel.write(buf) ;
+          if (buf.hasRemaining()) {
+            break ;
+          }
+          writeQueue.poll() ;
+        }
+      } catch (IOException e) {
+        writeQueue.clear() ;
+        closeRequested = true ;
+      }
+
+      if (writeQueue.isEmpty() && closeRequested) {
+        closeNow() ;
+      } else if (key != null && key.isValid()) {
+        key.interestOps(writeQueue.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE) ;
+      }
+    }
+  }
+
+  void closeNow() {
+    if (closed) {
+      return ;
+    }
+    closed = true ;
+    if (key != null) {
+      key.cancel() ;
+    }
+    try { channel.close(); } catch (IOException e) {}
+    inbox.disconnected() ;
+    admission.release() ;  // NioServer admitted us
+  }
+
+  private void send(ByteBuffer buf, boolean copyIfQueued) {
+    synchronized (writeQueue) {
+      if (closed) {
+        return ;
+      }
+      if (writeQueue.isEmpty()) {
+        // nothing is waiting so try to write on the caller's thread and skip the selector wakeup.
+        try {
+          channel.write(buf) ;
+        } catch (IOException e) {
+          closeRequested = true ;
+          loop.requestFlush(this) ;
+          return ;
+        }
+        if (!buf.hasRemaining()) {
+          return ;
+        }
+      }
+      if (copyIfQueued) {
+        ByteBuffer rest = ByteBuffer.allocate(buf.remaining()) ;
+        rest.put(buf).flip() ;
+        buf = rest ;
+      }
+      writeQueue.add(buf) ;
+    }
+    loop.requestFlush(this) ;
+  }
+
+  private void dispatch(String command) {
+    switch (state) {
+
+      case WAIT_HELLO:
+        if (command.startsWith(HELLO_REQUEST_MESSAGE) && command.length() > HELLO_REQUEST_MESSAGE.length()) {
+          name = command.substring(HELLO_REQUEST_MESSAGE.length(), command.length()) ;
+          if (name.endsWith(BinaryMessageEncoder.HELLO_SUFFIX) && name.length() > BinaryMessageEncoder.HELLO_SUFFIX.length()) {
+            name = name.substring(0, name.length() - BinaryMessageEncoder.HELLO_SUFFIX.length()) ;
+            binary = true ;
+          }
+          println(HELLO_RESPONSE_MESSAGE) ;
+          System.out.println(String.format("    %s has registerred", name)) ;
+          GameEvents.Hello hello = new GameEvents.Hello() ;
+          if (hello.shouldCommit()) {
+            hello.player = name ;
+            hello.binary = binary ;
+            hello.commit() ;
+          }
+
+          // set the state before registering: the Matchmaker may pair this player straight away
+          state = RegistrationWaitState.WAIT_GOODBYE ;
+          registration = matchmaker.register(this) ;
+        }
+        break ;
+
+      case WAIT_GOODBYE:
+      case WAIT_QUEUE:
+        if (registration.canUnregister()) {
+          if (command.startsWith(GOODBY_REQUEST_MESSAGE) && command.length() > GOODBY_REQUEST_MESSAGE.length()) {
+            state = RegistrationWaitState.WAIT_QUEUE ;
+            boolean withdrawn = registration.withdraw() ;
+            goodbye(false, withdrawn) ;
+            if (withdrawn) {
+              System.out.println(String.format("    %s has un-registerred", name)) ;
+              close() ;
+              return ;
+            }
+          }
+          // like the PlayerRegistrar, anything else sent while waiting for an opponent is ignored
+          if (registration.canUnregister()) {
+            break ;
+          }
+        }
+        // we are part of a game and all messages are for the GamePlayWorker thread
+        state = RegistrationWaitState.WAIT_TURN ;
+        inbox.offer(command) ;
+        break ;
+
+      case WAIT_TURN:
+        inbox.offer(command) ;
+        break ;
+    }
+  }
+
+  private void onDisconnect() {
+    if (state != RegistrationWaitState.WAIT_HELLO) {
+      if (registration.withdraw()) {
+        goodbye(true, true) ;
+        System.out.println("Socket disconnected before getting GOODBYE") ;
+        System.out.println(String.format("    %s has un-registerred", name)) ;
+      }
+    }
+    closeNow() ;
+  }
+
+  // a GOODBYE, or a disconnect while waiting for an opponent
+  private void goodbye(boolean disconnected, boolean withdrawn) {
+    GameEvents.Goodbye event = new GameEvents.Goodbye() ;
+    if (event.shouldCommit()) {
+      event.player = name ;
+      event.disconnected = disconnected ;
+      event.withdrawn = withdrawn ;
+      event.commit() ;
+    }
+  }
+}
@@ -0,0 +1,109 @@
+package com.chanceit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/*
+ * A selector thread servicing many NioConnections.
+ *
+ * All channel registration, reading and interest-op changes happen on this thread.  Other threads hand work over
+ * through the pending queues and wake the selector.
+ */
+class NioEventLoop implements Runnable {
+
+  private final Selector selector ;
+  private final Matchmaker matchmaker ;
+  private final AdmissionControl admission ;
+  private final ConcurrentLinkedQueue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<SocketChannel>() ;
+  private final ConcurrentLinkedQueue<NioConnection> pendingFlushes = new ConcurrentLinkedQueue<NioConnection>() ;
+
+  // one read buffer per loop rather than per connection; partial lines are kept in each connection's LineDecoder.
+  private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(8 * 1024) ;
+
+  private volatile boolean run = true ;
+
+  NioEventLoop(Matchmaker matchmaker, AdmissionControl admission) throws IOException {
+    this.selector = Selector.open() ;
+    this.matchmaker = matchmaker ;
+    this.admission = admission ;
+  }
+
+  // called by the acceptor thread
+  void register(SocketChannel channel) {
+    pendingChannels.add(channel) ;
+    selector.wakeup() ;
+  }
+
+  // called from any thread that has queued output or asked for a close
+  void requestFlush(NioConnection connection) {
+    pendingFlushes.add(connection) ;
+    selector.wakeup() ;
+  }
+
+  public void shutdown() {
+    run = false ;
+    selector.wakeup() ;
+  }
+
+  @Override
+  public void run() {
+    while (run) {
+      try {
+        selector.select() ;
+      } catch (IOException e) {
+        e.printStackTrace() ;
+        continue ;
+      }
+
+      registerPending() ;
+      flushPending() ;
+
+      Iterator<SelectionKey> keys = selector.selectedKeys().iterator() ;
+      while (keys.hasNext()) {
+        SelectionKey key = keys.next() ;
+        keys.remove() ;
+
+        NioConnection connection = (NioConnection) key.attachment() ;
+        if (key.isValid() && key.isReadable()) {
+          connection.onReadable(readBuffer) ;
+        }
+        if (key.isValid() && key.isWritable()) {
+          connection.flush() ;
+        }
+      }
+    }
+
+    for (SelectionKey key : selector.keys()) {
+      ((NioConnection) key.attachment()).closeNow() ;
+    }
+    try { selector.close(); } catch (IOException e) {}
+  }
+
+  private void registerPending() {
+    SocketChannel channel ;
+    while ((channel = pendingChannels.poll()) != null) {
+      NioConnection connection = new NioConnection(channel, this, matchmaker, admission) ;
+      try {
+        channel.configureBlocking(false) ;
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection) ;
+      } catch (ClosedChannelException e) {
+        connection.closeNow() ;
+      } catch (IOException e) {
+        connection.closeNow() ;
+      }
+    }
+  }
+
+  private void flushPending() {
+    NioConnection connection ;
+    while ((connection = pendingFlushes.poll()) != null) {
+      connection.flush() ;
+    }
+  }
+}
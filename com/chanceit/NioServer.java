@@ -0,0 +1,70 @@
+package com.chanceit;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Non-blocking front end (transport=nio).
+ *
+ * Replaces the pool of PlayerRegistrar threads: an acceptor thread per AcceptorShard hands new channels round-robin
+ * to a handful of NioEventLoops, which do HELLO/GOODBYE registration and feed game commands to the GamePlayWorkers.
+ * The number of connected players is no longer capped by registrar_pool_thread_count.
+ */
+class NioServer {
+
+  private final AcceptorShard[] shards ;
+  private final NioEventLoop[] loops ;
+  private final AtomicInteger next = new AtomicInteger() ;
+  private final AtomicInteger runningAcceptors ;
+  private final AdmissionControl admission ;
+
+  NioServer(AcceptorShard[] shards, Matchmaker matchmaker, AdmissionControl admission, int eventLoopCount) throws IOException {
+    this.shards = shards ;
+    this.admission = admission ;
+    this.runningAcceptors = new AtomicInteger(shards.length) ;
+    this.loops = new NioEventLoop[eventLoopCount] ;
+    for (int i = 0; i < eventLoopCount; i++) {
+      loops[i] = new NioEventLoop(matchmaker, admission) ;
+    }
+  }
+
+  public void start() {
+    for (int i = 0; i < loops.length; i++) {
+      new Thread(loops[i], "NioEventLoop-" + i).start() ;
+    }
+    for (final AcceptorShard shard : shards) {
+      new Thread(new Runnable() {
+        public void run() { accept(shard) ; }
+      }, "NioAcceptor-" + shard.id).start() ;
+    }
+  }
+
+  private void accept(AcceptorShard shard) {
+    while (shard.isOpen()) {
+      try {
+
+        SocketChannel channel = shard.acceptChannel() ;
+        // over capacity: "SERVER BUSY, RETRY IN N s" rather than a registration that would only wait
+        if (!admission.admit()) {
+          admission.turnAway(channel) ;
+          continue ;
+        }
+        System.out.println("NioServer socket accepted") ;
+        loops[Math.floorMod(next.getAndIncrement(), loops.length)].register(channel) ;
+
+      } catch (ClosedChannelException e) {
+        break ;
+      } catch (IOException e) {
+        // the client went away before we could accept it
+      }
+    }
+    // the last acceptor out stops the event loops
+    if (runningAcceptors.decrementAndGet() == 0) {
+      for (NioEventLoop loop : loops) {
+        loop.shutdown() ;
+      }
+    }
+  }
+}
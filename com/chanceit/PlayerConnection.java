@@ -0,0 +1,43 @@
+package com.chanceit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/*
+ * A registered player's connection as seen by the Matchmaker and the GamePlayWorker.
+ *
+ * There are two transports behind this interface:
+ *   • SocketConnection : a blocking socket owned by a PlayerRegistrar thread (transport=blocking)
+ *   • NioConnection    : a non-blocking channel serviced by an NioEventLoop (transport=nio)
+ *
+ * Both speak the same protocol: line based text, or the binary frames of BinaryMessageEncoder for a player that asked
+ * for them at HELLO.
+ */
+public interface PlayerConnection {
+
+  // the name given in the HELLO:PLAYERNAME message
+  String getPlayerName() ;
+
+  // true if the player registered with HELLO:PLAYERNAME;binary; the game then sends it binary frames
+  boolean isBinary() ;
+
+  // block for the next line from the player for at most timeout milliseconds (0 == infinity).
+  // returns null if the player disconnected; throws an InterruptedIOException if the timeout expires.
+  String readLine(int timeout) throws IOException ;
+
+  // send a line of text to the player
+  void println(String message) ;
+
+  // send the bytes between message's position and limit, already encoded (see MessageEncoder).  message is consumed
+  // and may be reused by the caller as soon as this returns.
+  void write(ByteBuffer message) ;
+
+  // close the connection; safe to call more than once
+  void close() ;
+
+  // where the connection's reader leaves the player's lines, for a game that does not block in readLine() (see
+  // GameSession); null if there is no such inbox
+  default PlayerInbox getInbox() {
+    return null ;
+  }
+}
@@ -0,0 +1,157 @@
+package com.chanceit;
+
+import com.chanceit.timer.TimingWheel;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ * Lines from a player on their way to the GamePlayWorker.
+ *
+ * Each connection has exactly one reader (its PlayerRegistrar thread or its NioEventLoop).  The reader pushes lines
+ * in here once the player is in a game; the game takes them out.  Nothing else ever reads the socket, so there is no
+ * hand-over between threads and no input can be lost or delayed.
+ *
+ * The input deadline is a ServerTimers timer, not a timed wait: take() waits for a line, the end of the stream or
+ * the timer, whichever comes first, and cancels the timer if it did not fire.
+ *
+ * A game that does not wait in take() (a GameSession) listen()s instead: the reader calls its Listener after every
+ * line and at the end of the stream, and the game poll()s.
+ *
+ * Waiting is on a ReentrantLock's Condition, not a monitor: with executor_mode=virtual a game thread waiting in take()
+ * inside synchronized would pin its carrier thread, and a few hundred prompts at once would stall the server.
+ */
+class PlayerInbox implements TimingWheel.Task {
+
+  interface Listener {
+    // called on the reader's thread; must only schedule the game
+    void inputArrived() ;
+  }
+
+  private final ReentrantLock lock = new ReentrantLock() ;
+  private final Condition ready = lock.newCondition() ;  // a line, the end of the stream or the deadline
+  private final ArrayDeque<String> lines = new ArrayDeque<String>() ;  // guarded by lock
+  private boolean disconnected ;
+  private long deadline = TimingWheel.NONE ;  // the pending take()'s timer
+  private boolean timedOut ;
+  private volatile Listener listener ;
+
+  // reader side
+  void offer(String line) {
+    lock.lock() ;
+    try {
+      lines.add(line) ;
+      ready.signalAll() ;
+    } finally {
+      lock.unlock() ;
+    }
+    notifyListener() ;
+  }
+
+  // reader side: end of stream
+  void disconnected() {
+    lock.lock() ;
+    try {
+      disconnected = true ;
+      ready.signalAll() ;
+    } finally {
+      lock.unlock() ;
+    }
+    notifyListener() ;
+  }
+
+  private void notifyListener() {
+    Listener l = listener ;
+    if (l != null) {
+      l.inputArrived() ;
+    }
+  }
+
+  // game side, instead of take()
+  void listen(Listener listener) {
+    this.listener = listener ;
+  }
+
+  // game side: the next line, or null if there is none yet
+  String poll() {
+    lock.lock() ;
+    try {
+      return lines.poll() ;
+    } finally {
+      lock.unlock() ;
+    }
+  }
+
+  // game side: no more lines are coming
+  boolean isClosed() {
+    lock.lock() ;
+    try {
+      return lines.isEmpty() && disconnected ;
+    } finally {
+      lock.unlock() ;
+    }
+  }
+
+  // game side: poll() has a line or isClosed()
+  boolean isReady() {
+    lock.lock() ;
+    try {
+      return !lines.isEmpty() || disconnected ;
+    } finally {
+      lock.unlock() ;
+    }
+  }
+
+  // timer side: the deadline of a take() has passed
+  @Override
+  public void expire(long handle) {
+    lock.lock() ;
+    try {
+      if (handle == deadline) {  // not the timer of an earlier take() that lost its cancel()
+        timedOut = true ;
+        ready.signalAll() ;
+      }
+    } finally {
+      lock.unlock() ;
+    }
+  }
+
+  /*
+   * game side: wait up to timeout milliseconds (0 == infinity) for the next line.
+   * returns null if the player disconnected; throws a SocketTimeoutException, like a socket read, if time runs out.
+   * Lines sent before a disconnect are still returned first.
+   */
+  String take(int timeout) throws InterruptedIOException {
+    lock.lock() ;
+    try {
+      timedOut = false ;
+      if (lines.isEmpty() && !disconnected && timeout > 0) {
+        deadline = ServerTimers.wheel().schedule(this, timeout) ;
+      }
+      try {
+        while (lines.isEmpty() && !disconnected && !timedOut) {
+          ready.await() ;
+        }
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException() ;
+      } finally {
+        if (deadline != TimingWheel.NONE) {
+          ServerTimers.wheel().cancel(deadline) ;
+          deadline = TimingWheel.NONE ;
+        }
+      }
+
+      if (!lines.isEmpty()) {
+        return lines.poll() ;
+      }
+      if (disconnected) {
+        return null ;
+      }
+      throw new SocketTimeoutException("Read timed out") ;
+    } finally {
+      lock.unlock() ;
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package com.chanceit;
+
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * An Elo rating for every player name the server has seen finish a game.
+ *
+ * A new name starts at rating_initial (1500).  After each game both players move by rating_k (32) times the
+ * difference between the result (1 win, 1/2 draw, 0 loss) and the result their ratings predicted:
+ *
+ *   expected(a) = 1 / (1 + 10^((b - a) / 400))
+ *
+ * so beating a stronger player gains more than beating a weaker one.  A TIMEOUT, DISCONNECT or STOP counts as a loss
+ * for the player who forfeited.
+ *
+ * Games record() their outcome on their own threads; the two updates of one game are made under one lock so they
+ * are never interleaved with another game's.  get() never locks: the Matchmaker reads a rating at every arrival.
+ * Ratings live as long as the server; nothing is persisted.
+ */
+class PlayerRatings {
+
+  static final class Rating {
+    volatile double rating ;
+    volatile int games ;
+
+    Rating(double rating) {
+      this.rating = rating ;
+    }
+  }
+
+  private final ConcurrentHashMap<String, Rating> ratings = new ConcurrentHashMap<String, Rating>() ;
+  private final double initial ;
+  private final double k ;
+
+  PlayerRatings(Properties prop) {
+    this.initial = Double.parseDouble(prop.getProperty("rating_initial", "1500")) ;
+    this.k = Double.parseDouble(prop.getProperty("rating_k", "32")) ;
+  }
+
+  // the player's rating, rounded; rating_initial for a name that has not finished a game yet
+  int get(String name) {
+    Rating r = ratings.get(name) ;
+    return (int) Math.round(r == null ? initial : r.rating) ;
+  }
+
+  // rating_initial, rounded
+  int getInitial() {
+    return (int) Math.round(initial) ;
+  }
+
+  // for a draw winner is either player
+  synchronized void record(String winner, String loser, boolean draw) {
+    Rating w = ratings.computeIfAbsent(winner, name -> new Rating(initial)) ;
+    Rating l = ratings.computeIfAbsent(loser, name -> new Rating(initial)) ;
+    if (w == l) {
+      return ;  // a player who played themselves
+    }
+    double expected = 1 / (1 + Math.pow(10, (l.rating - w.rating) / 400)) ;
+    double change = k * ((draw ? 0.5 : 1.0) - expected) ;
+    w.rating += change ;
+    l.rating -= change ;
+    w.games++ ;
+    l.games++ ;
+  }
+
+  // start a player at a given rating (RatingQueueBenchmark)
+  void set(String name, double rating) {
+    ratings.computeIfAbsent(name, n -> new Rating(rating)).rating = rating ;
+  }
+
+  int size() {
+    return ratings.size() ;
+  }
+}
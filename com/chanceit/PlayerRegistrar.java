@@ -2,25 +2,22 @@ package com.chanceit ;
 
 import java.io.BufferedReader ;
 import java.io.IOException ;
-import java.io.IOException;
 import java.io.InputStreamReader ;
-import java.io.InterruptedIOException;
 import java.io.PrintWriter ;
-import java.net.ServerSocket ;
 import java.net.Socket ;
+import java.net.SocketTimeoutException ;
 import java.util.Properties;
-import java.util.concurrent.ConcurrentLinkedQueue ;
 
 class PlayerRegistrar extends Thread implements RunnableRecycler {
 
-  private static int K_MILLISECS        = 1000 ;
-  private int GOODBYE_LOOP_TIMEOUT      = K_MILLISECS * 1; // one second
   private String HELLO_REQUEST_MESSAGE  = "HELLO:" ;
   private String HELLO_RESPONSE_MESSAGE = "IS IT ME YOU'RE LOOKIN FOR?" ;
   private String GOODBY_REQUEST_MESSAGE = "GOODBYE:" ;
 
-  ServerSocket serverSocket;
-  ConcurrentLinkedQueue<PlayerRegistrar> registrationQueue;
+  AcceptorShard shard;
+  Matchmaker matchmaker;
+  AdmissionControl admission;
+  boolean admitted;
   Properties prop ;
   Socket socket;
   BufferedReader input;
@@ -28,19 +25,30 @@ class PlayerRegistrar extends Thread implements RunnableRecycler {
   String name;
   RegistrationWaitState state;
   boolean registerred;
-  boolean canUnregister;
-  String message ;
-  GamePlayWorker.CallBack callback ;
+  Registration registration;
+  SocketConnection connection ;
 
-  public PlayerRegistrar(ServerSocket serverSocket, ConcurrentLinkedQueue<PlayerRegistrar> registrationQueue, Properties prop){
+  public PlayerRegistrar(AcceptorShard shard, Matchmaker matchmaker, AdmissionControl admission, Properties prop){
 
-    this.serverSocket = serverSocket;
-    this.registrationQueue = registrationQueue;
+    this.shard = shard;
+    this.matchmaker = matchmaker;
+    this.admission = admission;
     this.prop = prop ;
+    if (shard != null) {
+        shard.registrars.incrementAndGet();
+    }
     this.state = RegistrationWaitState.WAIT_HELLO ;
     this.registerred = false;
-    this.canUnregister = true;
-    this.GOODBYE_LOOP_TIMEOUT = Integer.parseInt(prop.getProperty("goodbye_timeout", "1")) * K_MILLISECS ;
+
+  }
+
+  /*
+   * executor_mode=virtual: the RegistrarAcceptor has already accepted the socket and runs one registrar per connection.
+   */
+  public PlayerRegistrar(Socket socket, Matchmaker matchmaker, AdmissionControl admission, Properties prop){
+
+    this((AcceptorShard) null, matchmaker, admission, prop) ;
+    this.socket = socket ;
 
   }
 
@@ -53,23 +61,60 @@ class PlayerRegistrar extends Thread implements RunnableRecycler {
       name = null;
       state = RegistrationWaitState.WAIT_HELLO;
       registerred = false ;
-      canUnregister = true;
-      message = null;
-      callback = null;
+      registration = null;
+      connection = null;
+  }
+
+  // the pool is shrinking: leave, unless we are the last registrar accepting on our shard
+  @Override
+  public boolean retire() {
+      if (shard == null) {
+          return true;
+      }
+      int n;
+      while ((n = shard.registrars.get()) > 1) {
+          if (shard.registrars.compareAndSet(n, n - 1)) {
+              return true;
+          }
+      }
+      return false;
   }
 
   @Override
   public void run() {
+      try {
+          serve();
+      } finally {
+          // an admitted connection counts against max_connections until we are done with it
+          if (admitted) {
+              admitted = false;
+              admission.release();
+          }
+      }
+  }
+
+  private void serve() {
     /*
-     *  block waiting for a client to conect on a the serverSocket
+     *  block waiting for a client to conect on our shard's serverSocket
      */
      try {
 
-         socket = serverSocket.accept();
+         if (socket == null) {
+             socket = shard.accept();
+         }
+         // over capacity: "SERVER BUSY, RETRY IN N s" rather than a registration that would only wait
+         if (!admission.admit()) {
+             admission.turnAway(socket);
+             return;
+         }
+         admitted = true;
          System.out.println("PlayerRegistrar socket accepted");
          input = new BufferedReader(new InputStreamReader(socket.getInputStream()));
          output = new PrintWriter(socket.getOutputStream(), true);
 
+     } catch (SocketTimeoutException e) {
+         // no connection for a while; the pool runs us again, or retires us if it is shrinking
+         return;
      } catch (IOException e) {
     //     System.out.println("socket died when player attempted to connect: " + e);
      }
@@ -92,28 +137,33 @@ class PlayerRegistrar extends Thread implements RunnableRecycler {
                      // After receiving the HELLO:PLAYERNAME message:
                      //   set the player name in the player object.
                      name = command.substring(HELLO_REQUEST_MESSAGE.length(), command.length());
+                     //   HELLO:PLAYERNAME;binary asks for the binary protocol once we have answered
+                     boolean binary = name.endsWith(BinaryMessageEncoder.HELLO_SUFFIX) && name.length() > BinaryMessageEncoder.HELLO_SUFFIX.length();
+                     if (binary) {
+                         name = name.substring(0, name.length() - BinaryMessageEncoder.HELLO_SUFFIX.length());
+                     }
+                     //   the game keeps this connection; this registrar is recycled after it falls off the end of run()
+                     connection = new SocketConnection(socket, output, name, binary);
                      //   set the registerred flag in the player object.
                      registerred = true ;
 
                      // respond correctly
                      output.println(HELLO_RESPONSE_MESSAGE);
                      System.out.println(String.format("    %s has registerred", name));
+                     GameEvents.Hello hello = new GameEvents.Hello();
+                     if (hello.shouldCommit()) {
+                         hello.player = name;
+                         hello.binary = binary;
+                         hello.commit();
+                     }
+
+                     // set next state to WAIT_GOODBYE before the Matchmaker can pair us
+                     state = RegistrationWaitState.WAIT_GOODBYE;
 
                     /*
-                     *  block on the regstrationQueue {
-                     *     enqueue this player in the ready queue
-                     *     if there are more than 1 players in the queue notify watchers of the queue object.
-                     *  }
+                     *  hand this player to the Matchmaker; it pairs players as they arrive.
                      */
-                     synchronized (registrationQueue) {
-                        registrationQueue.add(this);
-                        if (registrationQueue.size() > 1) {
-                          registrationQueue.notify();
-                          System.out.println(String.format("    registrationQueue has %d registrations", registrationQueue.size()));
-                        }
-                     }
-                     // set next state to WAIT_GOODBYE
-                     state = RegistrationWaitState.WAIT_GOODBYE;
+                     registration = matchmaker.register(connection);
 
                      break ;
                  }
@@ -125,79 +175,61 @@ class PlayerRegistrar extends Thread implements RunnableRecycler {
            return ;
        }
 
-         // We have been registerred.  Now wait for either an unregister message from the client or
-         // a thread wakeup (and unblock from the blocked socket) where we can check if we've been added to a game.
+         // We have been registerred.  From here on this thread is the socket's only reader:
+         //   • while we wait for an opponent, GOODBYE:PLAYERNAME unregisters us (if the Matchmaker has not paired us first)
+         //   • once we are in a game, every line goes to the GamePlayWorker through the connection's inbox
          /*
           *    Wait for a GOODBYE:PLAYERNAME messsage:
           */
-          socket.setSoTimeout(GOODBYE_LOOP_TIMEOUT);  // 1 second
-          while (canUnregister == true) {
+          while ((command = input.readLine()) != null) {
 
-              try {
-
-                  command = input.readLine();
+              if (registration.canUnregister()) {
                   if (command.startsWith(GOODBY_REQUEST_MESSAGE) && command.length() > GOODBY_REQUEST_MESSAGE.length()) {
                       // set next state to WAIT_QUEUE
                       state = RegistrationWaitState.WAIT_QUEUE ;
                      /*
-                      *  block on the registrationQueue {
-                      *      if can-unregister == true
-                      *          remove the player from the queue
-                      *          mark the player as unregisterred
-                      *          close the connection?  only if unregisterred == true
+                      *  race the Matchmaker for this registration {
+                      *      if we win, we are unregisterred: close the connection
+                      *      if we lose, we are already in a game
                       *  }
                       */
-                     synchronized (registrationQueue) {
-                        if (canUnregister == true){
-                            if ( true == registrationQueue.remove(this)) {
-                                // If removing works, then the registration was still in the queue and has not been picked up by
-                                // a GamePlayWorker.  We've successfully unregisterred.  else, we were removed and could not unregister.
-                                // perhaps overkill as canUnregister is tested first.
-                                registerred = false;
-                                socket.close();
-                                System.out.println(String.format("    %s has un-registerred", name));
-                            }
-                        }
+                     boolean withdrawn = registration.withdraw();
+                     goodbye(false, withdrawn);
+                     if (withdrawn) {
+                         registerred = false;
+                         socket.close();
+                         System.out.println(String.format("    %s has un-registerred", name));
+                         return ;
                      }
-                  } else if (canUnregister == false ) {  // we are part of a game and all message are for the GamePlayWorker thread
-                      // very "cludgie" but I could not find another way to unblock the readLine on the socket.
-                      // at this point we are in game play.  The readLine above occurred before the game started.
-                      // there is another block on IO on the socket in the GamePlayWorker thread looking for the String
-                      // "chance-it".  Here I'll set a local variable that will be read by the other thread.
-                      // could do a wait on the object in the other thread and a notify here.
-                      // !!! perhaps this should be a callback too ?
-                      this.message = command;
-                      callback.setState(RegistrationWaitState.WAIT_TURN);
-                      callback.setMessage(command) ;
                   }
-              } catch (InterruptedIOException e) {
-                    if (canUnregister == false) {
-                      // This a call back as the state of this thread isn't guaranteed and could potentially reused by another Player registerring.
-                      // If canUnregister == false we can't unregister.  An ActivePlayer object has been instantiated and this PlayerRegistration
-                      // has had a callback set.
-                      callback.setState(RegistrationWaitState.WAIT_TURN);
-                      state = RegistrationWaitState.WAIT_TURN;
-                    }
-              } catch (NullPointerException npe) {
-                  // a NPE here means socket closed by client
-                  System.out.println("Socket disconnected before getting GOODBYE");
-                  // need to unregister
-                  synchronized (registrationQueue) {
-                     if (canUnregister == true){
-                         if ( true == registrationQueue.remove(this)) {
-                             // If removing works, then the registration was still in the queue and has not been picked up by
-                             // a GamePlayWorker.  We've successfully unregisterred.  else, we were removed and could not unregister.
-                             // perhaps overkill as canUnregister is tested first.
-                             registerred = false;
-                             socket.close();
-                             System.out.println(String.format("    %s has un-registerred", name));
-                         }
-                     }
+                  // anything else sent while waiting for an opponent is ignored
+                  if (registration.canUnregister()) {
+                      continue ;
                   }
-                  return ;
               }
-        }
-     } catch (IOException e) {}
+
+              // we are part of a game and all messages are for the GamePlayWorker thread
+              state = RegistrationWaitState.WAIT_TURN;
+              connection.inbox.offer(command);
+          }
+
+          // end of stream: the socket was closed by the client (or by the GamePlayWorker at the end of the game)
+          if (registration.withdraw()) {
+              // the Matchmaker had not picked us up yet.  We've successfully unregisterred.
+              goodbye(true, true);
+              System.out.println("Socket disconnected before getting GOODBYE");
+              registerred = false;
+              socket.close();
+              System.out.println(String.format("    %s has un-registerred", name));
+          }
+          connection.inbox.disconnected();
+
+     } catch (IOException e) {
+         // reading a socket the GamePlayWorker has closed ends up here too
+         if (connection != null) {
+             connection.inbox.disconnected();
+         }
+     }
     /*
      *    wait for a GOODBYE:PLAYERNAME messsage:
      *          block on the registrationQueue {
@@ -238,4 +270,15 @@ class PlayerRegistrar extends Thread implements RunnableRecycler {
       //       the logic is expressed better above.
       //    }
   }   // end of the PlayerRegistrar thread
+
+  // a GOODBYE, or a disconnect while waiting for an opponent
+  private void goodbye(boolean disconnected, boolean withdrawn) {
+      GameEvents.Goodbye event = new GameEvents.Goodbye();
+      if (event.shouldCommit()) {
+          event.player = name;
+          event.disconnected = disconnected;
+          event.withdrawn = withdrawn;
+          event.commit();
+      }
+  }
 }
@@ -0,0 +1,107 @@
+package com.chanceit;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Sizes the registrar and game pools from what they are doing, every pool_resize_interval milliseconds:
+ *
+ *   registrars  busy (serving a connection) + registrar_pool_spare left accepting.  Grows at once; shrinks by half the
+ *               surplus per interval, and never below one registrar per acceptor shard
+ *   games       grows by a quarter (at least by the queued games) when games waited in the queue or took longer
+ *               than game_start_latency_target to get a thread; shrinks by half the idle threads when under three
+ *               quarters are busy
+ *
+ * and refreshes AdmissionControl's retry-after from how long the game queue would take to drain.  Every resize is
+ * counted in ServerMetrics and printed.  Either pool may be null (transport=nio, executor_mode=virtual).
+ */
+class PoolSizer implements Runnable {
+
+  private static final int MAX_RETRY_AFTER = 60 ;  // seconds
+
+  private final TaskRepeatingThreadPoolExecutor registrars ;
+  private final AcceptorShard[] shards ;
+  private final GamePool games ;
+  private final AdmissionControl admission ;
+  private final int interval ;            // milliseconds
+  private final int spare ;               // registrars kept accepting
+  private final long latencyTarget ;      // nanoseconds a game may wait for a thread
+  private final int retryAfter ;          // the configured minimum, seconds
+
+  PoolSizer(TaskRepeatingThreadPoolExecutor registrars, AcceptorShard[] shards, GamePool games, AdmissionControl admission,
+            int interval, int spare, int latencyTargetMillis) {
+    this.registrars = registrars ;
+    this.shards = shards ;
+    this.games = games ;
+    this.admission = admission ;
+    this.interval = Math.max(10, interval) ;
+    this.spare = Math.max(0, spare) ;
+    this.latencyTarget = TimeUnit.MILLISECONDS.toNanos(latencyTargetMillis) ;
+    this.retryAfter = admission.getRetryAfter() ;
+  }
+
+  @Override
+  public void run() {
+    while (true) {
+      try {
+        Thread.sleep(interval) ;
+      } catch (InterruptedException e) {
+        return ;
+      }
+      if (registrars != null) {
+        sizeRegistrars() ;
+      }
+      if (games != null) {
+        sizeGames() ;
+      }
+    }
+  }
+
+  private void sizeRegistrars() {
+    int accepting = 0 ;
+    for (AcceptorShard shard : shards) {
+      accepting += shard.accepting.get() ;
+    }
+    int busy = Math.max(0, registrars.getTasks() - accepting) ;
+    int want = Math.max(busy + spare, shards.length) ;
+    int target = registrars.getTarget() ;
+    if (want > target) {
+      resized("registrar", target, registrars.resize(want), busy) ;
+    } else if (want < target) {
+      resized("registrar", target, registrars.resize((target + want) / 2), busy) ;
+    }
+  }
+
+  private void sizeGames() {
+    long delay = games.takeMaxStartDelay() ;
+    int queued = games.getQueue().size() ;
+    int active = games.getActiveCount() ;
+    int core = games.getCorePoolSize() ;
+
+    int size = core ;
+    if (queued > 0 || delay > latencyTarget) {
+      size = Math.min(games.getMaxGames(), core + Math.max(queued, (core + 3) / 4)) ;
+    } else if (active < core * 3 / 4) {
+      size = Math.max(games.getMinGames(), (core + active) / 2) ;
+    }
+    if (size != core) {
+      games.setCorePoolSize(size) ;
+      resized("game", core, size, active) ;
+    }
+
+    // a player turned away now should come back about when the queued games have started
+    int retry = retryAfter ;
+    if (queued > 0) {
+      double gameSeconds = ServerMetrics.GAME_DURATION.snapshot().getMean() / 1e9 ;
+      retry = (int) Math.max(retryAfter, Math.min(MAX_RETRY_AFTER, Math.ceil(gameSeconds * queued / Math.max(1, size)))) ;
+    }
+    admission.setRetryAfter(retry) ;
+  }
+
+  private void resized(String pool, int from, int to, int busy) {
+    if (to == from) {
+      return ;
+    }
+    (to > from ? ServerMetrics.grows(pool) : ServerMetrics.shrinks(pool)).increment() ;
+    System.out.println(String.format("    %s pool %d -> %d (%d busy)", pool, from, to, busy)) ;
+  }
+}
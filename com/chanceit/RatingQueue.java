@@ -0,0 +1,198 @@
+package com.chanceit;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+
+/*
+ * The waiting line for matchmaking=rating: players ordered by rating, each paired with the closest-rated player
+ * waiting, as long as the two are close enough.
+ *
+ * How close is close enough widens the longer a player waits:
+ *
+ *   gap(p) = rating_gap_initial + rating_gap_growth * seconds p has waited
+ *
+ * and two players may be paired when their ratings differ by no more than the larger of their two gaps.  A player
+ * with nobody near their rating is therefore paired further and further afield, never left waiting for ever (unless
+ * rating_gap_growth is 0).
+ *
+ * Players are kept in a TreeMap keyed by (rating, arrival number), so an arrival finds its nearest neighbours below
+ * and above in O(log n), however long the line.  A player who could not be paired on arrival is given a recheck time,
+ * the moment their gap will reach their nearest neighbour; rechecks are a TreeSet by time and the Matchmaker parks
+ * until the first one is due.  Arriving next to a player can only bring their recheck forward, so the neighbours of
+ * every arrival are rescheduled too.
+ *
+ * Players who unregistered are dropped when they turn up as a neighbour or their recheck comes round.  A neighbour
+ * claimed for a player who turns out to have unregistered is unclaimed and goes back in the line.
+ *
+ * Matchmaker thread only; no locks.
+ */
+class RatingQueue {
+
+  static final long NEVER = Long.MAX_VALUE ;
+
+  private static final Comparator<Registration> BY_RECHECK = (a, b) ->
+      (a.recheckAt != b.recheckAt) ? Long.compare(a.recheckAt, b.recheckAt) : Long.compare(a.ratingKey, b.ratingKey) ;
+
+  private final TreeMap<Long, Registration> waiting = new TreeMap<Long, Registration>() ;
+  private final TreeSet<Registration> rechecks = new TreeSet<Registration>(BY_RECHECK) ;
+  private final PlayerRatings ratings ;
+  private final double gapInitial ;  // rating points
+  private final double gapGrowth ;   // rating points per second of waiting
+  private final BiConsumer<Registration, Registration> pairs ;  // starts the game of two claimed players, longer waiting first
+  private int arrivals ;
+
+  RatingQueue(PlayerRatings ratings, double gapInitial, double gapGrowth, BiConsumer<Registration, Registration> pairs) {
+    this.ratings = ratings ;
+    this.gapInitial = gapInitial ;
+    this.gapGrowth = gapGrowth ;
+    this.pairs = pairs ;
+  }
+
+  // approximate, like Matchmaker.queueDepth()
+  int size() {
+    return waiting.size() ;
+  }
+
+  // a new registrant, r.queuedAt already set
+  void add(Registration r, long now) {
+    r.rating = ratings.get(r.connection.getPlayerName()) ;
+    r.ratingKey = ((long) r.rating << 32) | (arrivals++ & 0xffffffffL) ;
+    r.recheckAt = NEVER ;
+
+    if (!pairNearest(r, now)) {
+      waiting.put(r.ratingKey, r) ;
+      reschedule(r, now) ;
+      reschedule(below(r.ratingKey), now) ;
+      reschedule(above(r.ratingKey), now) ;
+    }
+  }
+
+  /*
+   * retry every player whose recheck is due; returns the System.nanoTime() of the next recheck, or NEVER.
+   */
+  long recheck(long now) {
+    Registration r ;
+    while (!rechecks.isEmpty() && (r = rechecks.first()).recheckAt <= now) {
+      drop(r) ;
+      if (r.canUnregister() && !pairNearest(r, now)) {
+        waiting.put(r.ratingKey, r) ;
+        reschedule(r, now) ;
+      }
+    }
+    return rechecks.isEmpty() ? NEVER : rechecks.first().recheckAt ;
+  }
+
+  /*
+   * pair r, which is not in the line, with the closer of its two neighbours that is close enough.  true if r has
+   * been dealt with: paired, or found to have unregistered.
+   */
+  private boolean pairNearest(Registration r, long now) {
+    while (true) {
+      Registration lower = below(r.ratingKey) ;
+      Registration upper = above(r.ratingKey) ;
+      if (lower != null && !closeEnough(r, lower, now)) {
+        lower = null ;
+      }
+      if (upper != null && !closeEnough(r, upper, now)) {
+        upper = null ;
+      }
+      Registration n = (lower == null) ? upper
+                     : (upper == null || distance(r, lower) <= distance(r, upper)) ? lower : upper ;
+      if (n == null) {
+        return false ;
+      }
+      drop(n) ;
+      if (!n.claim()) {
+        continue ;  // unregistered since below()/above() looked
+      }
+      if (!r.claim()) {
+        n.unclaim() ;  // r unregistered: n waits on where it was
+        waiting.put(n.ratingKey, n) ;
+        reschedule(n, now) ;
+        return true ;
+      }
+      if (n.queuedAt <= r.queuedAt) {
+        start(n, r) ;
+      } else {
+        start(r, n) ;
+      }
+      return true ;
+    }
+  }
+
+  private void start(Registration first, Registration second) {
+    first.confirm() ;
+    second.confirm() ;
+    pairs.accept(first, second) ;
+  }
+
+  // the nearest live neighbours of a key; unregistered players met on the way are dropped
+  private Registration below(long key) {
+    Map.Entry<Long, Registration> e ;
+    while ((e = waiting.lowerEntry(key)) != null) {
+      if (e.getValue().canUnregister()) {
+        return e.getValue() ;
+      }
+      drop(e.getValue()) ;
+    }
+    return null ;
+  }
+
+  private Registration above(long key) {
+    Map.Entry<Long, Registration> e ;
+    while ((e = waiting.higherEntry(key)) != null) {
+      if (e.getValue().canUnregister()) {
+        return e.getValue() ;
+      }
+      drop(e.getValue()) ;
+    }
+    return null ;
+  }
+
+  private void drop(Registration r) {
+    waiting.remove(r.ratingKey) ;
+    if (r.recheckAt != NEVER) {
+      rechecks.remove(r) ;
+      r.recheckAt = NEVER ;
+    }
+  }
+
+  private static int distance(Registration a, Registration b) {
+    return Math.abs(a.rating - b.rating) ;
+  }
+
+  private double gap(Registration r, long now) {
+    return gapInitial + gapGrowth * (now - r.queuedAt) / 1e9 ;
+  }
+
+  private boolean closeEnough(Registration a, Registration b, long now) {
+    return distance(a, b) <= Math.max(gap(a, now), gap(b, now)) ;
+  }
+
+  /*
+   * set r's recheck to when its own gap reaches its nearest neighbour.  (Its neighbour's gap reaching r is the
+   * neighbour's recheck.)  No neighbour, no recheck: the next arrival near r looks at r anyway.  A recheck is always
+   * after now, so rounding can never keep recheck() going round the same player.
+   */
+  private void reschedule(Registration r, long now) {
+    if (r == null) {
+      return ;
+    }
+    if (r.recheckAt != NEVER) {
+      rechecks.remove(r) ;
+      r.recheckAt = NEVER ;
+    }
+    Registration lower = below(r.ratingKey) ;
+    Registration upper = above(r.ratingKey) ;
+    int nearest = Math.min(lower == null ? Integer.MAX_VALUE : distance(r, lower),
+                           upper == null ? Integer.MAX_VALUE : distance(r, upper)) ;
+    if (nearest == Integer.MAX_VALUE || gapGrowth <= 0) {
+      return ;
+    }
+    r.recheckAt = Math.max(now + 1, r.queuedAt + (long) Math.ceil(Math.max(0, nearest - gapInitial) * 1e9 / gapGrowth)) ;
+    rechecks.add(r) ;
+  }
+}
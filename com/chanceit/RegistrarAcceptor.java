@@ -0,0 +1,43 @@
+package com.chanceit;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+
+/*
+ * Accept loop for executor_mode=virtual with the blocking transport.
+ *
+ * One per AcceptorShard.  Instead of a fixed pool of PlayerRegistrars competing on accept(), every accepted socket
+ * gets its own PlayerRegistrar running on a fresh (virtual) thread, so idle registrants cost no OS threads.
+ */
+class RegistrarAcceptor implements Runnable {
+
+  private final AcceptorShard shard ;
+  private final Matchmaker matchmaker ;
+  private final AdmissionControl admission ;
+  private final Properties prop ;
+  private final ExecutorService executor ;
+
+  RegistrarAcceptor(AcceptorShard shard, Matchmaker matchmaker, AdmissionControl admission, Properties prop, ExecutorService executor) {
+    this.shard = shard ;
+    this.matchmaker = matchmaker ;
+    this.admission = admission ;
+    this.prop = prop ;
+    this.executor = executor ;
+  }
+
+  @Override
+  public void run() {
+    while (shard.isOpen()) {
+      try {
+
+        Socket socket = shard.accept() ;
+        executor.execute(new PlayerRegistrar(socket, matchmaker, admission, prop)) ;
+
+      } catch (IOException e) {
+        // the client went away before we could accept it
+      }
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package com.chanceit;
+
+import com.chanceit.timer.TimingWheel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * A player waiting for a game.
+ *
+ * Unregistering and being paired race each other: the registrar sees GOODBYE:PLAYERNAME while the Matchmaker is
+ * pairing the same player.  Both sides go through one compare-and-set on state, so exactly one of them wins and
+ * nothing has to lock the queue.
+ *
+ * The Matchmaker claims a pair one player at a time, so a claim is only tentative until both have been claimed: it
+ * then confirm()s both, or unclaim()s the first if the second has gone, and the first goes back to waiting.  A
+ * withdraw() that meets a claimed player waits the few instructions it takes the Matchmaker to decide, so a GOODBYE
+ * is never mistaken for game input by a player who is not in a game after all.
+ *
+ * With registrant_idle_timeout the Matchmaker also sets a ServerTimers timer on each registration.  If it fires
+ * first it withdraws the player, the same compare-and-set again, and closes the connection; confirm() and withdraw()
+ * cancel it.
+ */
+class Registration implements TimingWheel.Task {
+
+  private static final int WAITING   = 0 ;
+  private static final int CLAIMED   = 1 ;  // by the Matchmaker, until it has the other player too
+  private static final int PAIRED    = 2 ;
+  private static final int WITHDRAWN = 3 ;
+
+  final PlayerConnection connection ;
+  final long registeredAt ;  // System.nanoTime() when HELLO was answered
+  long queuedAt ;            // and when the Matchmaker put it in the waiting line (matchmaker thread only)
+  long idleTimer = TimingWheel.NONE ;  // set by the Matchmaker before the registration is queued
+  int rating ;               // with matchmaking=rating, the RatingQueue's (matchmaker thread only)
+  long ratingKey ;
+  long recheckAt ;
+  private final AtomicInteger state = new AtomicInteger(WAITING) ;
+
+  Registration(PlayerConnection connection) {
+    this.connection = connection ;
+    this.registeredAt = System.nanoTime() ;
+  }
+
+  // Matchmaker: take this player for a game, pending its partner.  false if the player has already unregistered.
+  boolean claim() {
+    return state.compareAndSet(WAITING, CLAIMED) ;
+  }
+
+  // Matchmaker: both players are claimed; they are in a game
+  void confirm() {
+    state.set(PAIRED) ;
+    if (idleTimer != TimingWheel.NONE) {
+      ServerTimers.wheel().cancel(idleTimer) ;
+    }
+  }
+
+  // Matchmaker: the partner had unregistered; back to waiting, idle timer still running
+  void unclaim() {
+    state.set(WAITING) ;
+  }
+
+  // registrar: GOODBYE or disconnect.  false if the player has already been put in a game.
+  boolean withdraw() {
+    while (true) {
+      if (state.compareAndSet(WAITING, WITHDRAWN)) {
+        if (idleTimer != TimingWheel.NONE) {
+          ServerTimers.wheel().cancel(idleTimer) ;
+        }
+        return true ;
+      }
+      if (state.get() != CLAIMED) {
+        return false ;
+      }
+      Thread.yield() ;  // the Matchmaker is claiming the partner: confirm() or unclaim() is a moment away
+    }
+  }
+
+  // the idle timer: nobody has paired this player for registrant_idle_timeout.  Closing the connection makes its
+  // reader (PlayerRegistrar or NioEventLoop) finish up as for a disconnect, finding the registration withdrawn.
+  @Override
+  public void expire(long handle) {
+    if (withdraw()) {
+      ServerMetrics.REGISTRANTS_EXPIRED.increment() ;
+      System.out.println(String.format("    %s has un-registerred (idle)", connection.getPlayerName())) ;
+      connection.close() ;
+    }
+  }
+
+  // still waiting for a game (a claimed player may yet be unclaimed)
+  boolean canUnregister() {
+    int s = state.get() ;
+    return s == WAITING || s == CLAIMED ;
+  }
+
+  boolean isPaired() {
+    return state.get() == PAIRED ;
+  }
+}
@@ -2,4 +2,9 @@ package com.chanceit;
 
 public interface RunnableRecycler {
   public void resetData() ;
+
+  // the TaskRepeatingThreadPoolExecutor is shrinking: true lets it drop this task instead of running it again
+  public default boolean retire() {
+    return true ;
+  }
 }
@@ -0,0 +1,153 @@
+package com.chanceit;
+
+import com.chanceit.metrics.Counter;
+import com.chanceit.metrics.LatencyHistogram;
+import com.chanceit.metrics.MetricsMBean;
+import com.chanceit.metrics.MetricsRegistry;
+import com.chanceit.metrics.PrometheusExporter;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/*
+ * The server's metrics, one static field each so the code being measured records straight into them:
+ *
+ *   ACCEPTED            AcceptorShard, every connection accepted
+ *   REJECTED            AdmissionControl, connections turned away as the server was busy
+ *   HELLO_TO_QUEUED     Matchmaker, from answering HELLO to joining the waiting line
+ *   QUEUED_TO_PAIRED    Matchmaker, from joining the waiting line to being paired
+ *   RATING_GAP          Matchmaker, how far apart the ratings of each pair were (a value histogram, in rating points)
+ *   REGISTRANTS_EXPIRED Registration, players dropped after registrant_idle_timeout unpaired
+ *   PROMPT_RESPONSE     ActivePlayer, from sending a prompt to reading the player's answer
+ *   ROLL_TIME_OVERHEAD  ActivePlayer, how much longer the ROLL_TIME pause took than ROLL_TIME
+ *   PAIRED_TO_STARTED   GamePool, from pairing to the game getting a thread
+ *   GAMES_TURNED_AWAY   GamePool, paired games it had no room for
+ *   GAME_DURATION       GamePlayWorker, from the first turn to the outcome
+ *   outcome(how)        GamePlayWorker, chanceit_games_total{how=...}
+ *   grows/shrinks(pool) PoolSizer, chanceit_pool_grows_total{pool=registrar|game}
+ *
+ * Gauges (queue depths, busy game threads) are registered by start() once the server has built the things they read.
+ * Recording costs the same whether or not an exporter is running; see LatencyHistogram.
+ */
+final class ServerMetrics {
+
+  static final MetricsRegistry REGISTRY = new MetricsRegistry() ;
+
+  static final Counter ACCEPTED = REGISTRY.counter("chanceit_connections_accepted_total",
+      "Connections accepted") ;
+  static final Counter REJECTED = REGISTRY.counter("chanceit_connections_rejected_total",
+      "Connections turned away with SERVER BUSY") ;
+  static final LatencyHistogram HELLO_TO_QUEUED = REGISTRY.histogram("chanceit_hello_to_queued_seconds",
+      "Time from answering HELLO to joining the matchmaking queue") ;
+  static final LatencyHistogram QUEUED_TO_PAIRED = REGISTRY.histogram("chanceit_queued_to_paired_seconds",
+      "Time spent in the matchmaking queue before being paired") ;
+  static final LatencyHistogram RATING_GAP = REGISTRY.valueHistogram("chanceit_rating_gap",
+      "Difference between the ratings of two players when they were paired") ;
+  static final Counter REGISTRANTS_EXPIRED = REGISTRY.counter("chanceit_registrants_expired_total",
+      "Players dropped for waiting longer than registrant_idle_timeout") ;
+  static final LatencyHistogram PROMPT_RESPONSE = REGISTRY.histogram("chanceit_prompt_response_seconds",
+      "Time from prompting a player to reading their answer") ;
+  static final LatencyHistogram ROLL_TIME_OVERHEAD = REGISTRY.histogram("chanceit_roll_time_overhead_seconds",
+      "Time the simulated roll took beyond roll_time") ;
+  static final LatencyHistogram PAIRED_TO_STARTED = REGISTRY.histogram("chanceit_paired_to_started_seconds",
+      "Time a paired game waited for a game thread") ;
+  static final Counter GAMES_TURNED_AWAY = REGISTRY.counter("chanceit_games_turned_away_total",
+      "Paired games turned away with SERVER BUSY as the game pool was full") ;
+  static final LatencyHistogram GAME_DURATION = REGISTRY.histogram("chanceit_game_duration_seconds",
+      "Time from the first turn of a game to its outcome") ;
+
+  private static final String GAMES = "chanceit_games_total" ;
+  private static final String GAMES_HELP = "Games finished, by how they ended" ;
+  private static final Counter FAIR_PLAY  = REGISTRY.counter(GAMES, GAMES_HELP, "how", "FAIR_PLAY") ;
+  private static final Counter TIE        = REGISTRY.counter(GAMES, GAMES_HELP, "how", "TIE") ;
+  private static final Counter TIMEOUT    = REGISTRY.counter(GAMES, GAMES_HELP, "how", "TIMEOUT") ;
+  private static final Counter DISCONNECT = REGISTRY.counter(GAMES, GAMES_HELP, "how", "DISCONNECT") ;
+  private static final Counter STOP       = REGISTRY.counter(GAMES, GAMES_HELP, "how", "STOP") ;
+
+  private static final String GROWS = "chanceit_pool_grows_total" ;
+  private static final String SHRINKS = "chanceit_pool_shrinks_total" ;
+  private static final Counter REGISTRAR_GROWS   = REGISTRY.counter(GROWS, "Pool resizes up", "pool", "registrar") ;
+  private static final Counter GAME_GROWS        = REGISTRY.counter(GROWS, "Pool resizes up", "pool", "game") ;
+  private static final Counter REGISTRAR_SHRINKS = REGISTRY.counter(SHRINKS, "Pool resizes down", "pool", "registrar") ;
+  private static final Counter GAME_SHRINKS      = REGISTRY.counter(SHRINKS, "Pool resizes down", "pool", "game") ;
+
+  private ServerMetrics() {}
+
+  static Counter grows(String pool) {
+    return "game".equals(pool) ? GAME_GROWS : REGISTRAR_GROWS ;
+  }
+
+  static Counter shrinks(String pool) {
+    return "game".equals(pool) ? GAME_SHRINKS : REGISTRAR_SHRINKS ;
+  }
+
+  // the counter for GamePlayWorker.logGameOutcome()'s how
+  static Counter outcome(String how) {
+    switch (how) {
+      case "TIMEOUT":    return TIMEOUT ;
+      case "DISCONNECT": return DISCONNECT ;
+      case "STOP":       return STOP ;
+      case "FAIR_PLAY":  return FAIR_PLAY ;
+      default:           return TIE ;  // "FAIR_PLAY||TIE"
+    }
+  }
+
+  /*
+   * registers the gauges and starts the exporters asked for in prop:
+   *   metrics_port  the Prometheus endpoint, http://metrics_host:metrics_port/metrics (0 for none)
+   *   metrics_jmx   register com.chanceit:type=Metrics with the platform MBean server
+   * registrars, gameLog and recorder may be null.
+   */
+  static void start(Properties prop, Matchmaker matchmaker, AdmissionControl admission, ExecutorService gamePool,
+                    TaskRepeatingThreadPoolExecutor registrars, GameLogWriter gameLog, GameRecorder recorder) {
+    REGISTRY.gauge("chanceit_matchmaker_queue_depth", "Players waiting to be paired", matchmaker::queueDepth) ;
+    REGISTRY.gauge("chanceit_connections_open", "Connections admitted and not yet closed", admission::getConnections) ;
+    REGISTRY.gauge("chanceit_timers_pending", "Timers waiting in the timing wheel", ServerTimers.wheel()::getPending) ;
+    if (gamePool instanceof ThreadPoolExecutor) {
+      ThreadPoolExecutor pool = (ThreadPoolExecutor) gamePool ;
+      REGISTRY.gauge("chanceit_games_active", "Games being played", pool::getActiveCount) ;
+      REGISTRY.gauge("chanceit_games_queued", "Paired games waiting for a game thread", () -> pool.getQueue().size()) ;
+      REGISTRY.gauge("chanceit_pool_size", "Pool core size (games) or registrar target", "pool", "game", pool::getCorePoolSize) ;
+      REGISTRY.gauge("chanceit_pool_threads", "Threads in the pool", "pool", "game", pool::getPoolSize) ;
+    }
+    if (gamePool instanceof GameScheduler) {
+      GameScheduler scheduler = (GameScheduler) gamePool ;
+      REGISTRY.gauge("chanceit_games_active", "Games being played", GameSession.ACTIVE::get) ;
+      REGISTRY.gauge("chanceit_scheduler_queued", "Game steps waiting for a scheduler thread", scheduler::getQueued) ;
+      REGISTRY.gauge("chanceit_scheduler_steals", "Game steps a scheduler thread took from another's queue", scheduler::getStealCount) ;
+      REGISTRY.gauge("chanceit_pool_threads", "Threads in the pool", "pool", "game", scheduler::getPoolSize) ;
+    }
+    if (registrars != null) {
+      REGISTRY.gauge("chanceit_pool_size", "Pool core size (games) or registrar target", "pool", "registrar", registrars::getTarget) ;
+      REGISTRY.gauge("chanceit_pool_threads", "Threads in the pool", "pool", "registrar", registrars::getPoolSize) ;
+    }
+    if (gameLog != null) {
+      REGISTRY.gauge("chanceit_game_log_queue_depth", "Outcomes waiting for the GameLogWriter", gameLog::getQueueDepth) ;
+      REGISTRY.gauge("chanceit_game_log_dropped", "Outcomes the GameLogWriter had no room for", gameLog::getDropped) ;
+    }
+    if (recorder != null) {
+      REGISTRY.gauge("chanceit_recorder_queue_depth", "Games waiting for the GameRecorder", recorder::getQueueDepth) ;
+      REGISTRY.gauge("chanceit_recorder_dropped", "Games the GameRecorder had no room for", recorder::getDropped) ;
+      REGISTRY.gauge("chanceit_recorder_failed", "Games the database rejected", recorder::getFailed) ;
+    }
+
+    int port = Integer.parseInt(prop.getProperty("metrics_port", "0")) ;
+    if (port > 0) {
+      String host = prop.getProperty("metrics_host", "127.0.0.1") ;
+      try {
+        new PrometheusExporter(REGISTRY).start(host, port) ;
+        System.out.println(String.format("Metrics at: http://%s:%d/metrics", host, port)) ;
+      } catch (Exception e) {
+        System.out.println("Could not start the metrics endpoint: " + e) ;
+      }
+    }
+    if (Boolean.parseBoolean(prop.getProperty("metrics_jmx", "false"))) {
+      try {
+        new MetricsMBean(REGISTRY).register("com.chanceit:type=Metrics") ;
+        System.out.println("Metrics registered with JMX as com.chanceit:type=Metrics") ;
+      } catch (Exception e) {
+        System.out.println("Could not register the metrics MBean: " + e) ;
+      }
+    }
+  }
+}
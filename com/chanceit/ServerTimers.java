@@ -0,0 +1,41 @@
+package com.chanceit;
+
+import com.chanceit.timer.TimingWheel;
+import java.util.Properties;
+
+/*
+ * The server's one TimingWheel.  Every wait with a time limit goes through it instead of parking a thread with a
+ * timeout of its own: player input deadlines (PlayerInbox), roll_time and the opponent notify delay (GamePlayWorker)
+ * and idle registrants (registrant_idle_timeout).  A pending timer is an entry in the wheel's arrays, not a sleeping
+ * thread or a scheduled future.
+ *
+ * start() sets it up from timer_tick; anything that needs the wheel before then (a benchmark, say) gets one with
+ * the default tick.
+ */
+final class ServerTimers {
+
+  static final int DEFAULT_TICK = 1 ;  // ms
+
+  private static volatile TimingWheel wheel ;
+
+  private ServerTimers() {}
+
+  static synchronized void start(Properties prop) {
+    if (wheel == null) {
+      int tick = Integer.parseInt(prop.getProperty("timer_tick", String.valueOf(DEFAULT_TICK))) ;
+      TimingWheel w = new TimingWheel(tick, 1024, "TimingWheel") ;
+      w.start() ;
+      wheel = w ;
+      System.out.println(String.format("    timing wheel ticks every %d ms...", tick)) ;
+    }
+  }
+
+  static TimingWheel wheel() {
+    TimingWheel w = wheel ;
+    if (w == null) {
+      start(new Properties()) ;
+      w = wheel ;
+    }
+    return w ;
+  }
+}
@@ -0,0 +1,74 @@
+package com.chanceit;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+/*
+ * A PlayerConnection for the blocking transport.
+ *
+ * PlayerRegistrar objects are recycled by the TaskRepeatingThreadPoolExecutor, so the socket and its output stream
+ * are copied in here at HELLO time.  The game holds on to this object, not to the registrar.
+ *
+ * The registrar thread stays the socket's only reader for the life of the connection and hands game input over
+ * through the inbox.
+ */
+class SocketConnection implements PlayerConnection {
+
+  final Socket socket ;
+  final PrintWriter output ;
+  final OutputStream stream ;   // under output; PrintWriter is auto-flushing, so the two never interleave mid-line
+  final String name ;
+  final boolean binary ;
+  final PlayerInbox inbox = new PlayerInbox() ;
+
+  SocketConnection(Socket socket, PrintWriter output, String name, boolean binary) throws IOException {
+    this.socket = socket ;
+    this.output = output ;
+    this.stream = socket.getOutputStream() ;
+    this.name = name ;
+    this.binary = binary ;
+  }
+
+  @Override
+  public String getPlayerName() {
+    return name ;
+  }
+
+  @Override
+  public boolean isBinary() {
+    return binary ;
+  }
+
+  @Override
+  public String readLine(int timeout) throws IOException {
+    return inbox.take(timeout) ;
+  }
+
+  @Override
+  public void println(String message) {
+    output.println(message) ;
+  }
+
+  @Override
+  public void write(ByteBuffer message) {
+    try {
+      stream.write(message.array(), message.arrayOffset() + message.position(), message.remaining()) ;
+      message.position(message.limit()) ;
+    } catch (IOException e) {
+      // like PrintWriter: the game finds out about a dead socket when it next reads
+    }
+  }
+
+  @Override
+  public PlayerInbox getInbox() {
+    return inbox ;
+  }
+
+  @Override
+  public void close() {
+    try { socket.close(); } catch (IOException e) {}
+  }
+}
@@ -1,22 +1,74 @@
 package com.chanceit;
 
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
-
+/*
+ * A pool of tasks that run over and over, one thread each (the PlayerRegistrars: accept, play, repeat), whose number
+ * follows a target between minTasks and maxTasks.
+ *
+ * Every task that finishes is reset (RunnableRecycler) and run again, unless there are more tasks than the target:
+ * then it is retired and its thread, with nothing left to do, times out after keepAliveTime.  Raising the target
+ * starts new tasks from the factory.  The core pool size follows the target, so every task has a thread of its own and
+ * the queue (bounded at maxTasks) only ever holds a task between two runs.
+ *
+ * The PoolSizer sets the target from how many registrars are busy; see resize().
+ */
 public class TaskRepeatingThreadPoolExecutor extends ThreadPoolExecutor {
-  public TaskRepeatingThreadPoolExecutor(int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit, BlockingQueue<Runnable> workQueue) {
-    super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue);
+
+  private final int minTasks ;
+  private final int maxTasks ;
+  private final Supplier<? extends Runnable> factory ;
+  private final AtomicInteger tasks = new AtomicInteger() ;
+  private volatile int target ;
+
+  public TaskRepeatingThreadPoolExecutor(int minTasks, int maxTasks, long keepAliveTime, TimeUnit unit, Supplier<? extends Runnable> factory) {
+    super(minTasks, maxTasks, keepAliveTime, unit, new ArrayBlockingQueue<Runnable>(maxTasks)) ;
+    this.minTasks = minTasks ;
+    this.maxTasks = maxTasks ;
+    this.factory = factory ;
   }
 
+  /*
+   * make the target n (clamped to [minTasks, maxTasks]): start tasks now to grow, retire them as they finish a run
+   * to shrink.  Returns the new target.
+   */
+  public synchronized int resize(int n) {
+    n = Math.max(minTasks, Math.min(maxTasks, n)) ;
+    target = n ;
+    setCorePoolSize(n) ;
+    int t ;
+    while ((t = tasks.get()) < n) {
+      if (tasks.compareAndSet(t, t + 1)) {
+        execute(factory.get()) ;
+      }
+    }
+    return n ;
+  }
+
+  public int getTarget() { return target ; }
+  public int getTasks() { return tasks.get() ; }
+  public int getMinTasks() { return minTasks ; }
+  public int getMaxTasks() { return maxTasks ; }
+
   @Override
   protected void afterExecute(Runnable r, Throwable t) {
     super.afterExecute(r, t);
-    //PlayerRegistrar pr = (PlayerRegistrar)r;
     RunnableRecycler rr = (RunnableRecycler)r;
     rr.resetData();
-    this.execute(r);  // may need to cast back to runnable ?
-    // System.out.println("Task Resubmitted: " + r) ;
+    int n ;
+    while ((n = tasks.get()) > target) {
+      if (tasks.compareAndSet(n, n - 1)) {
+        if (rr.retire()) {
+          return ;
+        }
+        tasks.incrementAndGet() ;  // it has to keep running (e.g. the last registrar of its shard)
+        break ;
+      }
+    }
+    this.execute(r);
   }
 }
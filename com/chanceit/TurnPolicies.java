@@ -0,0 +1,73 @@
+package com.chanceit;
+
+import com.chanceit.engine.DecisionTable;
+import com.chanceit.engine.Strategies;
+import com.chanceit.engine.Strategy;
+import java.io.IOException;
+import java.util.Properties;
+
+/*
+ * Turn policies: instead of answering every "chance-it? [Y/n]" a player can answer a prompt with
+ *
+ *   policy:turn:SPEC   the server plays the rest of this turn by SPEC
+ *   policy:game:SPEC   the server plays the rest of this turn, and every later turn of the game, by SPEC
+ *
+ * where SPEC is one of the engine's Strategies:
+ *
+ *   stop:N             roll until the turn total is at least N
+ *   stop:N:M           the same, unless behind by M or more: then roll until this turn would put the player ahead
+ *   rolls:K            roll K more times after the first roll, then stop
+ *   table:T2,...,T12   stop at a turn total that depends on the turn's first roll
+ *   optimal            the optimal policy, if the server was started with a policy_table
+ *
+ * The server then takes those decisions itself: no prompt, no round trip and no roll_time per roll.  The player still
+ * gets the stats of every roll, batched into one write at the end of the turn.  The rules do not change; a policy only
+ * answers the question the player would have been asked.
+ *
+ * One per server; parse() is thread safe.
+ */
+class TurnPolicies {
+
+  static final String POLICY_COMMAND = "policy:" ;
+  static final String TURN_SCOPE = "turn:" ;
+  static final String GAME_SCOPE = "game:" ;
+
+  private static final String OPTIMAL = "optimal" ;
+
+  private Strategy optimal ;   // null without a policy_table
+
+  TurnPolicies(Properties prop) {
+    String path = prop.getProperty("policy_table", "").trim() ;
+    if (path.isEmpty()) {
+      return ;
+    }
+    int turns = Integer.parseInt(prop.getProperty("number_of_turns", "20")) ;
+    try {
+      DecisionTable table = DecisionTable.open(path) ;
+      if (table.getTurnsPerPlayer() != turns) {
+        System.out.println(String.format("policy_table %s was solved for %d turns, not %d: the optimal policy is off",
+            path, table.getTurnsPerPlayer(), turns)) ;
+        return ;
+      }
+      optimal = table.asStrategy(OPTIMAL) ;
+      System.out.println("Optimal turn policy from: " + path) ;
+    } catch (IOException e) {
+      System.out.println("Could not read policy_table " + path + ": " + e.getMessage()) ;
+    }
+  }
+
+  /*
+   * the policy for a SPEC sent by a player.  Throws an IllegalArgumentException if it is not one of the above; in
+   * particular a player can not make the server open a file (optimal:FILE).
+   */
+  Strategy parse(String spec) {
+    spec = spec.trim() ;
+    if (spec.startsWith(OPTIMAL)) {
+      if (!OPTIMAL.equals(spec) || optimal == null) {
+        throw new IllegalArgumentException("the optimal policy is not available: " + spec) ;
+      }
+      return optimal ;
+    }
+    return Strategies.parse(spec) ;
+  }
+}
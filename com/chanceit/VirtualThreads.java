@@ -0,0 +1,28 @@
+package com.chanceit;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * executor_mode=virtual support.
+ *
+ * Virtual threads arrived in Java 21.  The server still builds with older compilers (see run.sh), so the
+ * per-task executor is looked up reflectively and callers fall back to platform thread pools when it is missing.
+ */
+final class VirtualThreads {
+
+  private VirtualThreads() {}
+
+  /*
+   * returns an executor that starts a new virtual thread for each task, or null if this JVM has no virtual threads.
+   */
+  static ExecutorService newPerTaskExecutor() {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor") ;
+      return (ExecutorService) factory.invoke(null) ;
+    } catch (ReflectiveOperationException e) {
+      return null ;
+    }
+  }
+}
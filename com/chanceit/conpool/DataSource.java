@@ -4,6 +4,7 @@ import java.beans.PropertyVetoException;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Properties;
 
 import com.mchange.v2.c3p0.ComboPooledDataSource;
 
@@ -12,29 +13,37 @@ public class DataSource {
     private static DataSource     datasource;
     private ComboPooledDataSource cpds;
 
-    private DataSource() throws IOException, SQLException, PropertyVetoException {
+    // the db_* settings of config.properties; any that are missing keep the values below
+    private DataSource(Properties prop) throws IOException, SQLException, PropertyVetoException {
         cpds = new ComboPooledDataSource();
-        cpds.setDriverClass("com.mysql.jdbc.Driver"); //loads the jdbc driver
-        cpds.setJdbcUrl("jdbc:mysql://localhost:3306/chance_it?useSSL=false");
-        cpds.setUser("USER");
-        cpds.setPassword("p@55w0rd");
+        cpds.setDriverClass(prop.getProperty("db_driver", "com.mysql.jdbc.Driver")); //loads the jdbc driver
+        cpds.setJdbcUrl(prop.getProperty("db_url", "jdbc:mysql://localhost:3306/chance_it?useSSL=false"));
+        cpds.setUser(prop.getProperty("db_user", "USER"));
+        cpds.setPassword(prop.getProperty("db_password", "p@55w0rd"));
 
         // the settings below are optional -- c3p0 can work with defaults
-        cpds.setInitialPoolSize(5);
-        cpds.setMinPoolSize(5);
+        int minPoolSize = Integer.parseInt(prop.getProperty("db_pool_min_size", "5"));
+        cpds.setInitialPoolSize(minPoolSize);
+        cpds.setMinPoolSize(minPoolSize);
         cpds.setAcquireIncrement(5);
-        cpds.setMaxPoolSize(20);
+        cpds.setMaxPoolSize(Integer.parseInt(prop.getProperty("db_pool_max_size", "20")));
         cpds.setMaxStatements(180);
 
+        // how long getConnection() waits for a connection before it throws. 0 == forever
+        cpds.setCheckoutTimeout(Integer.parseInt(prop.getProperty("db_checkout_timeout", "0")));
+
     }
 
     public static DataSource getInstance() throws IOException, SQLException, PropertyVetoException {
+        return getInstance(new Properties());
+    }
+
+    // the first call configures the pool; later calls get the same one
+    public static synchronized DataSource getInstance(Properties prop) throws IOException, SQLException, PropertyVetoException {
         if (datasource == null) {
-            datasource = new DataSource();
-            return datasource;
-        } else {
-            return datasource;
+            datasource = new DataSource(prop);
         }
+        return datasource;
     }
 
     public ComboPooledDataSource getPool() throws IOException, SQLException, PropertyVetoException {
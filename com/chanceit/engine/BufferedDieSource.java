@@ -0,0 +1,71 @@
+package com.chanceit.engine;
+
+import java.util.SplittableRandom;
+
+/*
+ * A DieSource that takes its rolls from a pre-filled buffer, refilled in batches from a SplittableRandom.  Each
+ * nextLong() is cut into 8 bytes and every byte below 252 (42 * 6) becomes a roll through a lookup table, so one call
+ * gives almost 8 rolls with no modulo bias and no data-dependent branches, and roll() is an array read.
+ *
+ * The rolls are a pure function of the seed: a BufferedDieSource created with (or reseeded to) the same seed deals the
+ * same dice in the same order.  Not thread safe; one per game or per simulation task.
+ */
+public final class BufferedDieSource implements DieSource {
+
+  private static final int BATCH = 64 ;
+
+  // FACE[b] is the roll for random byte b, or 0 for the 4 bytes (252 to 255) above the largest multiple of 6
+  private static final byte[] FACE = new byte[256] ;
+  static {
+    for (int b = 0; b < 252; b++) {
+      FACE[b] = (byte) (b % 6 + 1) ;
+    }
+  }
+
+  private final byte[] rolls = new byte[BATCH] ;
+  private int next ;
+  private int filled ;   // rolls[0 .. filled) are this batch
+  private SplittableRandom random ;
+  private long seed ;
+
+  public BufferedDieSource(long seed) {
+    reseed(seed) ;
+  }
+
+  // an unseeded stream, e.g. one split off for a simulation task
+  public BufferedDieSource(SplittableRandom random) {
+    this.random = random ;
+  }
+
+  // start the sequence for `seed` from the beginning
+  public void reseed(long seed) {
+    this.seed = seed ;
+    this.random = new SplittableRandom(seed) ;
+    this.next = 0 ;
+    this.filled = 0 ;
+  }
+
+  public long getSeed() { return seed ; }
+
+  @Override
+  public int roll() {
+    if (next == filled) {
+      refill() ;
+    }
+    return rolls[next++] ;
+  }
+
+  private void refill() {
+    int n = 0 ;
+    while (n <= BATCH - 8) {
+      long bits = random.nextLong() ;
+      for (int i = 0; i < 64; i += 8) {
+        byte face = FACE[(int) (bits >>> i) & 0xFF] ;
+        rolls[n] = face ;
+        n += (face != 0) ? 1 : 0 ;  // a rejected byte is overwritten by the next one
+      }
+    }
+    filled = n ;
+    next = 0 ;
+  }
+}
@@ -0,0 +1,168 @@
+package com.chanceit.engine;
+
+/*
+ * The rules of Chance-It as a state machine, with no I/O, no allocation after construction and no exceptions for
+ * control flow.
+ *
+ * Two players (0 and 1) take turns; player 0 goes first and each player gets turnsPerPlayer turns.  A turn:
+ *   • startTurn() takes the first roll (two dice).  Its total is the turn's target and is the first thing banked.
+ *   • chanceIt() rolls again.  If the roll matches the first roll's total the turn busts and scores 0, otherwise
+ *     it is added to the turn total and the player decides again.
+ *   • bank() ends the turn and adds the turn total to the player's score.
+ * After the last turn the higher score wins.  forfeit() ends the game early.
+ *
+ *   TURN_PENDING      --startTurn()-->          AWAITING_DECISION
+ *   AWAITING_DECISION --chanceIt() (no match)--> AWAITING_DECISION
+ *   AWAITING_DECISION --chanceIt() (match)-->    TURN_PENDING or GAME_OVER
+ *   AWAITING_DECISION --bank()-->                TURN_PENDING or GAME_OVER
+ *   any               --forfeit(p)-->            GAME_OVER
+ *
+ * A ChanceItGame is not thread safe; the thread playing the game owns it.  reset() makes it reusable, which is what
+ * simulations should do instead of allocating a game per run.
+ */
+public final class ChanceItGame {
+
+  public static final int TURN_PENDING      = 0 ;
+  public static final int AWAITING_DECISION = 1 ;
+  public static final int GAME_OVER         = 2 ;
+
+  public static final int DRAW = -1 ;
+
+  private final int turnsPerPlayer ;
+  private final DieSource dice ;
+  private final GameListener listener ;
+
+  private int state ;
+  private int currentPlayer ;
+  private int turnNumber ;     // 0 based; both players get turn 0, then both get turn 1 ...
+  private int score0 ;
+  private int score1 ;
+  private int firstRollTotal ;
+  private int turnTotal ;
+  private int rollNumber ;     // rolls taken this turn, including the first
+  private int die1 ;
+  private int die2 ;
+  private int winner ;
+
+  public ChanceItGame(int turnsPerPlayer, DieSource dice, GameListener listener) {
+    if (turnsPerPlayer < 1) {
+      throw new IllegalArgumentException("turnsPerPlayer must be at least 1: " + turnsPerPlayer) ;
+    }
+    this.turnsPerPlayer = turnsPerPlayer ;
+    this.dice = dice ;
+    this.listener = (listener == null) ? GameListener.NONE : listener ;
+    reset() ;
+  }
+
+  // start over: player 0 to take turn 0, no scores
+  public void reset() {
+    state = TURN_PENDING ;
+    currentPlayer = 0 ;
+    turnNumber = 0 ;
+    score0 = 0 ;
+    score1 = 0 ;
+    firstRollTotal = 0 ;
+    turnTotal = 0 ;
+    rollNumber = 0 ;
+    die1 = 0 ;
+    die2 = 0 ;
+    winner = DRAW ;
+  }
+
+  /*
+   * the current player's first roll
+   */
+  public void startTurn() {
+    requireState(TURN_PENDING) ;
+    die1 = dice.roll() ;
+    die2 = dice.roll() ;
+    firstRollTotal = die1 + die2 ;
+    turnTotal = firstRollTotal ;
+    rollNumber = 1 ;
+    state = AWAITING_DECISION ;
+    listener.onRoll(currentPlayer, rollNumber, die1, die2, turnTotal) ;
+  }
+
+  /*
+   * roll again.  returns false if the roll matched the first roll and the turn busted.
+   */
+  public boolean chanceIt() {
+    requireState(AWAITING_DECISION) ;
+    die1 = dice.roll() ;
+    die2 = dice.roll() ;
+    rollNumber++ ;
+    if (die1 + die2 == firstRollTotal) {
+      turnTotal = 0 ;
+      listener.onBust(currentPlayer, rollNumber, die1, die2) ;
+      endTurn() ;
+      return false ;
+    }
+    turnTotal += die1 + die2 ;
+    listener.onRoll(currentPlayer, rollNumber, die1, die2, turnTotal) ;
+    return true ;
+  }
+
+  /*
+   * stop rolling and keep the turn total
+   */
+  public void bank() {
+    requireState(AWAITING_DECISION) ;
+    endTurn() ;
+  }
+
+  /*
+   * player gives up (or can no longer play); the other player wins whatever the score
+   */
+  public void forfeit(int player) {
+    if (state == GAME_OVER) {
+      return ;
+    }
+    winner = 1 - player ;
+    state = GAME_OVER ;
+    listener.onGameOver(winner, score0, score1) ;
+  }
+
+  private void endTurn() {
+    int score ;
+    if (currentPlayer == 0) {
+      score = score0 += turnTotal ;
+    } else {
+      score = score1 += turnTotal ;
+    }
+    listener.onTurnEnd(currentPlayer, turnTotal, score) ;
+
+    if (currentPlayer == 1) {
+      turnNumber++ ;
+    }
+    currentPlayer = 1 - currentPlayer ;
+
+    if (turnNumber == turnsPerPlayer) {
+      winner = (score0 > score1) ? 0 : (score1 > score0) ? 1 : DRAW ;
+      state = GAME_OVER ;
+      listener.onGameOver(winner, score0, score1) ;
+    } else {
+      state = TURN_PENDING ;
+    }
+  }
+
+  private void requireState(int expected) {
+    if (state != expected) {
+      throw new IllegalStateException("expected state " + expected + " but was " + state) ;
+    }
+  }
+
+  public int getState()          { return state ; }
+  public int getCurrentPlayer()  { return currentPlayer ; }
+  public int getTurnNumber()     { return turnNumber ; }
+  public int getTurnsPerPlayer() { return turnsPerPlayer ; }
+  public int getScore(int player) { return (player == 0) ? score0 : score1 ; }
+  public int getFirstRollTotal() { return firstRollTotal ; }
+  public int getTurnTotal()      { return turnTotal ; }
+  public int getRollNumber()     { return rollNumber ; }
+  public int getDie1()           { return die1 ; }
+  public int getDie2()           { return die2 ; }
+  public boolean isOver()        { return state == GAME_OVER ; }
+
+  // 0, 1 or DRAW once the game is over
+  public int getWinner()         { return winner ; }
+}
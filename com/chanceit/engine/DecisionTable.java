@@ -0,0 +1,133 @@
+package com.chanceit.engine;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/*
+ * The optimal policy written by the solver (com.chanceit.sim.Solver), memory-mapped read-only.  A lookup is index
+ * arithmetic and one 2 byte read.
+ *
+ * Every decision state is (d, R, s, t):
+ *   d   my score - opponent's score, clamped to [-maxDiff, maxDiff]
+ *   R   turns left in the game including this one, both players': 2 * turnsPerPlayer at the start, 1 on the last turn
+ *   s   the first roll of this turn, 2 to 12
+ *   t   the running turn total, 2 to maxTurnTotal (past maxTurnTotal the policy is to stop)
+ *
+ * and is stored as a short: the top bit is the decision (1 == chance it) and the low 15 bits the probability of
+ * winning with optimal play from there, in 1/32767ths.  A draw counts as half a win.  After the decisions comes the
+ * win probability at the start of a turn, before the first roll, for every (d, R).
+ *
+ * File layout (big endian):
+ *   int magic "CHIT", int version, int turnsPerPlayer, int maxDiff, int maxTurnTotal, 12 bytes padding
+ *   short decision[R - 1][d + maxDiff][s - 2][t - 2]
+ *   short startOfTurn[R - 1][d + maxDiff]
+ */
+public final class DecisionTable {
+
+  public static final int MAGIC = 0x43484954 ;  // "CHIT"
+  public static final int VERSION = 1 ;
+  public static final int HEADER_BYTES = 32 ;
+  public static final int CHANCE_IT_BIT = 0x8000 ;
+  public static final int PROBABILITY_SCALE = 0x7FFF ;
+
+  private final ByteBuffer table ;
+  private final int turnsPerPlayer ;
+  private final int maxDiff ;
+  private final int maxTurnTotal ;
+  private final int diffs ;
+  private final int totals ;
+  private final int startOfTurnOffset ;
+
+  private DecisionTable(ByteBuffer table) throws IOException {
+    this.table = table ;
+    if (table.getInt(0) != MAGIC || table.getInt(4) != VERSION) {
+      throw new IOException("not a Chance-It decision table (version " + VERSION + ")") ;
+    }
+    this.turnsPerPlayer = table.getInt(8) ;
+    this.maxDiff = table.getInt(12) ;
+    this.maxTurnTotal = table.getInt(16) ;
+    this.diffs = 2 * maxDiff + 1 ;
+    this.totals = maxTurnTotal - 1 ;
+    this.startOfTurnOffset = HEADER_BYTES + 2 * decisionEntries(turnsPerPlayer, maxDiff, maxTurnTotal) ;
+    if (table.capacity() != startOfTurnOffset + 2 * 2 * turnsPerPlayer * diffs) {
+      throw new IOException("decision table is truncated") ;
+    }
+  }
+
+  public static DecisionTable open(String path) throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(path, "r") ;
+         FileChannel channel = file.getChannel()) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()) ;
+      return new DecisionTable(buffer) ;  // the mapping outlives the channel
+    }
+  }
+
+  public static int decisionEntries(int turnsPerPlayer, int maxDiff, int maxTurnTotal) {
+    return 2 * turnsPerPlayer * (2 * maxDiff + 1) * 11 * (maxTurnTotal - 1) ;
+  }
+
+  // byte offset of decision state (d, R, s, t); t must be <= maxTurnTotal
+  public static int offset(int turnsRemaining, int diffIndex, int firstRoll, int turnTotal, int diffs, int totals) {
+    return HEADER_BYTES + 2 * ((((turnsRemaining - 1) * diffs + diffIndex) * 11 + (firstRoll - 2)) * totals + (turnTotal - 2)) ;
+  }
+
+  // the stored form of one state
+  public static short encode(boolean chanceIt, double winProbability) {
+    return (short) ((chanceIt ? CHANCE_IT_BIT : 0) | (int) Math.round(winProbability * PROBABILITY_SCALE)) ;
+  }
+
+  public boolean shouldChanceIt(int scoreDiff, int turnsRemaining, int firstRoll, int turnTotal) {
+    if (turnTotal > maxTurnTotal) {
+      return false ;
+    }
+    return (entry(scoreDiff, turnsRemaining, firstRoll, turnTotal) & CHANCE_IT_BIT) != 0 ;
+  }
+
+  // with optimal play by both players from here; a draw counts as half
+  public double winProbability(int scoreDiff, int turnsRemaining, int firstRoll, int turnTotal) {
+    if (turnTotal > maxTurnTotal) {
+      turnTotal = maxTurnTotal ;
+    }
+    return (entry(scoreDiff, turnsRemaining, firstRoll, turnTotal) & PROBABILITY_SCALE) / (double) PROBABILITY_SCALE ;
+  }
+
+  // before the first roll of a turn
+  public double winProbabilityAtTurnStart(int scoreDiff, int turnsRemaining) {
+    int index = startOfTurnOffset + 2 * ((turnsRemaining - 1) * diffs + clamp(scoreDiff)) ;
+    return (table.getShort(index) & PROBABILITY_SCALE) / (double) PROBABILITY_SCALE ;
+  }
+
+  private int entry(int scoreDiff, int turnsRemaining, int firstRoll, int turnTotal) {
+    return table.getShort(offset(turnsRemaining, clamp(scoreDiff), firstRoll, turnTotal, diffs, totals)) ;
+  }
+
+  private int clamp(int scoreDiff) {
+    return Math.max(-maxDiff, Math.min(maxDiff, scoreDiff)) + maxDiff ;
+  }
+
+  // turns left in the game, including the current one
+  public static int turnsRemaining(ChanceItGame game) {
+    return 2 * (game.getTurnsPerPlayer() - game.getTurnNumber()) - game.getCurrentPlayer() ;
+  }
+
+  // the table as an engine Strategy
+  public Strategy asStrategy(final String name) {
+    return new Strategy() {
+      public boolean chanceIt(ChanceItGame game) {
+        if (game.getTurnsPerPlayer() != turnsPerPlayer) {
+          throw new IllegalStateException(name + " was solved for " + turnsPerPlayer + " turns, not " + game.getTurnsPerPlayer()) ;
+        }
+        int me = game.getCurrentPlayer() ;
+        return shouldChanceIt(game.getScore(me) - game.getScore(1 - me), turnsRemaining(game), game.getFirstRollTotal(), game.getTurnTotal()) ;
+      }
+      public String toString() { return name ; }
+    } ;
+  }
+
+  public int getTurnsPerPlayer() { return turnsPerPlayer ; }
+  public int getMaxDiff()        { return maxDiff ; }
+  public int getMaxTurnTotal()   { return maxTurnTotal ; }
+}
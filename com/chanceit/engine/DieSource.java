@@ -0,0 +1,10 @@
+package com.chanceit.engine;
+
+/*
+ * Where a ChanceItGame gets its dice from.  Implementations must not allocate per roll.
+ */
+public interface DieSource {
+
+  // one die: 1 to 6
+  int roll() ;
+}
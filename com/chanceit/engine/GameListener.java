@@ -0,0 +1,22 @@
+package com.chanceit.engine;
+
+/*
+ * Events from a ChanceItGame.  Called on the thread driving the game, with primitives only, so a listener can follow
+ * a game without the engine allocating anything.
+ */
+public interface GameListener {
+
+  GameListener NONE = new GameListener() {} ;
+
+  // a roll that counts: the first roll of a turn, or a re-roll that didn't match it
+  default void onRoll(int player, int rollNumber, int die1, int die2, int turnTotal) {}
+
+  // a re-roll matched the first roll: the turn is over and scores nothing
+  default void onBust(int player, int rollNumber, int die1, int die2) {}
+
+  // the turn is over (banked or busted); turnTotal has been added to the player's score
+  default void onTurnEnd(int player, int turnTotal, int score) {}
+
+  // winner is a player (0 or 1) or ChanceItGame.DRAW
+  default void onGameOver(int winner, int score0, int score1) {}
+}
@@ -0,0 +1,21 @@
+package com.chanceit.engine;
+
+import java.util.Random;
+
+/*
+ * A DieSource backed by a java.util.Random, one call per die; the server's alternative to BufferedDieSource with
+ * dice=random.
+ */
+public final class RandomDieSource implements DieSource {
+
+  private final Random random ;
+
+  public RandomDieSource(Random random) {
+    this.random = random ;
+  }
+
+  @Override
+  public int roll() {
+    return random.nextInt(6) + 1 ;
+  }
+}
@@ -0,0 +1,21 @@
+package com.chanceit.engine;
+
+import java.util.SplittableRandom;
+
+/*
+ * A DieSource for simulations: SplittableRandom is fast, unsynchronized and splits into independent streams, one per
+ * task.
+ */
+public final class SplittableRandomDieSource implements DieSource {
+
+  private final SplittableRandom random ;
+
+  public SplittableRandomDieSource(SplittableRandom random) {
+    this.random = random ;
+  }
+
+  @Override
+  public int roll() {
+    return random.nextInt(6) + 1 ;
+  }
+}
@@ -0,0 +1,91 @@
+package com.chanceit.engine;
+
+import java.io.IOException;
+
+/*
+ * The built in strategies, by name:
+ *
+ *   stop:N          roll until the turn total is at least N
+ *   stop:N:M        the same, unless behind by M or more: then roll until this turn would put the player ahead
+ *   rolls:K         roll K more times after the first roll, then bank
+ *   table:T2,...,T12  roll until the turn total reaches the threshold for the turn's first roll total (2 to 12);
+ *                   e.g. bank early on a 7, which is the easiest total to match
+ *   optimal:FILE    the optimal policy from a decision table written by the solver (see DecisionTable)
+ */
+public final class Strategies {
+
+  private Strategies() {}
+
+  public static Strategy parse(String spec) {
+    String[] parts = spec.split(":", 2) ;
+    if (parts.length != 2) {
+      throw new IllegalArgumentException("strategy must look like name:arguments: " + spec) ;
+    }
+    String kind = parts[0].trim() ;
+    String args = parts[1].trim() ;
+
+    if ("stop".equals(kind)) {
+      String[] values = args.split(":") ;
+      if (values.length == 2) {
+        return stopAt(Integer.parseInt(values[0].trim()), Integer.parseInt(values[1].trim())) ;
+      }
+      return stopAt(Integer.parseInt(args)) ;
+    }
+    if ("rolls".equals(kind)) {
+      return rolls(Integer.parseInt(args)) ;
+    }
+    if ("table".equals(kind)) {
+      String[] values = args.split(",") ;
+      if (values.length != 11) {
+        throw new IllegalArgumentException("table needs 11 thresholds, for first rolls of 2 to 12: " + spec) ;
+      }
+      int[] thresholds = new int[13] ;
+      for (int i = 0; i < values.length; i++) {
+        thresholds[i + 2] = Integer.parseInt(values[i].trim()) ;
+      }
+      return table(thresholds, spec) ;
+    }
+    if ("optimal".equals(kind)) {
+      try {
+        return DecisionTable.open(args).asStrategy(spec) ;
+      } catch (IOException e) {
+        throw new IllegalArgumentException("can't read decision table " + args + ": " + e.getMessage()) ;
+      }
+    }
+    throw new IllegalArgumentException("unknown strategy: " + spec) ;
+  }
+
+  public static Strategy stopAt(final int n) {
+    return new Strategy() {
+      public boolean chanceIt(ChanceItGame game) { return game.getTurnTotal() < n ; }
+      public String toString() { return "stop:" + n ; }
+    } ;
+  }
+
+  // stop:N, but when trailing by `behind` or more keep rolling until the turn total would take the lead
+  public static Strategy stopAt(final int n, final int behind) {
+    return new Strategy() {
+      public boolean chanceIt(ChanceItGame game) {
+        int me = game.getCurrentPlayer() ;
+        int deficit = game.getScore(1 - me) - game.getScore(me) ;
+        return game.getTurnTotal() < n || (deficit >= behind && game.getTurnTotal() <= deficit) ;
+      }
+      public String toString() { return "stop:" + n + ":" + behind ; }
+    } ;
+  }
+
+  public static Strategy rolls(final int k) {
+    return new Strategy() {
+      public boolean chanceIt(ChanceItGame game) { return game.getRollNumber() <= k ; }
+      public String toString() { return "rolls:" + k ; }
+    } ;
+  }
+
+  // thresholds[firstRollTotal], indexes 2 to 12
+  public static Strategy table(final int[] thresholds, final String name) {
+    return new Strategy() {
+      public boolean chanceIt(ChanceItGame game) { return game.getTurnTotal() < thresholds[game.getFirstRollTotal()] ; }
+      public String toString() { return name ; }
+    } ;
+  }
+}
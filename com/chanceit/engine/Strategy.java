@@ -0,0 +1,11 @@
+package com.chanceit.engine;
+
+/*
+ * A player's policy: asked after every roll that doesn't end the turn.  Strategies are called from many threads at
+ * once by the simulator, so they must keep no state of their own.
+ */
+public interface Strategy {
+
+  // true == roll again (chanceIt()), false == bank().  The player deciding is game.getCurrentPlayer().
+  boolean chanceIt(ChanceItGame game) ;
+}
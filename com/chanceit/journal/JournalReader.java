@@ -0,0 +1,191 @@
+package com.chanceit.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Properties;
+import java.util.zip.CRC32C;
+
+/*
+ * Reads a RollJournal's segments, read-only, while the server may still be appending to them.
+ *
+ *   ./journal.sh                       every roll in ./journal
+ *   ./journal.sh game=42               the rolls of game 42 (the journal numbers games from 1 as they start)
+ *   ./journal.sh follow=true           tail the journal: rolls as the server appends them, until interrupted
+ *   ./journal.sh dir=DIR ...           a journal somewhere else
+ *
+ * scan() visits records in journal order; the records of one game are in the order they were rolled.  A slot without
+ * a valid record (never written, or torn) is skipped.  A scan for one game reads every segment: records are 32 bytes,
+ * so that is a sequential read of the mapped files and runs at millions of records a second.
+ */
+public final class JournalReader {
+
+  // how long tail() waits at an empty slot that later records have passed before it decides it is a hole
+  private static final long HOLE_MILLIS = 1000 ;
+  private static final long POLL_MILLIS = 50 ;
+
+  // called with each record; the arguments are the record's fields (see RollJournal)
+  public interface Visitor {
+    void roll(long gameId, long time, int seat, int turnNumber, int rollNumber, int die1, int die2, boolean bust, int turnTotal) ;
+  }
+
+  private final File dir ;
+  private final byte[] scratch = new byte[RollJournal.RECORD_BYTES] ;
+  private final CRC32C crc = new CRC32C() ;
+
+  public JournalReader(String dir) {
+    this.dir = new File(dir) ;
+  }
+
+  // every record of the game, or of every game for gameId 0.  The number of records visited
+  public long scan(long gameId, Visitor visitor) throws IOException {
+    long visited = 0 ;
+    for (int number : RollJournal.segmentNumbers(dir)) {
+      ByteBuffer map = map(number) ;
+      int slots = map.capacity() / RollJournal.RECORD_BYTES ;
+      for (int slot = 0; slot < slots; slot++) {
+        int at = slot * RollJournal.RECORD_BYTES ;
+        if ((gameId == 0 || map.getLong(at) == gameId) && RollJournal.isRecord(map, at, scratch, crc)) {
+          visit(map, at, visitor) ;
+          visited++ ;
+        }
+      }
+    }
+    return visited ;
+  }
+
+  /*
+   * follows the journal: visits the records appended from now on (from the start of the newest segment if fromStart)
+   * and waits for more, moving on to each new segment as the server starts it.  Returns when the thread is interrupted.
+   */
+  public void tail(boolean fromStart, Visitor visitor) throws IOException {
+    int[] numbers = RollJournal.segmentNumbers(dir) ;
+    int number = (numbers.length == 0) ? 1 : numbers[numbers.length - 1] ;
+    ByteBuffer map = waitForSegment(number) ;
+    if (map == null) {
+      return ;
+    }
+    int slot = fromStart ? 0 : end(map) ;
+    long emptySince = 0 ;
+
+    while (!Thread.currentThread().isInterrupted()) {
+      int slots = map.capacity() / RollJournal.RECORD_BYTES ;
+      if (slot == slots) {
+        map = waitForSegment(++number) ;
+        if (map == null) {
+          return ;
+        }
+        slot = 0 ;
+        continue ;
+      }
+
+      int at = slot * RollJournal.RECORD_BYTES ;
+      if (RollJournal.isRecord(map, at, scratch, crc)) {
+        visit(map, at, visitor) ;
+        slot++ ;
+        emptySince = 0 ;
+        continue ;
+      }
+
+      // not written yet, or a hole left by a writer that never finished (a crash): skip it once later records are
+      // there and it has stayed empty for HOLE_MILLIS
+      long now = System.currentTimeMillis() ;
+      if (emptySince == 0) {
+        emptySince = now ;
+      } else if (now - emptySince >= HOLE_MILLIS && laterRecord(map, slot, number)) {
+        slot++ ;
+        emptySince = 0 ;
+        continue ;
+      }
+      if (!pause()) {
+        return ;
+      }
+    }
+  }
+
+  private void visit(ByteBuffer map, int at, Visitor visitor) {
+    visitor.roll(map.getLong(at), map.getLong(at + 8), map.get(at + 20), map.getShort(at + 16), map.getShort(at + 18),
+        map.get(at + 21), map.get(at + 22), (map.get(at + 23) & RollJournal.BUST) != 0, map.getInt(at + 24)) ;
+  }
+
+  // the slot after the last record
+  private int end(ByteBuffer map) {
+    for (int slot = map.capacity() / RollJournal.RECORD_BYTES; slot > 0; slot--) {
+      if (RollJournal.isRecord(map, (slot - 1) * RollJournal.RECORD_BYTES, scratch, crc)) {
+        return slot ;
+      }
+    }
+    return 0 ;
+  }
+
+  private boolean laterRecord(ByteBuffer map, int slot, int number) {
+    int slots = map.capacity() / RollJournal.RECORD_BYTES ;
+    for (int s = slot + 1; s < slots; s++) {
+      if (RollJournal.isRecord(map, s * RollJournal.RECORD_BYTES, scratch, crc)) {
+        return true ;
+      }
+    }
+    return RollJournal.segmentFile(dir, number + 1).exists() ;
+  }
+
+  // the segment, once the server has created it; null if interrupted first
+  private ByteBuffer waitForSegment(int number) throws IOException {
+    File file = RollJournal.segmentFile(dir, number) ;
+    while (!file.exists() || file.length() == 0) {
+      if (!pause()) {
+        return null ;
+      }
+    }
+    return map(number) ;
+  }
+
+  private ByteBuffer map(int number) throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(RollJournal.segmentFile(dir, number), "r")) {
+      long length = file.length() - file.length() % RollJournal.RECORD_BYTES ;
+      return file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length) ;
+    }
+  }
+
+  private static boolean pause() {
+    try {
+      Thread.sleep(POLL_MILLIS) ;
+      return true ;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt() ;
+      return false ;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    Properties settings = new Properties() ;
+    for (String arg : args) {
+      int eq = arg.indexOf('=') ;
+      if (eq < 0) {
+        System.out.println("usage: JournalReader [dir=DIR] [game=ID] [follow=true] [from_start=true]") ;
+        System.exit(1) ;
+      }
+      settings.setProperty(arg.substring(0, eq).trim(), arg.substring(eq + 1).trim()) ;
+    }
+    String dir = settings.getProperty("dir", "./journal") ;
+    long game = Long.parseLong(settings.getProperty("game", "0")) ;
+
+    JournalReader reader = new JournalReader(dir) ;
+    Visitor print = new Visitor() {
+      public void roll(long gameId, long time, int seat, int turnNumber, int rollNumber, int die1, int die2, boolean bust, int turnTotal) {
+        if (game == 0 || gameId == game) {
+          System.out.println(String.format("game %d  %tT.%<tL  seat %d  turn %d  roll %d  [%d,%d]  %s", gameId, time, seat,
+              turnNumber, rollNumber, die1, die2, bust ? "BUST" : "total " + turnTotal)) ;
+        }
+      }
+    } ;
+
+    if (Boolean.parseBoolean(settings.getProperty("follow", "false"))) {
+      reader.tail(Boolean.parseBoolean(settings.getProperty("from_start", "false")), print) ;
+    } else {
+      long records = reader.scan(game, print) ;
+      System.out.println(String.format("%d records in %s", records, dir)) ;
+    }
+  }
+}
@@ -0,0 +1,311 @@
+package com.chanceit.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/*
+ * An append-only journal of every roll (what the orm TurnRoll models), written through memory-mapped segment files.
+ * Appending a roll is a CAS for a slot, a 32 byte put into the mapped segment and a checksum: no system call and no
+ * database round trip.  The operating system writes the pages back; force_interval (see start()) bounds how much a
+ * machine crash can lose.
+ *
+ * Records are fixed width, 32 bytes, big endian:
+ *
+ *    0  long  game id (RollJournal's own, from newGame())
+ *    8  long  System.currentTimeMillis() of the roll
+ *   16  short turn# (from 1)
+ *   18  short roll# (from 1)
+ *   20  byte  seat (0 went first)
+ *   21  byte  die 1
+ *   22  byte  die 2
+ *   23  byte  flags: BUST if the roll matched the first roll and ended the turn
+ *   24  int   running turn total (0 for a bust)
+ *   28  int   CRC32C of bytes 0 to 27
+ *
+ * Segments are <dir>/rolls-NNNNNNNN.journal, each segmentSize bytes, preallocated and filled in slot order; when one is
+ * full the next is created.  A slot whose checksum doesn't match (all zeros, or half written when the machine went
+ * down) is not a record.  Writers claim slots concurrently, so a crash can leave such holes just before the end; on
+ * open the recovery pass finds the last good record of the newest segment, zeroes the torn records up to it and
+ * everything after it, and appending carries on from there.
+ *
+ * Thread safe: every game thread appends through its own Appender.  JournalReader scans and tails the segments.
+ */
+public final class RollJournal implements AutoCloseable {
+
+  public static final int RECORD_BYTES = 32 ;
+  public static final int CHECKSUMMED_BYTES = 28 ;
+  public static final int BUST = 1 ;
+
+  static final String PREFIX = "rolls-" ;
+  static final String SUFFIX = ".journal" ;
+
+  private final File dir ;
+  private final int segmentSize ;       // a multiple of RECORD_BYTES
+  private final AtomicLong gameIds ;
+  private volatile Segment current ;
+  private volatile boolean open = true ;
+  private Thread forcer ;
+
+  private long recovered ;
+  private long truncated ;
+
+  // one mapped segment file
+  static final class Segment {
+    final int number ;
+    final RandomAccessFile file ;
+    final MappedByteBuffer map ;
+    final int slots ;
+    final AtomicInteger next ;  // the next free slot; past slots once full
+
+    Segment(File dir, int number, int segmentSize, int next) throws IOException {
+      this.number = number ;
+      this.file = new RandomAccessFile(segmentFile(dir, number), "rw") ;
+      if (file.length() < segmentSize) {
+        file.setLength(segmentSize) ;
+      }
+      this.map = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize) ;
+      this.slots = segmentSize / RECORD_BYTES ;
+      this.next = new AtomicInteger(next) ;
+    }
+
+    void close() throws IOException {
+      map.force() ;
+      file.close() ;
+    }
+  }
+
+  /*
+   * opens the journal in dir (created if need be) and recovers its newest segment.  segmentSize is rounded down to a
+   * whole number of records.
+   */
+  public RollJournal(String dir, int segmentSize) throws IOException {
+    this.dir = new File(dir) ;
+    this.segmentSize = Math.max(RECORD_BYTES, segmentSize - segmentSize % RECORD_BYTES) ;
+    if (!this.dir.isDirectory() && !this.dir.mkdirs()) {
+      throw new IOException("can not create the roll journal directory " + dir) ;
+    }
+
+    int[] numbers = segmentNumbers(this.dir) ;
+    long lastGameId = 0 ;
+    if (numbers.length == 0) {
+      current = new Segment(this.dir, 1, this.segmentSize, 0) ;
+    } else {
+      // the newest segment; a previous one has the last game id if the newest is still empty
+      int newest = numbers[numbers.length - 1] ;
+      current = new Segment(this.dir, newest, this.segmentSize, 0) ;
+      current.next.set(recover(current)) ;
+      lastGameId = maxGameId(current.map, current.next.get()) ;
+      if (lastGameId == 0 && numbers.length > 1) {
+        try (RandomAccessFile previous = new RandomAccessFile(segmentFile(this.dir, numbers[numbers.length - 2]), "r")) {
+          ByteBuffer map = previous.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, previous.length()) ;
+          lastGameId = maxGameId(map, (int) (previous.length() / RECORD_BYTES)) ;
+        }
+      }
+    }
+    this.gameIds = new AtomicLong(lastGameId) ;
+  }
+
+  /*
+   * the recovery pass: the slot after the last good record, with the torn records before it and everything after it
+   * zeroed.
+   */
+  private int recover(Segment segment) {
+    byte[] scratch = new byte[RECORD_BYTES] ;
+    CRC32C crc = new CRC32C() ;
+    int end = 0 ;
+    int bad = 0 ;
+    for (int slot = 0; slot < segment.slots; slot++) {
+      int at = slot * RECORD_BYTES ;
+      if (isRecord(segment.map, at, scratch, crc)) {
+        truncated += bad ;
+        bad = 0 ;
+        end = slot + 1 ;
+        recovered++ ;
+      } else if (!isZero(segment.map, at)) {
+        bad++ ;
+        clear(segment.map, at) ;
+      }
+    }
+    truncated += bad ;
+    segment.map.force() ;
+    return end ;
+  }
+
+  private static long maxGameId(ByteBuffer map, int slots) {
+    byte[] scratch = new byte[RECORD_BYTES] ;
+    CRC32C crc = new CRC32C() ;
+    long max = 0 ;
+    for (int slot = 0; slot < slots; slot++) {
+      int at = slot * RECORD_BYTES ;
+      if (isRecord(map, at, scratch, crc)) {
+        max = Math.max(max, map.getLong(at)) ;
+      }
+    }
+    return max ;
+  }
+
+  /*
+   * a background thread that forces the current segment to disk every intervalMillis.  Without it the operating
+   * system writes the pages back in its own time; a process crash loses nothing either way.
+   */
+  public void start(int intervalMillis) {
+    if (intervalMillis <= 0) {
+      return ;
+    }
+    forcer = new Thread(new Runnable() {
+      public void run() {
+        while (open) {
+          try {
+            Thread.sleep(intervalMillis) ;
+          } catch (InterruptedException e) {
+            return ;
+          }
+          current.map.force() ;
+        }
+      }
+    }, "RollJournal-force") ;
+    forcer.setDaemon(true) ;
+    forcer.start() ;
+  }
+
+  // the records found by the recovery pass on open, and the torn ones it cleared
+  public long getRecovered() { return recovered ; }
+  public long getTruncated() { return truncated ; }
+  public int getSegmentNumber() { return current.number ; }
+
+  // an Appender for a new game, with the next game id
+  public Appender newGame() {
+    return new Appender(gameIds.incrementAndGet()) ;
+  }
+
+  /*
+   * appends one game's rolls.  Not thread safe: one per game, used by the thread playing it.  Allocates nothing per roll.
+   */
+  public final class Appender {
+
+    private final long gameId ;
+    private final byte[] record = new byte[RECORD_BYTES] ;
+    private final ByteBuffer buffer = ByteBuffer.wrap(record) ;
+    private final CRC32C crc = new CRC32C() ;
+
+    Appender(long gameId) {
+      this.gameId = gameId ;
+    }
+
+    public long getGameId() { return gameId ; }
+
+    // turnNumber and rollNumber from 1
+    public void roll(int seat, int turnNumber, int rollNumber, int die1, int die2, boolean bust, int turnTotal) {
+      buffer.putLong(0, gameId)
+            .putLong(8, System.currentTimeMillis())
+            .putShort(16, (short) turnNumber)
+            .putShort(18, (short) rollNumber)
+            .put(20, (byte) seat)
+            .put(21, (byte) die1)
+            .put(22, (byte) die2)
+            .put(23, (byte) (bust ? BUST : 0))
+            .putInt(24, turnTotal) ;
+      crc.reset() ;
+      crc.update(record, 0, CHECKSUMMED_BYTES) ;
+      buffer.putInt(CHECKSUMMED_BYTES, (int) crc.getValue()) ;
+      append(record) ;
+    }
+  }
+
+  private void append(byte[] record) {
+    while (open) {
+      Segment segment = current ;
+      int slot = segment.next.getAndIncrement() ;
+      if (slot < segment.slots) {
+        segment.map.put(slot * RECORD_BYTES, record, 0, RECORD_BYTES) ;
+        return ;
+      }
+      rollOver(segment) ;
+    }
+  }
+
+  // the first appender to find `full` full starts the next segment; the others wait for it here
+  private synchronized void rollOver(Segment full) {
+    if (current != full || !open) {
+      return ;
+    }
+    try {
+      current = new Segment(dir, full.number + 1, segmentSize, 0) ;
+      full.close() ;
+    } catch (IOException e) {
+      System.out.println("RollJournal: could not start segment " + (full.number + 1) + ", journal closed: " + e) ;
+      open = false ;
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    open = false ;
+    if (forcer != null) {
+      forcer.interrupt() ;
+    }
+    current.close() ;
+  }
+
+  /*
+   * the record layout, shared with JournalReader
+   */
+
+  // scratch is RECORD_BYTES long; the caller's, so checking a record allocates nothing
+  static boolean isRecord(ByteBuffer map, int at, byte[] scratch, CRC32C crc) {
+    if (map.getLong(at) == 0) {
+      return false ;  // game ids start at 1; an unwritten slot
+    }
+    map.get(at, scratch, 0, RECORD_BYTES) ;
+    crc.reset() ;
+    crc.update(scratch, 0, CHECKSUMMED_BYTES) ;
+    return (int) crc.getValue() == map.getInt(at + CHECKSUMMED_BYTES) ;
+  }
+
+  private static boolean isZero(ByteBuffer map, int at) {
+    for (int i = 0; i < RECORD_BYTES; i += 8) {
+      if (map.getLong(at + i) != 0) {
+        return false ;
+      }
+    }
+    return true ;
+  }
+
+  private static void clear(ByteBuffer map, int at) {
+    for (int i = 0; i < RECORD_BYTES; i += 8) {
+      map.putLong(at + i, 0) ;
+    }
+  }
+
+  static File segmentFile(File dir, int number) {
+    return new File(dir, String.format("%s%08d%s", PREFIX, number, SUFFIX)) ;
+  }
+
+  // the segment numbers in dir, oldest first
+  static int[] segmentNumbers(File dir) {
+    String[] names = dir.list() ;
+    if (names == null) {
+      return new int[0] ;
+    }
+    int[] numbers = new int[names.length] ;
+    int n = 0 ;
+    for (String name : names) {
+      if (name.startsWith(PREFIX) && name.endsWith(SUFFIX)) {
+        try {
+          numbers[n++] = Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length())) ;
+        } catch (NumberFormatException e) {}
+      }
+    }
+    numbers = Arrays.copyOf(numbers, n) ;
+    Arrays.sort(numbers) ;
+    return numbers ;
+  }
+}
@@ -0,0 +1,30 @@
+package com.chanceit.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * A count that only goes up.  increment() is a LongAdder: striped, so threads counting at once don't contend.
+ */
+public final class Counter extends Metric {
+
+  private final LongAdder count = new LongAdder() ;
+
+  Counter(String name, String help, String labelName, String labelValue) {
+    super(name, help, labelName, labelValue) ;
+  }
+
+  public void increment() {
+    count.increment() ;
+  }
+
+  public void add(long n) {
+    count.add(n) ;
+  }
+
+  public long get() {
+    return count.sum() ;
+  }
+
+  @Override
+  public Type getType() { return Type.COUNTER ; }
+}
@@ -0,0 +1,23 @@
+package com.chanceit.metrics;
+
+import java.util.function.LongSupplier;
+
+/*
+ * A value read when the metrics are exported, e.g. a queue depth.  Nothing is recorded on the hot path.
+ */
+public final class Gauge extends Metric {
+
+  private final LongSupplier value ;
+
+  Gauge(String name, String help, String labelName, String labelValue, LongSupplier value) {
+    super(name, help, labelName, labelValue) ;
+    this.value = value ;
+  }
+
+  public long get() {
+    return value.getAsLong() ;
+  }
+
+  @Override
+  public Type getType() { return Type.GAUGE ; }
+}
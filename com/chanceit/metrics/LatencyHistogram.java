@@ -0,0 +1,167 @@
+package com.chanceit.metrics;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * A histogram of durations in nanoseconds, in the style of HdrHistogram: log-linear buckets, 64 per power of two, so
+ * every recorded value is kept to within 1/64 (about 1.6%) from 0 to about 18 minutes (2^40 ns) and anything longer
+ * lands in the top bucket.
+ *
+ *   values 0 to 127             one bucket each
+ *   values 2^k to 2^(k+1) - 1   64 buckets of 2^(k-6) each, k >= 7
+ *
+ * record() is one atomic increment of a bucket in this thread's stripe, one of the stripe's sum and, only when the
+ * value is a new maximum, a compare-and-set: no lock and no allocation.  Stripes are picked by thread id so threads
+ * recording at once mostly touch different cache lines.  The id comes from Thread.threadId(), looked up reflectively
+ * like VirtualThreads' executor: getId() is deprecated from Java 19, where the virtual thread modes run, and threadId()
+ * does not exist before it.  snapshot() adds the stripes up; it is for the exporters, not
+ * the hot path.
+ *
+ * A histogram made with MetricsRegistry.valueHistogram() holds plain values instead of durations (a rating gap, a
+ * count), same buckets, and the exporters show them as they are.
+ */
+public final class LatencyHistogram extends Metric {
+
+  static final int SUB_BUCKET_BITS = 6 ;
+  static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS ;                   // 64
+  static final int MAX_BIT = 40 ;                                          // values up to 2^40 ns
+  static final int BUCKETS = (MAX_BIT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS ;
+  static final long MAX_VALUE = (1L << MAX_BIT) - 1 ;
+
+  private static final int SUM = BUCKETS ;      // the stripe's sum of values
+  private static final int MAX = BUCKETS + 1 ;  // and its largest value
+  private static final int STRIPE_LENGTH = BUCKETS + 2 ;
+
+  private static final MethodHandle THREAD_ID = threadId() ;  // (Thread) -> long
+
+  private final AtomicLongArray[] stripes ;
+  private final int mask ;
+  private final boolean durations ;  // nanoseconds, exported as seconds or milliseconds
+
+  LatencyHistogram(String name, String help, boolean durations) {
+    super(name, help, null, null) ;
+    this.durations = durations ;
+    int n = Integer.highestOneBit(Math.max(1, Math.min(16, Runtime.getRuntime().availableProcessors())) * 2 - 1) ;
+    stripes = new AtomicLongArray[n] ;
+    for (int i = 0; i < n; i++) {
+      stripes[i] = new AtomicLongArray(STRIPE_LENGTH) ;
+    }
+    mask = n - 1 ;
+  }
+
+  @Override
+  public Type getType() { return Type.SUMMARY ; }
+
+  public boolean isDurations() { return durations ; }
+
+  public void record(long nanos) {
+    long value = Math.max(0, Math.min(nanos, MAX_VALUE)) ;
+    AtomicLongArray stripe = stripes[(int) currentThreadId() & mask] ;
+    stripe.getAndIncrement(bucket(value)) ;
+    stripe.getAndAdd(SUM, value) ;
+    long max ;
+    while ((max = stripe.get(MAX)) < value && !stripe.compareAndSet(MAX, max, value)) {}
+  }
+
+  // time since startNanos (a System.nanoTime())
+  public void recordSince(long startNanos) {
+    record(System.nanoTime() - startNanos) ;
+  }
+
+  private static long currentThreadId() {
+    try {
+      return (long) THREAD_ID.invokeExact(Thread.currentThread()) ;
+    } catch (Throwable e) {
+      throw new IllegalStateException(e) ;  // neither method throws
+    }
+  }
+
+  // Thread.threadId() from Java 19, getId() before
+  private static MethodHandle threadId() {
+    MethodType type = MethodType.methodType(long.class) ;
+    try {
+      return MethodHandles.publicLookup().findVirtual(Thread.class, "threadId", type) ;
+    } catch (ReflectiveOperationException e) {
+      try {
+        return MethodHandles.publicLookup().findVirtual(Thread.class, "getId", type) ;
+      } catch (ReflectiveOperationException e2) {
+        throw new ExceptionInInitializerError(e2) ;
+      }
+    }
+  }
+
+  static int bucket(long value) {
+    int bit = 63 - Long.numberOfLeadingZeros(value | 1) ;  // the highest bit set
+    if (bit <= SUB_BUCKET_BITS) {
+      return (int) value ;                                  // 0 to 127, exact
+    }
+    int shift = bit - SUB_BUCKET_BITS ;
+    return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS ;
+  }
+
+  // the largest value that lands in bucket
+  static long highestValue(int bucket) {
+    if (bucket < 2 * SUB_BUCKETS) {
+      return bucket ;
+    }
+    int shift = bucket / SUB_BUCKETS - 1 ;
+    long sub = bucket % SUB_BUCKETS + SUB_BUCKETS ;
+    return ((sub + 1) << shift) - 1 ;
+  }
+
+  public Snapshot snapshot() {
+    long[] counts = new long[BUCKETS] ;
+    long count = 0, sum = 0, max = 0 ;
+    for (AtomicLongArray stripe : stripes) {
+      for (int b = 0; b < BUCKETS; b++) {
+        long c = stripe.get(b) ;
+        counts[b] += c ;
+        count += c ;
+      }
+      sum += stripe.get(SUM) ;
+      max = Math.max(max, stripe.get(MAX)) ;
+    }
+    return new Snapshot(counts, count, sum, max) ;
+  }
+
+  /*
+   * the histogram at one moment, in nanoseconds (or the plain values)
+   */
+  public static final class Snapshot {
+    private final long[] counts ;
+    private final long count ;
+    private final long sum ;
+    private final long max ;
+
+    Snapshot(long[] counts, long count, long sum, long max) {
+      this.counts = counts ;
+      this.count = count ;
+      this.sum = sum ;
+      this.max = max ;
+    }
+
+    public long getCount() { return count ; }
+    public long getSum() { return sum ; }
+    public long getMax() { return max ; }
+    public double getMean() { return (count == 0) ? 0 : (double) sum / count ; }
+
+    // the value at quantile q (0 to 1): the top of the bucket holding it, but never more than the maximum
+    public long getValueAtQuantile(double q) {
+      if (count == 0) {
+        return 0 ;
+      }
+      long rank = Math.max(1, (long) Math.ceil(q * count)) ;
+      long seen = 0 ;
+      for (int b = 0; b < counts.length; b++) {
+        seen += counts[b] ;
+        if (seen >= rank) {
+          return Math.min(highestValue(b), max) ;
+        }
+      }
+      return max ;
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package com.chanceit.metrics;
+
+/*
+ * A named metric in a MetricsRegistry.  Metrics that share a name form one family and differ by their label, e.g.
+ * chanceit_games_total{how="TIMEOUT"}.
+ */
+public abstract class Metric {
+
+  public enum Type { COUNTER, GAUGE, SUMMARY }
+
+  final String name ;
+  final String help ;
+  final String labelName ;    // null for an unlabelled metric
+  final String labelValue ;
+
+  Metric(String name, String help, String labelName, String labelValue) {
+    this.name = name ;
+    this.help = help ;
+    this.labelName = labelName ;
+    this.labelValue = labelValue ;
+  }
+
+  public String getName() { return name ; }
+  public String getHelp() { return help ; }
+  public String getLabelName() { return labelName ; }
+  public String getLabelValue() { return labelValue ; }
+
+  public abstract Type getType() ;
+}
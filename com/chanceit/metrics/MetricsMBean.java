@@ -0,0 +1,122 @@
+package com.chanceit.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+
+/*
+ * A MetricsRegistry as one read-only JMX MBean, e.g. com.chanceit:type=Metrics in jconsole or VisualVM.
+ *
+ * Every counter and gauge is a long attribute named after the metric, with its label value appended
+ * (chanceit_games_total_TIMEOUT).  A LatencyHistogram is five double attributes in milliseconds, _p50, _p90, _p99,
+ * _max and _mean, and a long _count; a value histogram the same, unscaled.  Attributes are read from the registry when
+ * asked for; nothing is cached.
+ */
+public final class MetricsMBean implements DynamicMBean {
+
+  private static final String[] PERCENTILES = { "_p50", "_p90", "_p99" } ;
+  private static final double[] QUANTILES = { 0.5, 0.9, 0.99 } ;
+
+  private final MetricsRegistry registry ;
+
+  public MetricsMBean(MetricsRegistry registry) {
+    this.registry = registry ;
+  }
+
+  // registers with the platform MBean server under objectName, e.g. "com.chanceit:type=Metrics"
+  public void register(String objectName) throws JMException {
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(objectName)) ;
+  }
+
+  private static String attributeName(Metric m) {
+    return (m.labelValue == null) ? m.name : m.name + "_" + m.labelValue ;
+  }
+
+  @Override
+  public Object getAttribute(String attribute) throws AttributeNotFoundException {
+    for (Metric m : registry.getMetrics()) {
+      String name = attributeName(m) ;
+      if (!attribute.startsWith(name)) {
+        continue ;
+      }
+      String suffix = attribute.substring(name.length()) ;
+      switch (m.getType()) {
+        case COUNTER:
+          if (suffix.isEmpty()) return ((Counter) m).get() ;
+          break ;
+        case GAUGE:
+          if (suffix.isEmpty()) return ((Gauge) m).get() ;
+          break ;
+        case SUMMARY:
+          LatencyHistogram h = (LatencyHistogram) m ;
+          LatencyHistogram.Snapshot s = h.snapshot() ;
+          for (int i = 0; i < PERCENTILES.length; i++) {
+            if (suffix.equals(PERCENTILES[i])) return value(h, s.getValueAtQuantile(QUANTILES[i])) ;
+          }
+          if (suffix.equals("_max")) return value(h, s.getMax()) ;
+          if (suffix.equals("_mean")) return h.isDurations() ? s.getMean() / 1e6 : s.getMean() ;
+          if (suffix.equals("_count")) return s.getCount() ;
+          break ;
+      }
+    }
+    throw new AttributeNotFoundException(attribute) ;
+  }
+
+  @Override
+  public AttributeList getAttributes(String[] attributes) {
+    AttributeList list = new AttributeList() ;
+    for (String attribute : attributes) {
+      try {
+        list.add(new Attribute(attribute, getAttribute(attribute))) ;
+      } catch (AttributeNotFoundException e) {}
+    }
+    return list ;
+  }
+
+  @Override
+  public MBeanInfo getMBeanInfo() {
+    List<MBeanAttributeInfo> attributes = new ArrayList<>() ;
+    for (Metric m : registry.getMetrics()) {
+      String name = attributeName(m) ;
+      if (m.getType() == Metric.Type.SUMMARY) {
+        String help = ((LatencyHistogram) m).isDurations() ? m.help + " (ms)" : m.help ;
+        for (String p : PERCENTILES) {
+          attributes.add(new MBeanAttributeInfo(name + p, "double", help, true, false, false)) ;
+        }
+        attributes.add(new MBeanAttributeInfo(name + "_max", "double", help, true, false, false)) ;
+        attributes.add(new MBeanAttributeInfo(name + "_mean", "double", help, true, false, false)) ;
+        attributes.add(new MBeanAttributeInfo(name + "_count", "long", m.help, true, false, false)) ;
+      } else {
+        attributes.add(new MBeanAttributeInfo(name, "long", m.help, true, false, false)) ;
+      }
+    }
+    return new MBeanInfo(getClass().getName(), "ChanceIt server metrics", attributes.toArray(new MBeanAttributeInfo[0]), null, null, null) ;
+  }
+
+  @Override
+  public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+    throw new AttributeNotFoundException("metrics are read only: " + attribute.getName()) ;
+  }
+
+  @Override
+  public AttributeList setAttributes(AttributeList attributes) {
+    return new AttributeList() ;
+  }
+
+  @Override
+  public Object invoke(String actionName, Object[] params, String[] signature) {
+    throw new UnsupportedOperationException(actionName) ;
+  }
+
+  private static double value(LatencyHistogram h, long value) {
+    return h.isDurations() ? value / 1e6 : value ;
+  }
+}
@@ -0,0 +1,52 @@
+package com.chanceit.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+/*
+ * The metrics of one server, in the order they were created.  Create the metrics once, at start up, and keep them in
+ * fields: recording into a Counter or LatencyHistogram never goes through the registry.  The exporters
+ * (PrometheusExporter, MetricsMBean) read it.
+ */
+public final class MetricsRegistry {
+
+  private final List<Metric> metrics = new CopyOnWriteArrayList<>() ;
+
+  public Counter counter(String name, String help) {
+    return add(new Counter(name, help, null, null)) ;
+  }
+
+  // one member of a family of counters, e.g. counter("chanceit_games_total", "...", "how", "TIMEOUT")
+  public Counter counter(String name, String help, String labelName, String labelValue) {
+    return add(new Counter(name, help, labelName, labelValue)) ;
+  }
+
+  public Gauge gauge(String name, String help, LongSupplier value) {
+    return add(new Gauge(name, help, null, null, value)) ;
+  }
+
+  public Gauge gauge(String name, String help, String labelName, String labelValue, LongSupplier value) {
+    return add(new Gauge(name, help, labelName, labelValue, value)) ;
+  }
+
+  public LatencyHistogram histogram(String name, String help) {
+    return add(new LatencyHistogram(name, help, true)) ;
+  }
+
+  // a histogram of values that are not durations, e.g. valueHistogram("chanceit_rating_gap", "...")
+  public LatencyHistogram valueHistogram(String name, String help) {
+    return add(new LatencyHistogram(name, help, false)) ;
+  }
+
+  private <M extends Metric> M add(M metric) {
+    metrics.add(metric) ;
+    return metric ;
+  }
+
+  public List<Metric> getMetrics() {
+    return Collections.unmodifiableList(new ArrayList<>(metrics)) ;
+  }
+}
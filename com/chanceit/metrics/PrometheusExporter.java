@@ -0,0 +1,126 @@
+package com.chanceit.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+/*
+ * Serves a MetricsRegistry at http://host:port/metrics in the Prometheus text exposition format (version 0.0.4).
+ *
+ * Counters and gauges are exported as they are.  A LatencyHistogram is exported as a summary in seconds: the 0.5,
+ * 0.9, 0.99 and 0.999 quantiles, _sum and _count, plus a _max gauge (a value histogram the same way, unscaled).  The
+ * quantiles are over everything recorded since the server started.
+ *
+ * Requests are answered one at a time on a single daemon thread, so a scrape never competes with the games for more
+ * than one core.
+ */
+public final class PrometheusExporter implements HttpHandler {
+
+  static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8" ;
+  private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 } ;
+
+  private final MetricsRegistry registry ;
+  private HttpServer server ;
+
+  public PrometheusExporter(MetricsRegistry registry) {
+    this.registry = registry ;
+  }
+
+  public void start(String host, int port) throws IOException {
+    server = HttpServer.create(new InetSocketAddress(host, port), 0) ;
+    server.createContext("/metrics", this) ;
+    server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+      Thread t = new Thread(r, "PrometheusExporter") ;
+      t.setDaemon(true) ;
+      return t ;
+    })) ;
+    server.start() ;
+  }
+
+  public void stop() {
+    if (server != null) {
+      server.stop(0) ;
+    }
+  }
+
+  @Override
+  public void handle(HttpExchange exchange) throws IOException {
+    byte[] body = format(registry).getBytes(StandardCharsets.UTF_8) ;
+    exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE) ;
+    exchange.sendResponseHeaders(200, body.length) ;
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body) ;
+    }
+  }
+
+  public static String format(MetricsRegistry registry) {
+    StringBuilder text = new StringBuilder(4096) ;
+    // the members of a family go out together, after one HELP and TYPE, wherever they were registered
+    Map<String, List<Metric>> families = new LinkedHashMap<>() ;
+    for (Metric m : registry.getMetrics()) {
+      families.computeIfAbsent(m.name, name -> new ArrayList<>()).add(m) ;
+    }
+    for (List<Metric> family : families.values()) {
+      Metric first = family.get(0) ;
+      text.append("# HELP ").append(first.name).append(' ').append(first.help).append('\n') ;
+      text.append("# TYPE ").append(first.name).append(' ').append(first.getType().name().toLowerCase()).append('\n') ;
+      for (Metric m : family) {
+        sample(text, m) ;
+      }
+    }
+    return text.toString() ;
+  }
+
+  private static void sample(StringBuilder text, Metric m) {
+    switch (m.getType()) {
+      case COUNTER:
+        sample(text, m.name, m, null, ((Counter) m).get()) ;
+        break ;
+      case GAUGE:
+        sample(text, m.name, m, null, ((Gauge) m).get()) ;
+        break ;
+      case SUMMARY:
+        LatencyHistogram h = (LatencyHistogram) m ;
+        LatencyHistogram.Snapshot s = h.snapshot() ;
+        for (double q : QUANTILES) {
+          sample(text, m.name, m, "quantile=\"" + q + "\"", value(h, s.getValueAtQuantile(q))) ;
+        }
+        sample(text, m.name + "_sum", m, null, value(h, s.getSum())) ;
+        sample(text, m.name + "_count", m, null, s.getCount()) ;
+        text.append("# TYPE ").append(m.name).append("_max gauge\n") ;
+        sample(text, m.name + "_max", m, null, value(h, s.getMax())) ;
+        break ;
+    }
+  }
+
+  private static void sample(StringBuilder text, String name, Metric m, String extraLabel, Object value) {
+    text.append(name) ;
+    if (m.labelName != null || extraLabel != null) {
+      text.append('{') ;
+      if (m.labelName != null) {
+        text.append(m.labelName).append("=\"").append(m.labelValue).append('"') ;
+        if (extraLabel != null) {
+          text.append(',') ;
+        }
+      }
+      if (extraLabel != null) {
+        text.append(extraLabel) ;
+      }
+      text.append('}') ;
+    }
+    text.append(' ').append(value).append('\n') ;
+  }
+
+  private static Object value(LatencyHistogram h, long value) {
+    return h.isDurations() ? (Object) (value / 1e9) : (Object) value ;
+  }
+}
@@ -0,0 +1,127 @@
+package com.chanceit.sim;
+
+import com.chanceit.engine.BufferedDieSource;
+import com.chanceit.engine.ChanceItGame;
+import com.chanceit.engine.Strategy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.SplittableRandom;
+import java.util.concurrent.RecursiveTask;
+
+/*
+ * One tournament match: `games` games of a against b, split and forked like a SimulationTask, with the same
+ * alternating first player.
+ *
+ * Each game is dealt from a BufferedDieSource reseeded with a seed of its own, taken from the task's random stream, so
+ * every game can be replayed from its seed alone and the match only depends on the seed it was given.  With a log
+ * each leaf writes its games as gameLog lines (see GameLogWriter) in one block; blocks of different leaves and matches
+ * may come in any order.
+ */
+@SuppressWarnings("serial")
+class MatchTask extends RecursiveTask<MatchTask.Result> {
+
+  static final long LEAF_GAMES = 1 << 12 ;
+
+  static final class Result {
+    long aWins ;
+    long bWins ;
+    long draws ;
+    long aScore ;  // points scored by a over the games
+    long bScore ;
+
+    long games() {
+      return aWins + bWins + draws ;
+    }
+
+    Result add(Result other) {
+      aWins += other.aWins ;
+      bWins += other.bWins ;
+      draws += other.draws ;
+      aScore += other.aScore ;
+      bScore += other.bScore ;
+      return this ;
+    }
+  }
+
+  private final Strategy a ;
+  private final Strategy b ;
+  private final String aName ;  // as they go in the log
+  private final String bName ;
+  private final int turnsPerPlayer ;
+  private final long firstGame ;
+  private final long games ;
+  private final SplittableRandom random ;
+  private final Writer log ;    // null == no log
+
+  MatchTask(Strategy a, String aName, Strategy b, String bName, int turnsPerPlayer, long firstGame, long games,
+            SplittableRandom random, Writer log) {
+    this.a = a ;
+    this.b = b ;
+    this.aName = aName ;
+    this.bName = bName ;
+    this.turnsPerPlayer = turnsPerPlayer ;
+    this.firstGame = firstGame ;
+    this.games = games ;
+    this.random = random ;
+    this.log = log ;
+  }
+
+  @Override
+  protected Result compute() {
+    if (games <= LEAF_GAMES) {
+      return play() ;
+    }
+    long half = games / 2 ;
+    MatchTask left = new MatchTask(a, aName, b, bName, turnsPerPlayer, firstGame, half, random.split(), log) ;
+    MatchTask right = new MatchTask(a, aName, b, bName, turnsPerPlayer, firstGame + half, games - half, random.split(), log) ;
+    left.fork() ;
+    return right.compute().add(left.join()) ;
+  }
+
+  private Result play() {
+    Result result = new Result() ;
+    BufferedDieSource dice = new BufferedDieSource(0) ;
+    ChanceItGame game = new ChanceItGame(turnsPerPlayer, dice, null) ;
+    StringBuilder lines = (log != null) ? new StringBuilder((int) games * 40) : null ;
+
+    for (long g = firstGame; g < firstGame + games; g++) {
+      boolean aFirst = (g & 1) == 0 ;
+      long seed = random.nextLong() ;
+      dice.reseed(seed) ;
+      SimulationTask.play(game, aFirst ? a : b, aFirst ? b : a) ;
+
+      int aScore = game.getScore(aFirst ? 0 : 1) ;
+      int bScore = game.getScore(aFirst ? 1 : 0) ;
+      result.aScore += aScore ;
+      result.bScore += bScore ;
+      int winner = game.getWinner() ;
+      if (winner == ChanceItGame.DRAW) {
+        result.draws++ ;
+      } else if ((winner == 0) == aFirst) {
+        result.aWins++ ;
+      } else {
+        result.bWins++ ;
+      }
+
+      if (lines != null) {
+        // csv header: winner,wscore,loser,lscore,how,seed.  A draw is logged as the server logs one: second player first
+        boolean aListed = (winner == ChanceItGame.DRAW) ? !aFirst : (winner == 0) == aFirst ;
+        lines.append(aListed ? aName : bName).append(',').append(aListed ? aScore : bScore).append(',')
+             .append(aListed ? bName : aName).append(',').append(aListed ? bScore : aScore).append(',')
+             .append(winner == ChanceItGame.DRAW ? "FAIR_PLAY||TIE" : "FAIR_PLAY").append(',').append(seed).append('\n') ;
+      }
+    }
+
+    if (lines != null) {
+      try {
+        synchronized (log) {
+          log.append(lines) ;
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e) ;
+      }
+    }
+    return result ;
+  }
+}
@@ -0,0 +1,104 @@
+package com.chanceit.sim;
+
+import com.chanceit.engine.ChanceItGame;
+import com.chanceit.engine.BufferedDieSource;
+import com.chanceit.engine.Strategy;
+import java.util.SplittableRandom;
+import java.util.concurrent.RecursiveTask;
+
+/*
+ * Plays `games` games of strategy a against strategy b.  Big ranges are split in half and forked; every half gets its
+ * own split of the parent's random stream, so the result only depends on the seed, not on how the pool ran the tasks.
+ *
+ * a goes first in even numbered games and b in odd ones: over a run each goes first half the time, as the server's
+ * roll-off gives on average.
+ */
+@SuppressWarnings("serial")
+class SimulationTask extends RecursiveTask<SimulationTask.Tally> {
+
+  static final long LEAF_GAMES = 1 << 16 ;
+
+  static final class Tally {
+    long aWins ;
+    long bWins ;
+    long draws ;
+
+    long games() {
+      return aWins + bWins + draws ;
+    }
+
+    Tally add(Tally other) {
+      aWins += other.aWins ;
+      bWins += other.bWins ;
+      draws += other.draws ;
+      return this ;
+    }
+  }
+
+  private final Strategy a ;
+  private final Strategy b ;
+  private final int turnsPerPlayer ;
+  private final long firstGame ;
+  private final long games ;
+  private final SplittableRandom random ;
+
+  SimulationTask(Strategy a, Strategy b, int turnsPerPlayer, long firstGame, long games, SplittableRandom random) {
+    this.a = a ;
+    this.b = b ;
+    this.turnsPerPlayer = turnsPerPlayer ;
+    this.firstGame = firstGame ;
+    this.games = games ;
+    this.random = random ;
+  }
+
+  @Override
+  protected Tally compute() {
+    if (games <= LEAF_GAMES) {
+      return play() ;
+    }
+    long half = games / 2 ;
+    SimulationTask left = new SimulationTask(a, b, turnsPerPlayer, firstGame, half, random.split()) ;
+    SimulationTask right = new SimulationTask(a, b, turnsPerPlayer, firstGame + half, games - half, random.split()) ;
+    left.fork() ;
+    return right.compute().add(left.join()) ;
+  }
+
+  private Tally play() {
+    Tally tally = new Tally() ;
+    ChanceItGame game = new ChanceItGame(turnsPerPlayer, new BufferedDieSource(random), null) ;
+
+    for (long g = firstGame; g < firstGame + games; g++) {
+      boolean aFirst = (g & 1) == 0 ;
+      Strategy player0 = aFirst ? a : b ;
+      Strategy player1 = aFirst ? b : a ;
+
+      play(game, player0, player1) ;
+
+      int winner = game.getWinner() ;
+      if (winner == ChanceItGame.DRAW) {
+        tally.draws++ ;
+      } else if ((winner == 0) == aFirst) {
+        tally.aWins++ ;
+      } else {
+        tally.bWins++ ;
+      }
+    }
+    return tally ;
+  }
+
+  // one game from reset() to the end: the server's rules, with each decision taken by the player's strategy
+  static void play(ChanceItGame game, Strategy player0, Strategy player1) {
+    game.reset() ;
+    while (!game.isOver()) {
+      Strategy strategy = (game.getCurrentPlayer() == 0) ? player0 : player1 ;
+      game.startTurn() ;
+      while (game.getState() == ChanceItGame.AWAITING_DECISION) {
+        if (strategy.chanceIt(game)) {
+          game.chanceIt() ;
+        } else {
+          game.bank() ;
+        }
+      }
+    }
+  }
+}
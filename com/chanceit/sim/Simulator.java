@@ -0,0 +1,106 @@
+package com.chanceit.sim;
+
+import com.chanceit.engine.Strategies;
+import com.chanceit.engine.Strategy;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+ * In-process Monte Carlo simulator: plays strategies against each other on the ChanceItGame engine, on every core,
+ * with the server's rules and number_of_turns, and reports win rates with Wilson score confidence intervals.
+ *
+ *   ./simulate.sh stop:20 stop:25 rolls:3 games=100000000
+ *
+ * Arguments containing '=' are settings, the rest are strategies (see Strategies).  With more than two strategies
+ * every pair is played.
+ *
+ *   games      games per pair                                                   (10000000)
+ *   turns      turns per player; defaults to number_of_turns in config.properties (20)
+ *   seed       seed of the root random stream; the same seed gives the same results  (1)
+ *   threads    fork/join parallelism                                            (all cores)
+ *   z          z score of the confidence interval, 1.96 == 95%                  (1.96)
+ */
+public class Simulator {
+
+  private static final String CONFIG_FILE = "./config.properties";
+
+  public static void main(String[] args) throws Exception {
+
+    Properties settings = new Properties() ;
+    List<Strategy> strategies = new ArrayList<Strategy>() ;
+    for (String arg : args) {
+      int eq = arg.indexOf('=') ;
+      if (eq > 0) {
+        settings.setProperty(arg.substring(0, eq).trim(), arg.substring(eq + 1).trim()) ;
+      } else {
+        strategies.add(Strategies.parse(arg)) ;
+      }
+    }
+    if (strategies.size() < 2) {
+      System.out.println("usage: Simulator <strategy> <strategy> [<strategy> ...] [games=N] [turns=N] [seed=N] [threads=N] [z=1.96]") ;
+      System.out.println("  strategies: stop:N | rolls:K | table:T2,T3,...,T12") ;
+      System.exit(1) ;
+    }
+
+    long games = Long.parseLong(settings.getProperty("games", "10000000")) ;
+    int turns = Integer.parseInt(settings.getProperty("turns", String.valueOf(configuredTurns()))) ;
+    long seed = Long.parseLong(settings.getProperty("seed", "1")) ;
+    int threads = Integer.parseInt(settings.getProperty("threads", String.valueOf(Runtime.getRuntime().availableProcessors()))) ;
+    double z = Double.parseDouble(settings.getProperty("z", "1.96")) ;
+
+    ForkJoinPool pool = new ForkJoinPool(threads) ;
+    SplittableRandom root = new SplittableRandom(seed) ;
+    System.out.println(String.format("Simulator: %d games per pair, %d turns per player, seed %d, %d threads", games, turns, seed, threads)) ;
+
+    for (int i = 0; i < strategies.size(); i++) {
+      for (int j = i + 1; j < strategies.size(); j++) {
+        Strategy a = strategies.get(i) ;
+        Strategy b = strategies.get(j) ;
+
+        long start = System.nanoTime() ;
+        SimulationTask.Tally tally = pool.invoke(new SimulationTask(a, b, turns, 0, games, root.split())) ;
+        double seconds = (System.nanoTime() - start) / 1e9 ;
+
+        System.out.println(String.format("%s vs %s: %d games in %.1f s (%.0f games/sec)", a, b, tally.games(), seconds, tally.games() / seconds)) ;
+        System.out.println(format(a.toString(), tally.aWins, tally.games(), z)) ;
+        System.out.println(format(b.toString(), tally.bWins, tally.games(), z)) ;
+        System.out.println(format("draws", tally.draws, tally.games(), z)) ;
+      }
+    }
+    pool.shutdown() ;
+  }
+
+  private static String format(String name, long count, long n, double z) {
+    double[] interval = wilson(count, n, z) ;
+    return String.format("    %-24s %8.4f%%  [%.4f%%, %.4f%%]", name, 100.0 * count / n, 100 * interval[0], 100 * interval[1]) ;
+  }
+
+  /*
+   * Wilson score interval for a proportion: stays inside [0, 1] and behaves for rates near 0 (draws) unlike the
+   * normal approximation.
+   */
+  static double[] wilson(long successes, long n, double z) {
+    double p = (double) successes / n ;
+    double z2n = z * z / n ;
+    double centre = (p + z2n / 2) / (1 + z2n) ;
+    double half = z * Math.sqrt(p * (1 - p) / n + z2n / (4 * n)) / (1 + z2n) ;
+    return new double[] { Math.max(0, centre - half), Math.min(1, centre + half) } ;
+  }
+
+  // number_of_turns from config.properties, as the GamePlayWorker reads it
+  private static int configuredTurns() {
+    Properties prop = new Properties() ;
+    try (InputStream input = new FileInputStream(CONFIG_FILE)) {
+      prop.load(input) ;
+    } catch (IOException e) {
+      // no config file: the server's default
+    }
+    return Integer.parseInt(prop.getProperty("number_of_turns", "20")) ;
+  }
+}
@@ -0,0 +1,204 @@
+package com.chanceit.sim;
+
+import com.chanceit.engine.DecisionTable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+ * Exact optimal-policy solver: dynamic programming over every decision state (d, R, s, t) (see DecisionTable), written
+ * to a memory-mapped decision table.
+ *
+ *   ./solve.sh                         number_of_turns from config.properties, into chanceit-policy.bin
+ *   ./solve.sh max_diff=800 out=p.bin
+ *
+ * With d the mover's lead and R the turns left in the game (both players'), the value of a state is the mover's
+ * probability of winning, a draw counting as half, when both players play optimally:
+ *
+ *   start(d, 0)       = 1, 1/2 or 0 as d > 0, d == 0 or d < 0
+ *   start(d, R)       = sum over first rolls s of P(s) * decide(d, R, s, s)
+ *   stop(d, R, t)     = 1 - start(-(d + t), R - 1)                  the opponent moves next
+ *   decide(d, R, s, t) = max( stop(d, R, t),
+ *                            P(s) * stop(d, R, 0) + sum over rolls r != s of P(r) * decide(d, R, s, t + r) )
+ *
+ * Layer R only needs layer R - 1, and within a layer every d is independent, so each layer is solved in parallel
+ * over d.  Approximations: leads beyond +/-max_diff count as max_diff, and a turn is banked once it reaches
+ * max_turn_total.
+ *
+ *   turns           turns per player                                  (number_of_turns from config.properties, 20)
+ *   max_diff        largest lead tracked exactly                      (400)
+ *   max_turn_total  largest turn total before the policy must bank    (150)
+ *   threads         fork/join parallelism                             (all cores)
+ *   out             the table file                                    (chanceit-policy.bin)
+ */
+public class Solver {
+
+  private static final String CONFIG_FILE = "./config.properties";
+
+  // P(two dice total == r), r = 0..12
+  static final double[] ROLL_PROBABILITY = new double[13] ;
+  static {
+    for (int d1 = 1; d1 <= 6; d1++) {
+      for (int d2 = 1; d2 <= 6; d2++) {
+        ROLL_PROBABILITY[d1 + d2] += 1.0 / 36 ;
+      }
+    }
+  }
+
+  private final int turnsPerPlayer ;
+  private final int maxDiff ;
+  private final int maxTurnTotal ;
+  private final int diffs ;
+  private final double[][] start ;  // start[R][d + maxDiff]
+
+  Solver(int turnsPerPlayer, int maxDiff, int maxTurnTotal) {
+    this.turnsPerPlayer = turnsPerPlayer ;
+    this.maxDiff = maxDiff ;
+    this.maxTurnTotal = maxTurnTotal ;
+    this.diffs = 2 * maxDiff + 1 ;
+    this.start = new double[2 * turnsPerPlayer + 1][diffs] ;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Properties settings = new Properties() ;
+    for (String arg : args) {
+      int eq = arg.indexOf('=') ;
+      if (eq < 0) {
+        System.out.println("usage: Solver [turns=N] [max_diff=N] [max_turn_total=N] [threads=N] [out=FILE]") ;
+        System.exit(1) ;
+      }
+      settings.setProperty(arg.substring(0, eq).trim(), arg.substring(eq + 1).trim()) ;
+    }
+    int turns = Integer.parseInt(settings.getProperty("turns", String.valueOf(configuredTurns()))) ;
+    int maxDiff = Integer.parseInt(settings.getProperty("max_diff", "400")) ;
+    int maxTurnTotal = Integer.parseInt(settings.getProperty("max_turn_total", "150")) ;
+    int threads = Integer.parseInt(settings.getProperty("threads", String.valueOf(Runtime.getRuntime().availableProcessors()))) ;
+    String out = settings.getProperty("out", "chanceit-policy.bin") ;
+
+    long bytes = DecisionTable.HEADER_BYTES
+               + 2L * DecisionTable.decisionEntries(turns, maxDiff, maxTurnTotal)
+               + 2L * 2 * turns * (2 * maxDiff + 1) ;
+    if (bytes > Integer.MAX_VALUE || maxTurnTotal < 12) {
+      System.out.println("max_diff/max_turn_total out of range: the table must be under 2 GB and max_turn_total at least 12") ;
+      System.exit(1) ;
+    }
+
+    System.out.println(String.format("Solver: %d turns per player, leads to +/-%d, turn totals to %d, %d threads -> %s (%.1f MB)",
+        turns, maxDiff, maxTurnTotal, threads, out, bytes / 1e6)) ;
+    long begin = System.nanoTime() ;
+
+    Solver solver = new Solver(turns, maxDiff, maxTurnTotal) ;
+    try (RandomAccessFile file = new RandomAccessFile(out, "rw") ;
+         FileChannel channel = file.getChannel()) {
+      file.setLength(bytes) ;
+      MappedByteBuffer table = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes) ;
+      table.putInt(0, DecisionTable.MAGIC) ;
+      table.putInt(4, DecisionTable.VERSION) ;
+      table.putInt(8, turns) ;
+      table.putInt(12, maxDiff) ;
+      table.putInt(16, maxTurnTotal) ;
+
+      ForkJoinPool pool = new ForkJoinPool(threads) ;
+      solver.solve(table, pool) ;
+      pool.shutdown() ;
+      table.force() ;
+    }
+
+    System.out.println(String.format("solved in %.1f s", (System.nanoTime() - begin) / 1e9)) ;
+    System.out.println(String.format("first player wins %.4f%% of games with optimal play by both", 100 * solver.start[2 * turns][maxDiff])) ;
+  }
+
+  void solve(MappedByteBuffer table, ForkJoinPool pool) {
+    // nobody left to move: whoever is ahead has won
+    for (int i = 0; i < diffs; i++) {
+      start[0][i] = (i > maxDiff) ? 1 : (i == maxDiff) ? 0.5 : 0 ;
+    }
+
+    final int startOfTurnOffset = DecisionTable.HEADER_BYTES + 2 * DecisionTable.decisionEntries(turnsPerPlayer, maxDiff, maxTurnTotal) ;
+    for (int r = 1; r <= 2 * turnsPerPlayer; r++) {
+      pool.invoke(new LayerTask(table, r, 0, diffs)) ;
+      for (int i = 0; i < diffs; i++) {
+        table.putShort(startOfTurnOffset + 2 * ((r - 1) * diffs + i), DecisionTable.encode(false, start[r][i])) ;
+      }
+    }
+  }
+
+  // one layer, split over ranges of leads
+  @SuppressWarnings("serial")
+  private class LayerTask extends RecursiveAction {
+    private final MappedByteBuffer table ;
+    private final int turnsRemaining ;
+    private final int from ;
+    private final int to ;
+
+    LayerTask(MappedByteBuffer table, int turnsRemaining, int from, int to) {
+      this.table = table ;
+      this.turnsRemaining = turnsRemaining ;
+      this.from = from ;
+      this.to = to ;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= 8) {
+        for (int i = from; i < to; i++) {
+          solve(table, turnsRemaining, i) ;
+        }
+        return ;
+      }
+      int middle = (from + to) >>> 1 ;
+      invokeAll(new LayerTask(table, turnsRemaining, from, middle), new LayerTask(table, turnsRemaining, middle, to)) ;
+    }
+  }
+
+  // every decision state for one lead and one turns-remaining; only reads layer R - 1
+  private void solve(MappedByteBuffer table, int turnsRemaining, int diffIndex) {
+    int d = diffIndex - maxDiff ;
+    double[] next = start[turnsRemaining - 1] ;
+    double[] decide = new double[maxTurnTotal + 13] ;  // decide(d, R, s, t) for the current s, by t
+    double bust = 1 - next[clamp(-d)] ;
+    double startValue = 0 ;
+
+    for (int s = 2; s <= 12; s++) {
+      // past max_turn_total the turn is banked
+      for (int t = maxTurnTotal + 1; t <= maxTurnTotal + 12; t++) {
+        decide[t] = 1 - next[clamp(-(d + t))] ;
+      }
+      for (int t = maxTurnTotal; t >= 2; t--) {
+        double stop = 1 - next[clamp(-(d + t))] ;
+        double chance = ROLL_PROBABILITY[s] * bust ;
+        for (int roll = 2; roll <= 12; roll++) {
+          if (roll != s) {
+            chance += ROLL_PROBABILITY[roll] * decide[t + roll] ;
+          }
+        }
+        boolean chanceIt = chance > stop ;
+        decide[t] = chanceIt ? chance : stop ;
+        table.putShort(DecisionTable.offset(turnsRemaining, diffIndex, s, t, diffs, maxTurnTotal - 1), DecisionTable.encode(chanceIt, decide[t])) ;
+      }
+      startValue += ROLL_PROBABILITY[s] * decide[s] ;
+    }
+    start[turnsRemaining][diffIndex] = startValue ;
+  }
+
+  private int clamp(int scoreDiff) {
+    return Math.max(-maxDiff, Math.min(maxDiff, scoreDiff)) + maxDiff ;
+  }
+
+  // number_of_turns from config.properties, as the GamePlayWorker reads it
+  private static int configuredTurns() {
+    Properties prop = new Properties() ;
+    try (InputStream input = new FileInputStream(CONFIG_FILE)) {
+      prop.load(input) ;
+    } catch (IOException e) {
+      // no config file: the server's default
+    }
+    return Integer.parseInt(prop.getProperty("number_of_turns", "20")) ;
+  }
+}
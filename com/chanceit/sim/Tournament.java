@@ -0,0 +1,351 @@
+package com.chanceit.sim;
+
+import com.chanceit.engine.Strategies;
+import com.chanceit.engine.Strategy;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/*
+ * In-process tournament runner: plays strategies against each other on the ChanceItGame engine, on every core, with
+ * the server's rules and number_of_turns but without its sockets, OPPONENT_NOTIFY_DELAY or ROLL_TIME, and prints the
+ * standings.
+ *
+ *   ./tournament.sh format=swiss games=1001 stop:20 stop:25 stop:20:30 rolls:3 class:my.Strategy
+ *
+ * Arguments containing '=' are settings, the rest are strategies: those of Strategies, or class:NAME for an instance of
+ * the Strategy class NAME made with its no-argument constructor.  class: is only understood here, on the command line;
+ * Strategies.parse() is also what parses the policies players send the server, and they must not load classes.
+ *
+ *   format      roundrobin: every strategy plays every other once
+ *               swiss: `rounds` rounds, each pairing strategies on the same score that have not met yet
+ *               knockout: the winners of each round go on, in the order strategies are given (1 v n, 2 v n-1 ...)
+ *                                                                                 (roundrobin)
+ *   games       games per match: best of `games`                                 (10000)
+ *   rounds      swiss rounds                                                     (log2 of the strategies, rounded up)
+ *   strategies  a file of more strategies, one per line; # starts a comment
+ *   game_log    also write every game to this file in the server's gameLog CSV format
+ *   turns       turns per player; defaults to number_of_turns in config.properties (20)
+ *   seed        seed of the root random stream; the same seed gives the same results  (1)
+ *   threads     fork/join parallelism                                            (all cores)
+ *
+ * A match is won by the strategy that wins more of its games: 1 point, 1/2 each if they win as many (in knockout the
+ * one that scored more points goes on, then the one given first).  An odd strategy out in a swiss round gets a bye,
+ * worth a win.  Standings are by points, then games won minus games lost.  Every match of a round is played at once,
+ * and a long match is split across the pool too.
+ */
+public class Tournament {
+
+  private static final String CONFIG_FILE = "./config.properties";
+
+  // one strategy's record
+  static final class Entry {
+    final String name ;
+    final Strategy strategy ;
+    final int seed ;          // its place on the command line
+    double points ;
+    int matchesWon ;
+    int matchesDrawn ;
+    int matchesLost ;
+    int byes ;
+    long gamesWon ;
+    long gamesDrawn ;
+    long gamesLost ;
+    long scoreFor ;
+    long scoreAgainst ;
+    final Set<Entry> met = new HashSet<Entry>() ;
+
+    Entry(String name, Strategy strategy, int seed) {
+      this.name = name ;
+      this.strategy = strategy ;
+      this.seed = seed ;
+    }
+
+    long games() {
+      return gamesWon + gamesDrawn + gamesLost ;
+    }
+  }
+
+  private static final Comparator<Entry> STANDING = (x, y) -> {
+    if (x.points != y.points) return Double.compare(y.points, x.points) ;
+    long xDiff = x.gamesWon - x.gamesLost, yDiff = y.gamesWon - y.gamesLost ;
+    if (xDiff != yDiff) return Long.compare(yDiff, xDiff) ;
+    return Integer.compare(x.seed, y.seed) ;
+  } ;
+
+  private final ForkJoinPool pool ;
+  private final SplittableRandom random ;
+  private final long games ;
+  private final int turns ;
+  private final Writer log ;
+  private long gamesPlayed ;
+
+  Tournament(ForkJoinPool pool, SplittableRandom random, long games, int turns, Writer log) {
+    this.pool = pool ;
+    this.random = random ;
+    this.games = games ;
+    this.turns = turns ;
+    this.log = log ;
+  }
+
+  public static void main(String[] args) throws Exception {
+
+    Properties settings = new Properties() ;
+    List<String> specs = new ArrayList<String>() ;
+    for (String arg : args) {
+      int eq = arg.indexOf('=') ;
+      if (eq > 0) {
+        settings.setProperty(arg.substring(0, eq).trim(), arg.substring(eq + 1).trim()) ;
+      } else {
+        specs.add(arg) ;
+      }
+    }
+    String file = settings.getProperty("strategies") ;
+    if (file != null) {
+      for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+        int hash = line.indexOf('#') ;
+        String spec = ((hash >= 0) ? line.substring(0, hash) : line).trim() ;
+        if (!spec.isEmpty()) {
+          specs.add(spec) ;
+        }
+      }
+    }
+    if (specs.size() < 2) {
+      System.out.println("usage: Tournament <strategy> <strategy> [<strategy> ...] [format=roundrobin|swiss|knockout] [games=N]") ;
+      System.out.println("                  [rounds=N] [strategies=FILE] [game_log=FILE] [turns=N] [seed=N] [threads=N]") ;
+      System.out.println("  strategies: stop:N | stop:N:M | rolls:K | table:T2,T3,...,T12 | optimal:FILE | class:NAME") ;
+      System.exit(1) ;
+    }
+
+    List<Entry> entries = new ArrayList<Entry>() ;
+    Set<String> names = new HashSet<String>() ;
+    for (String spec : specs) {
+      // the log is CSV, and table: specs are full of commas
+      String name = spec.replace(',', '/') ;
+      for (int n = 2; !names.add(name); n++) {
+        name = spec.replace(',', '/') + "#" + n ;
+      }
+      entries.add(new Entry(name, strategy(spec), entries.size() + 1)) ;
+    }
+
+    String format = settings.getProperty("format", "roundrobin") ;
+    long games = Long.parseLong(settings.getProperty("games", "10000")) ;
+    int rounds = Integer.parseInt(settings.getProperty("rounds",
+        String.valueOf(32 - Integer.numberOfLeadingZeros(entries.size() - 1)))) ;
+    int turns = Integer.parseInt(settings.getProperty("turns", String.valueOf(configuredTurns()))) ;
+    long seed = Long.parseLong(settings.getProperty("seed", "1")) ;
+    int threads = Integer.parseInt(settings.getProperty("threads", String.valueOf(Runtime.getRuntime().availableProcessors()))) ;
+    String gameLog = settings.getProperty("game_log") ;
+
+    ForkJoinPool pool = new ForkJoinPool(threads) ;
+    Writer log = null ;
+    if (gameLog != null) {
+      log = new BufferedWriter(new FileWriter(gameLog), 1 << 20) ;
+      log.write("winner,wscore,loser,lscore,how,seed\n") ;
+    }
+    Tournament tournament = new Tournament(pool, new SplittableRandom(seed), games, turns, log) ;
+    System.out.println(String.format("Tournament: %s, %d strategies, best of %d games, %d turns per player, seed %d, %d threads",
+                                     format, entries.size(), games, turns, seed, threads)) ;
+
+    long start = System.nanoTime() ;
+    if ("roundrobin".equals(format)) {
+      tournament.roundRobin(entries) ;
+    } else if ("swiss".equals(format)) {
+      tournament.swiss(entries, rounds) ;
+    } else if ("knockout".equals(format)) {
+      tournament.knockout(entries) ;
+    } else {
+      throw new IllegalArgumentException("unknown format: " + format) ;
+    }
+    double seconds = (System.nanoTime() - start) / 1e9 ;
+    if (log != null) {
+      log.close() ;
+    }
+    pool.shutdown() ;
+
+    System.out.println(String.format("%d games in %.1f s (%.0f games/sec)", tournament.gamesPlayed, seconds, tournament.gamesPlayed / seconds)) ;
+    if (!"knockout".equals(format)) {
+      standings(entries) ;
+    }
+  }
+
+  void roundRobin(List<Entry> entries) {
+    List<Entry[]> pairs = new ArrayList<Entry[]>() ;
+    for (int i = 0; i < entries.size(); i++) {
+      for (int j = i + 1; j < entries.size(); j++) {
+        pairs.add(new Entry[] { entries.get(i), entries.get(j) }) ;
+      }
+    }
+    play(pairs) ;
+  }
+
+  void swiss(List<Entry> entries, int rounds) {
+    for (int round = 1; round <= rounds; round++) {
+      List<Entry> unpaired = new ArrayList<Entry>(entries) ;
+      Collections.sort(unpaired, STANDING) ;
+      if (unpaired.size() % 2 == 1) {
+        // the bye goes to the lowest placed strategy that has not had one yet
+        Entry bye = unpaired.get(unpaired.size() - 1) ;
+        for (int i = unpaired.size() - 1; i >= 0; i--) {
+          if (unpaired.get(i).byes < bye.byes) {
+            bye = unpaired.get(i) ;
+          }
+        }
+        unpaired.remove(bye) ;
+        bye.byes++ ;
+        bye.points += 1 ;
+      }
+      // top down, each against the next one it has not met, or simply the next one if it has met them all
+      List<Entry[]> pairs = new ArrayList<Entry[]>() ;
+      while (!unpaired.isEmpty()) {
+        Entry x = unpaired.remove(0) ;
+        int opponent = 0 ;
+        for (int i = 0; i < unpaired.size(); i++) {
+          if (!x.met.contains(unpaired.get(i))) {
+            opponent = i ;
+            break ;
+          }
+        }
+        pairs.add(new Entry[] { x, unpaired.remove(opponent) }) ;
+      }
+      play(pairs) ;
+      System.out.println(String.format("round %d of %d played", round, rounds)) ;
+    }
+  }
+
+  void knockout(List<Entry> entries) {
+    List<Entry> alive = new ArrayList<Entry>(entries) ;
+    for (int round = 1; alive.size() > 1; round++) {
+      // a field that is not a power of two: the top seeds sit out the first round
+      int byes = Integer.highestOneBit(alive.size() - 1) * 2 - alive.size() ;
+      List<Entry> next = new ArrayList<Entry>(alive.subList(0, byes)) ;
+      List<Entry> field = alive.subList(byes, alive.size()) ;
+      List<Entry[]> pairs = new ArrayList<Entry[]>() ;
+      for (int i = 0; i < field.size() / 2; i++) {
+        pairs.add(new Entry[] { field.get(i), field.get(field.size() - 1 - i) }) ;
+      }
+      List<MatchTask.Result> results = play(pairs) ;
+
+      System.out.println(String.format("round %d:", round)) ;
+      for (int i = 0; i < pairs.size(); i++) {
+        Entry a = pairs.get(i)[0], b = pairs.get(i)[1] ;
+        MatchTask.Result r = results.get(i) ;
+        boolean aWins = (r.aWins != r.bWins) ? r.aWins > r.bWins : r.aScore >= r.bScore ;
+        next.add(aWins ? a : b) ;
+        System.out.println(String.format("    %-24s %6d  %-24s %6d  draws %d  -> %s",
+                                         a.name, r.aWins, b.name, r.bWins, r.draws, (aWins ? a : b).name)) ;
+      }
+      // winners stay in seed order, so 1 meets the winner of the bottom half in the final
+      Collections.sort(next, Comparator.comparingInt(e -> e.seed)) ;
+      alive = next ;
+    }
+    System.out.println("winner: " + alive.get(0).name) ;
+  }
+
+  // every match at once; results in the order of pairs
+  private List<MatchTask.Result> play(List<Entry[]> pairs) {
+    List<MatchTask> tasks = new ArrayList<MatchTask>() ;
+    for (Entry[] pair : pairs) {
+      MatchTask task = new MatchTask(pair[0].strategy, pair[0].name, pair[1].strategy, pair[1].name, turns, 0, games,
+                                     random.split(), log) ;
+      tasks.add(task) ;
+      pool.execute(task) ;
+    }
+    List<MatchTask.Result> results = new ArrayList<MatchTask.Result>() ;
+    for (int i = 0; i < tasks.size(); i++) {
+      MatchTask.Result r = tasks.get(i).join() ;
+      record(pairs.get(i)[0], pairs.get(i)[1], r) ;
+      results.add(r) ;
+    }
+    return results ;
+  }
+
+  private void record(Entry a, Entry b, MatchTask.Result r) {
+    gamesPlayed += r.games() ;
+    a.met.add(b) ;
+    b.met.add(a) ;
+    a.gamesWon += r.aWins ;
+    a.gamesLost += r.bWins ;
+    a.gamesDrawn += r.draws ;
+    b.gamesWon += r.bWins ;
+    b.gamesLost += r.aWins ;
+    b.gamesDrawn += r.draws ;
+    a.scoreFor += r.aScore ;
+    a.scoreAgainst += r.bScore ;
+    b.scoreFor += r.bScore ;
+    b.scoreAgainst += r.aScore ;
+    if (r.aWins > r.bWins) {
+      a.matchesWon++ ;
+      b.matchesLost++ ;
+      a.points += 1 ;
+    } else if (r.aWins < r.bWins) {
+      b.matchesWon++ ;
+      a.matchesLost++ ;
+      b.points += 1 ;
+    } else {
+      a.matchesDrawn++ ;
+      b.matchesDrawn++ ;
+      a.points += 0.5 ;
+      b.points += 0.5 ;
+    }
+  }
+
+  private static void standings(List<Entry> entries) {
+    List<Entry> table = new ArrayList<Entry>(entries) ;
+    Collections.sort(table, STANDING) ;
+    System.out.println(String.format("%4s  %-24s %6s  %11s  %25s  %7s  %8s  %8s",
+                                     "", "strategy", "points", "matches", "games won/drawn/lost", "won", "for", "against")) ;
+    for (int i = 0; i < table.size(); i++) {
+      Entry e = table.get(i) ;
+      long n = Math.max(1, e.games()) ;
+      System.out.println(String.format("%4d  %-24s %6.1f  %3d/%3d/%3d  %9d/%7d/%7d  %6.2f%%  %8.2f  %8.2f",
+                                       i + 1, e.name, e.points, e.matchesWon, e.matchesDrawn, e.matchesLost,
+                                       e.gamesWon, e.gamesDrawn, e.gamesLost, 100.0 * e.gamesWon / n,
+                                       (double) e.scoreFor / n, (double) e.scoreAgainst / n)) ;
+    }
+  }
+
+  // a strategy from the command line or a strategies file: class:NAME, or one of Strategies
+  private static Strategy strategy(String spec) {
+    if (!spec.startsWith("class:")) {
+      return Strategies.parse(spec) ;
+    }
+    String className = spec.substring("class:".length()).trim() ;
+    Object strategy ;
+    try {
+      strategy = Class.forName(className).getDeclaredConstructor().newInstance() ;
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalArgumentException("can't create strategy class " + className + ": " + e) ;
+    }
+    if (!(strategy instanceof Strategy)) {
+      throw new IllegalArgumentException(className + " is not a " + Strategy.class.getName()) ;
+    }
+    return (Strategy) strategy ;
+  }
+
+  // number_of_turns from config.properties, as the GamePlayWorker reads it
+  private static int configuredTurns() {
+    Properties prop = new Properties() ;
+    try (InputStream input = new FileInputStream(CONFIG_FILE)) {
+      prop.load(input) ;
+    } catch (IOException e) {
+      // no config file: the server's default
+    }
+    return Integer.parseInt(prop.getProperty("number_of_turns", "20")) ;
+  }
+}
@@ -0,0 +1,252 @@
+package com.chanceit.timer;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * A hierarchical hashed timing wheel (Varghese & Lauck; the layout of the old Linux timer wheel): one thread ticks
+ * every tickMillis and fires whatever is due, however many timers are pending.
+ *
+ *   level 0   256 slots of 1 tick          timers due within 256 ticks
+ *   level 1   256 slots of 256 ticks       ... within 2^16 ticks
+ *   level 2   256 slots of 2^16 ticks      ... within 2^24 ticks
+ *   level 3   256 slots of 2^24 ticks      the rest, up to 2^30 ticks
+ *
+ * A timer goes into the slot of its deadline at the lowest level that reaches it.  Each time a level wraps, the next
+ * level's current slot is cascaded down into the levels below, so every timer moves at most three times before it
+ * fires.  Scheduling and cancelling are O(1).
+ *
+ * Timers are not objects: a timer is an index into parallel arrays (its deadline, its neighbours in the slot's doubly
+ * linked list, a generation and its Task), about 24 bytes each, and freed indexes are reused, so scheduling does not
+ * allocate and a million pending timers cost about 24 MB.  schedule() returns a handle, the index and its generation,
+ * which cancel() checks so a handle whose timer has fired (and whose index has been reused) cancels nothing.
+ *
+ * A timer fires at or after its deadline, within one tick.  Tasks run on the ticking thread, one after another, and
+ * must only hand the work on (signal a waiting thread, queue an event): a slow task delays every timer behind it.
+ */
+public final class TimingWheel implements Runnable {
+
+  public interface Task {
+    // handle is what schedule() returned for this timer
+    void expire(long handle) ;
+  }
+
+  public static final long NONE = 0 ;  // never a handle; for "no timer"
+
+  private static final int SLOT_BITS = 8 ;
+  private static final int SLOTS = 1 << SLOT_BITS ;
+  private static final int SLOT_MASK = SLOTS - 1 ;
+  private static final int LEVELS = 4 ;
+  private static final int MAX_TICKS = 1 << 30 ;   // deadlines are ints, compared by difference
+  private static final int NIL = -1 ;
+
+  private final long tickNanos ;
+  private final long startNanos = System.nanoTime() ;
+  private final int[] heads = new int[LEVELS * SLOTS] ;
+
+  // the timers; guarded by this
+  private int[] deadline ;   // in ticks since start, low 32 bits
+  private int[] next ;       // in its slot, or in the free list
+  private int[] prev ;
+  private int[] generation ;
+  private int[] slot ;       // which of heads; NIL when free
+  private Task[] tasks ;
+  private int used ;         // indexes below this have been handed out at least once
+  private int free = NIL ;
+  private int pending ;
+  private long now ;         // ticks fired so far
+
+  // the timers due this tick, collected under the lock and fired outside it; ticking thread only
+  private Task[] firing = new Task[64] ;
+  private long[] firingHandles = new long[64] ;
+
+  private final String name ;
+  private volatile Thread thread ;
+  private volatile boolean run = true ;
+
+  public TimingWheel(long tickMillis, int initialCapacity, String name) {
+    if (tickMillis < 1) {
+      throw new IllegalArgumentException("tickMillis must be at least 1: " + tickMillis) ;
+    }
+    this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis) ;
+    this.name = name ;
+    Arrays.fill(heads, NIL) ;
+    allocate(Math.max(16, initialCapacity)) ;
+  }
+
+  // start the ticking thread (a daemon)
+  public void start() {
+    Thread t = new Thread(this, name) ;
+    t.setDaemon(true) ;
+    thread = t ;
+    t.start() ;
+  }
+
+  public void shutdown() {
+    run = false ;
+    LockSupport.unpark(thread) ;
+  }
+
+  public long getTickMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(tickNanos) ;
+  }
+
+  public synchronized int getPending() {
+    return pending ;
+  }
+
+  /*
+   * call task.expire() once delayMillis have passed.  Returns the timer's handle, for cancel().
+   */
+  public long schedule(Task task, long delayMillis) {
+    // round up: never early
+    long due = System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis)) ;
+    long dueTick = (due + tickNanos - 1) / tickNanos ;
+    synchronized (this) {
+      int i = free ;
+      if (i != NIL) {
+        free = next[i] ;
+      } else {
+        if (used == tasks.length) {
+          allocate(tasks.length * 2) ;
+        }
+        i = used++ ;
+      }
+      long ticks = Math.min(Math.max(1, dueTick - now), MAX_TICKS) ;
+      deadline[i] = (int) (now + ticks) ;
+      tasks[i] = task ;
+      link(i) ;
+      pending++ ;
+      return handle(i) ;
+    }
+  }
+
+  /*
+   * true if the timer was pending and now will not fire; false if it has fired (or is firing) or was cancelled.
+   */
+  public synchronized boolean cancel(long handle) {
+    if (handle == NONE) {
+      return false ;
+    }
+    int i = (int) handle ;
+    if (i < 0 || i >= used || generation[i] != (int) (handle >>> 32) || slot[i] == NIL) {
+      return false ;
+    }
+    unlink(i) ;
+    release(i) ;
+    return true ;
+  }
+
+  @Override
+  public void run() {
+    while (run) {
+      long wait = startNanos + (now + 1) * tickNanos - System.nanoTime() ;  // `now` only changes on this thread
+      if (wait > 0) {
+        LockSupport.parkNanos(this, wait) ;
+        continue ;
+      }
+      int n = tick() ;
+      for (int k = 0; k < n; k++) {
+        Task task = firing[k] ;
+        firing[k] = null ;
+        try {
+          task.expire(firingHandles[k]) ;
+        } catch (Throwable t) {
+          t.printStackTrace() ;  // one broken task must not stop the clock
+        }
+      }
+    }
+  }
+
+  // advance one tick and collect what is due into firing; returns how many
+  private synchronized int tick() {
+    long t = ++now ;
+    // cascade: when a level wraps, pull the next level's current slot down into the levels below
+    for (int level = 1; level < LEVELS; level++) {
+      if (((t >>> ((level - 1) * SLOT_BITS)) & SLOT_MASK) != 0) {
+        break ;
+      }
+      int s = level * SLOTS + (int) ((t >>> (level * SLOT_BITS)) & SLOT_MASK) ;
+      int i = heads[s] ;
+      heads[s] = NIL ;
+      while (i != NIL) {
+        int after = next[i] ;
+        link(i) ;
+        i = after ;
+      }
+    }
+
+    int s = (int) (t & SLOT_MASK) ;
+    int n = 0 ;
+    int i = heads[s] ;
+    heads[s] = NIL ;
+    while (i != NIL) {
+      int after = next[i] ;
+      if (n == firing.length) {
+        firing = Arrays.copyOf(firing, n * 2) ;
+        firingHandles = Arrays.copyOf(firingHandles, n * 2) ;
+      }
+      firing[n] = tasks[i] ;
+      firingHandles[n] = handle(i) ;
+      n++ ;
+      release(i) ;
+      i = after ;
+    }
+    return n ;
+  }
+
+  // put timer i in the slot for its deadline
+  private void link(int i) {
+    int ticks = deadline[i] - (int) now ;
+    int level = (ticks < (1 << SLOT_BITS)) ? 0 : (ticks < (1 << 2 * SLOT_BITS)) ? 1 : (ticks < (1 << 3 * SLOT_BITS)) ? 2 : 3 ;
+    int s = level * SLOTS + ((deadline[i] >>> (level * SLOT_BITS)) & SLOT_MASK) ;
+    int head = heads[s] ;
+    next[i] = head ;
+    prev[i] = NIL ;
+    if (head != NIL) {
+      prev[head] = i ;
+    }
+    heads[s] = i ;
+    slot[i] = s ;
+  }
+
+  private void unlink(int i) {
+    if (prev[i] != NIL) {
+      next[prev[i]] = next[i] ;
+    } else {
+      heads[slot[i]] = next[i] ;
+    }
+    if (next[i] != NIL) {
+      prev[next[i]] = prev[i] ;
+    }
+  }
+
+  // back on the free list, with a new generation so old handles no longer match
+  private void release(int i) {
+    tasks[i] = null ;
+    slot[i] = NIL ;
+    if (++generation[i] == 0) {
+      generation[i] = 1 ;
+    }
+    next[i] = free ;
+    free = i ;
+    pending-- ;
+  }
+
+  private long handle(int i) {
+    return ((long) generation[i] << 32) | (i & 0xffffffffL) ;
+  }
+
+  private void allocate(int capacity) {
+    int old = (tasks == null) ? 0 : tasks.length ;
+    deadline = (old == 0) ? new int[capacity] : Arrays.copyOf(deadline, capacity) ;
+    next = (old == 0) ? new int[capacity] : Arrays.copyOf(next, capacity) ;
+    prev = (old == 0) ? new int[capacity] : Arrays.copyOf(prev, capacity) ;
+    slot = (old == 0) ? new int[capacity] : Arrays.copyOf(slot, capacity) ;
+    generation = (old == 0) ? new int[capacity] : Arrays.copyOf(generation, capacity) ;
+    tasks = (old == 0) ? new Task[capacity] : Arrays.copyOf(tasks, capacity) ;
+    Arrays.fill(generation, old, capacity, 1) ;
+    Arrays.fill(slot, old, capacity, NIL) ;
+  }
+}
@@ -0,0 +1,11 @@
+#!/bin/bash
+#
+# Reads the roll journal (see com/chanceit/journal/JournalReader.java for the settings).
+#
+#   ./journal.sh game=42
+#   ./journal.sh follow=true
+
+echo "compiling..."
+javac com/chanceit/journal/*.java || exit 1
+
+java com.chanceit.journal.JournalReader "$@"
@@ -0,0 +1,28 @@
+#!/bin/bash
+#
+# Load generator for ChanceItServer2 (see loadgen/com/chanceit/loadgen/LoadGenerator.java for every setting).
+#
+#   ./loadgen.sh bots=2000 duration=60 strategy=mix goodbye_rate=0.1 hgrm=run1
+#
+# the HdrHistogram jar is fetched from Maven Central into loadgen/lib the first time.
+
+HDR_VERSION=2.1.12
+LIB=loadgen/lib
+CLASSES=loadgen/classes
+MAVEN=https://repo1.maven.org/maven2
+
+mkdir -p $LIB
+if [ ! -f "$LIB/HdrHistogram-$HDR_VERSION.jar" ]; then
+  echo "fetching HdrHistogram-$HDR_VERSION.jar..."
+  curl -sSfL -o "$LIB/HdrHistogram-$HDR_VERSION.jar" "$MAVEN/org/hdrhistogram/HdrHistogram/$HDR_VERSION/HdrHistogram-$HDR_VERSION.jar" || exit 1
+fi
+
+echo "compiling..."
+rm -rf $CLASSES
+mkdir -p $CLASSES
+javac -encoding UTF-8 -cp "$LIB/*" -d $CLASSES loadgen/com/chanceit/loadgen/*.java || exit 1
+
+# thousands of connections need thousands of file descriptors
+ulimit -n 65536 2>/dev/null || ulimit -n $(ulimit -Hn)
+
+java -cp "$CLASSES:$LIB/*" com.chanceit.loadgen.LoadGenerator "$@"
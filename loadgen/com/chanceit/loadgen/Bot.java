@@ -0,0 +1,287 @@
+package com.chanceit.loadgen;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * One simulated player.  Until the run's deadline it keeps connecting, registering and playing games:
+ *
+ *   HELLO:bot-<id>-<n>  ->  IS IT ME YOU'RE LOOKIN FOR?         (HELLO:bot-<id>-<n>;binary with protocol=binary)
+ *   (maybe) wait up to goodbye_delay ms, then GOODBYE:bot-<id>-<n>; the server closes the socket if we were withdrawn
+ *   Opponent: ...  ->  answer each "chance-it? [Y/n]" with the strategy  ->  Final Score: ...
+ *
+ * and then reconnects after reconnect_delay ms; a server that answers SERVER BUSY, RETRY IN N s is tried again after
+ * N seconds instead.  With same_name=true every game is HELLO:bot-<id>.  With protocol=binary the game arrives as binary frames instead of
+ * text, and the bot reads the same fields from them.  With policy=SPEC the bot answers its first prompt of each game
+ * with policy:game:SPEC and the server plays the rest of its decisions (see com.chanceit.TurnPolicies).
+ */
+class Bot implements Runnable {
+
+  private static final String HELLO_RESPONSE_MESSAGE = "IS IT ME YOU'RE LOOKIN FOR?" ;
+  private static final String OPPONENT = "Opponent: " ;
+  private static final String TURN_STARTING_SCORE = "Turn Starting Score: " ;
+  private static final String ROLL_NUMBER = "Roll#: " ;
+  private static final String RUNNING_TURN_SCORE = "Running Turn Score: " ;
+  private static final String PROMPT = "chance-it?" ;
+  private static final String FINAL_SCORE = "Final Score:" ;
+  private static final String BINARY_HELLO_SUFFIX = ";binary" ;
+  private static final String GAME_POLICY = "policy:game:" ;
+  private static final String SERVER_BUSY = "SERVER BUSY, RETRY IN " ;
+
+  private final int id ;
+  private final LoadGenerator.Settings settings ;
+  private final LoadStats stats ;
+  private final long deadlineNanos ;
+  private final Random random ;
+  private boolean policySent ;  // this game's decisions are the server's
+  private long retryAfter ;     // ms the server asked us to wait, 0 if it didn't
+
+  Bot(int id, LoadGenerator.Settings settings, LoadStats stats, long deadlineNanos) {
+    this.id = id ;
+    this.settings = settings ;
+    this.stats = stats ;
+    this.deadlineNanos = deadlineNanos ;
+    this.random = new Random(settings.seed + id) ;
+  }
+
+  @Override
+  public void run() {
+    stats.activeBots.increment() ;
+    try {
+      for (int session = 0; System.nanoTime() < deadlineNanos; session++) {
+        try {
+          play(settings.sameName ? "bot-" + id : "bot-" + id + "-" + session) ;
+        } catch (IOException e) {
+          stats.disconnects.increment() ;
+        }
+        if (retryAfter > 0) {
+          Thread.sleep(Math.max(0, Math.min(retryAfter, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime())))) ;
+          retryAfter = 0 ;
+        } else if (settings.reconnectDelay > 0) {
+          Thread.sleep(settings.reconnectDelay) ;
+        }
+      }
+    } catch (InterruptedException e) {
+      // the run is over
+    } finally {
+      stats.activeBots.decrement() ;
+    }
+  }
+
+  private void play(String name) throws IOException, InterruptedException {
+    Strategy strategy = Strategy.parse(settings.strategy, random) ;
+    long connectStart = System.nanoTime() ;
+
+    Socket socket = new Socket() ;
+    try {
+      try {
+        socket.connect(new InetSocketAddress(settings.host, settings.port), settings.connectTimeout) ;
+      } catch (IOException e) {
+        stats.connectFailures.increment() ;
+        return ;
+      }
+      stats.connects.increment() ;
+      socket.setTcpNoDelay(true) ;
+      socket.setSoTimeout(settings.readTimeout) ;
+      InputStream input = new BufferedInputStream(socket.getInputStream()) ;
+      OutputStream output = socket.getOutputStream() ;
+
+      send(output, "HELLO:" + name + (settings.binary ? BINARY_HELLO_SUFFIX : "")) ;
+      String line = readLine(input) ;
+      if (line != null && line.startsWith(SERVER_BUSY)) {
+        stats.busy.increment() ;
+        retryAfter = retryAfterMillis(line) ;
+        return ;
+      }
+      if (line == null || !line.startsWith(HELLO_RESPONSE_MESSAGE)) {
+        stats.disconnects.increment() ;
+        return ;
+      }
+
+      // churn: some bots give up while they are still waiting for an opponent
+      if (random.nextDouble() < settings.goodbyeRate) {
+        socket.setSoTimeout(1 + random.nextInt(Math.max(1, settings.goodbyeDelay))) ;
+        try {
+          peek(input) ;
+        } catch (SocketTimeoutException e) {
+          send(output, "GOODBYE:" + name) ;
+          stats.goodbyesSent.increment() ;
+          socket.setSoTimeout(settings.readTimeout) ;
+          if (peek(input) < 0) {
+            stats.goodbyesAccepted.increment() ;  // withdrawn: the server closed the connection
+            return ;
+          }
+          // too late, we had already been paired; play the game
+        }
+        socket.setSoTimeout(settings.readTimeout) ;
+      }
+
+      if (settings.binary ? playBinary(strategy, input, output, connectStart) : playText(strategy, input, output, connectStart)) {
+        stats.gamesPlayed.increment() ;
+      } else if (retryAfter > 0) {
+        stats.busy.increment() ;  // paired, but the server had no room for the game
+      } else {
+        stats.disconnects.increment() ;  // the connection ended without a final score
+      }
+
+    } finally {
+      try { socket.close(); } catch (IOException e) {}
+    }
+  }
+
+  // "SERVER BUSY, RETRY IN N s"
+  private static long retryAfterMillis(String line) {
+    try {
+      return 1000L * Integer.parseInt(line.substring(SERVER_BUSY.length(), line.indexOf(' ', SERVER_BUSY.length()))) ;
+    } catch (RuntimeException e) {
+      return 1000 ;
+    }
+  }
+
+  // true once the game's final score arrives
+  private boolean playText(Strategy strategy, InputStream input, OutputStream output, long connectStart) throws IOException, InterruptedException {
+    long gameStart = 0 ;
+    long answeredAt = 0 ;
+    int rollNumber = 0, turnTotal = 0, myScore = 0, opponentScore = 0 ;
+
+    String line ;
+    while ((line = readLine(input)) != null) {
+      if (answeredAt != 0) {
+        stats.response.record(answeredAt) ;
+        answeredAt = 0 ;
+      }
+
+      if (line.startsWith(OPPONENT)) {
+        stats.paired.record(connectStart) ;
+        gameStart = System.nanoTime() ;
+        policySent = false ;
+      } else if (line.startsWith(TURN_STARTING_SCORE)) {
+        String[] scores = line.substring(TURN_STARTING_SCORE.length()).split("-") ;
+        myScore = Integer.parseInt(scores[0].trim()) ;
+        opponentScore = Integer.parseInt(scores[1].trim()) ;
+      } else if (line.startsWith(ROLL_NUMBER)) {
+        rollNumber = Integer.parseInt(line.substring(ROLL_NUMBER.length()).trim()) ;
+      } else if (line.startsWith(RUNNING_TURN_SCORE)) {
+        turnTotal = Integer.parseInt(line.substring(RUNNING_TURN_SCORE.length()).trim()) ;
+      } else if (line.startsWith(PROMPT)) {
+        answer(strategy, output, rollNumber, turnTotal, myScore, opponentScore) ;
+        answeredAt = System.nanoTime() ;
+      } else if (line.startsWith(FINAL_SCORE)) {
+        if (gameStart != 0) {
+          stats.game.record(gameStart) ;
+        }
+        return true ;
+      } else if (line.startsWith(SERVER_BUSY)) {
+        retryAfter = retryAfterMillis(line) ;
+        return false ;
+      }
+    }
+    return false ;
+  }
+
+  // the same game over the binary protocol (see com.chanceit.BinaryMessageEncoder for the frames)
+  private boolean playBinary(Strategy strategy, InputStream input, OutputStream output, long connectStart) throws IOException, InterruptedException {
+    DataInputStream frames = new DataInputStream(input) ;
+    long gameStart = 0 ;
+    long answeredAt = 0 ;
+    int rollNumber = 0, turnTotal = 0, myScore = 0, opponentScore = 0 ;
+
+    try {
+      while (true) {
+        int type = frames.readUnsignedByte() ;
+        if (answeredAt != 0) {
+          stats.response.record(answeredAt) ;
+          answeredAt = 0 ;
+        }
+
+        switch (type) {
+          case 'S':
+            retryAfter = retryAfterMillis("S" + readLine(input)) ;  // SERVER BUSY, RETRY IN N s
+            return false ;
+          case 'O':
+            frames.skipBytes(frames.readUnsignedByte()) ;
+            stats.paired.record(connectStart) ;
+            gameStart = System.nanoTime() ;
+            policySent = false ;
+            break ;
+          case 'F':
+            frames.skipBytes(3) ;
+            break ;
+          case 'R':
+          case 'B':
+            frames.readUnsignedShort() ;                  // turn#
+            rollNumber = frames.readUnsignedShort() ;
+            frames.skipBytes(2) ;                         // the dice
+            turnTotal = frames.readUnsignedShort() ;
+            myScore = frames.readUnsignedShort() ;
+            opponentScore = frames.readUnsignedShort() ;
+            break ;
+          case 'P':
+            answer(strategy, output, rollNumber, turnTotal, myScore, opponentScore) ;
+            answeredAt = System.nanoTime() ;
+            break ;
+          case 'E':
+            frames.skipBytes(6) ;
+            if (gameStart != 0) {
+              stats.game.record(gameStart) ;
+            }
+            return true ;
+          default:
+            throw new IOException("unknown frame " + type) ;
+        }
+      }
+    } catch (EOFException e) {
+      return false ;
+    }
+  }
+
+  private void answer(Strategy strategy, OutputStream output, int rollNumber, int turnTotal, int myScore, int opponentScore) throws IOException, InterruptedException {
+    if (settings.thinkTime > 0) {
+      Thread.sleep(settings.thinkTime) ;
+    }
+    if (settings.policy != null && !policySent) {
+      send(output, GAME_POLICY + settings.policy) ;
+      policySent = true ;
+      return ;
+    }
+    send(output, strategy.chanceIt(rollNumber, turnTotal, myScore, opponentScore) ? "Y" : "n") ;
+  }
+
+  // the next byte without taking it; -1 at end of stream
+  private static int peek(InputStream input) throws IOException {
+    input.mark(1) ;
+    int b = input.read() ;
+    input.reset() ;
+    return b ;
+  }
+
+  // a line of text; null at end of stream
+  private static String readLine(InputStream input) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream(64) ;
+    int b ;
+    while ((b = input.read()) != '\n') {
+      if (b < 0) {
+        return (line.size() == 0) ? null : line.toString("UTF-8") ;
+      }
+      line.write(b) ;
+    }
+    String text = line.toString("UTF-8") ;
+    return text.endsWith("\r") ? text.substring(0, text.length() - 1) : text ;
+  }
+
+  private static void send(OutputStream output, String message) throws IOException {
+    output.write((message + "\n").getBytes(StandardCharsets.UTF_8)) ;
+    output.flush() ;
+  }
+}
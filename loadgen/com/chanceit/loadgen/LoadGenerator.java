@@ -0,0 +1,190 @@
+package com.chanceit.loadgen;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Load generator for ChanceItServer2: runs `bots` concurrent Bots against the server for `duration` seconds and
+ * reports games/sec and HdrHistogram latencies.
+ *
+ *   ./loadgen.sh bots=2000 duration=60 strategy=mix goodbye_rate=0.1
+ *
+ * Settings are key=value arguments, optionally on top of a properties file given with config=<file>:
+ *
+ *   host, port          the server                                                 (localhost, 1099)
+ *   bots                concurrent bot connections                                 (1000)
+ *   duration            seconds to run; bots finish their current game afterwards  (60)
+ *   ramp_up             seconds over which the bots are started                    (0 == all at once)
+ *   strategy            see Strategy                                               (threshold:20)
+ *   goodbye_rate        fraction of registrations that send GOODBYE while queued   (0.05)
+ *   goodbye_delay       max milliseconds to wait in the queue before GOODBYE       (2000)
+ *   protocol            text, or binary (HELLO:NAME;binary, see com.chanceit.BinaryMessageEncoder)  (text)
+ *   policy              answer the first prompt of each game with policy:game:<policy>, e.g. stop:20, and let the
+ *                       server take the rest of the decisions (see com.chanceit.TurnPolicies)   (none)
+ *   think_time          milliseconds before answering each prompt                  (0)
+ *   reconnect_delay     milliseconds between a bot's games                         (0)
+ *   connect_timeout     milliseconds                                               (10000)
+ *   read_timeout        milliseconds without a line from the server before a bot gives up  (120000)
+ *   report_interval     seconds between progress lines                             (5)
+ *   threads             virtual (Java 21+, falls back to platform) or platform     (virtual)
+ *   seed                base seed for the bots' random choices                     (1)
+ *   same_name           true: a bot registers every game as bot-<id>, so the server's ratings follow it
+ *                       (matchmaking=rating)                                         (false)
+ *   hgrm                write <hgrm>-paired.hgrm, <hgrm>-response.hgrm and <hgrm>-game.hgrm at the end
+ */
+public class LoadGenerator {
+
+  static final class Settings {
+    String host ;
+    int port ;
+    int bots ;
+    int duration ;
+    int rampUp ;
+    String strategy ;
+    boolean binary ;
+    String policy ;
+    double goodbyeRate ;
+    int goodbyeDelay ;
+    int thinkTime ;
+    int reconnectDelay ;
+    int connectTimeout ;
+    int readTimeout ;
+    int reportInterval ;
+    String threads ;
+    long seed ;
+    boolean sameName ;
+    String hgrm ;
+
+    Settings(Properties prop) {
+      host = prop.getProperty("host", "localhost") ;
+      port = Integer.parseInt(prop.getProperty("port", "1099")) ;
+      bots = Integer.parseInt(prop.getProperty("bots", "1000")) ;
+      duration = Integer.parseInt(prop.getProperty("duration", "60")) ;
+      rampUp = Integer.parseInt(prop.getProperty("ramp_up", "0")) ;
+      strategy = prop.getProperty("strategy", "threshold:20") ;
+      binary = "binary".equals(prop.getProperty("protocol", "text")) ;
+      policy = prop.getProperty("policy") ;
+      goodbyeRate = Double.parseDouble(prop.getProperty("goodbye_rate", "0.05")) ;
+      goodbyeDelay = Integer.parseInt(prop.getProperty("goodbye_delay", "2000")) ;
+      thinkTime = Integer.parseInt(prop.getProperty("think_time", "0")) ;
+      reconnectDelay = Integer.parseInt(prop.getProperty("reconnect_delay", "0")) ;
+      connectTimeout = Integer.parseInt(prop.getProperty("connect_timeout", "10000")) ;
+      readTimeout = Integer.parseInt(prop.getProperty("read_timeout", "120000")) ;
+      reportInterval = Integer.parseInt(prop.getProperty("report_interval", "5")) ;
+      threads = prop.getProperty("threads", "virtual") ;
+      seed = Long.parseLong(prop.getProperty("seed", "1")) ;
+      sameName = Boolean.parseBoolean(prop.getProperty("same_name", "false")) ;
+      hgrm = prop.getProperty("hgrm") ;
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+
+    Properties prop = new Properties() ;
+    for (String arg : args) {
+      int eq = arg.indexOf('=') ;
+      if (eq < 0) {
+        System.out.println("usage: LoadGenerator [config=<file>] [key=value ...]") ;
+        System.exit(1) ;
+      }
+      prop.setProperty(arg.substring(0, eq).trim(), arg.substring(eq + 1).trim()) ;
+    }
+    if (prop.getProperty("config") != null) {
+      Properties file = new Properties() ;
+      try (InputStream input = new FileInputStream(prop.getProperty("config"))) {
+        file.load(input) ;
+      }
+      file.putAll(prop) ;  // the command line wins
+      prop = file ;
+    }
+    Settings settings = new Settings(prop) ;
+    Strategy.parse(settings.strategy, new java.util.Random()) ;  // fail fast on a bad strategy
+
+    LoadStats stats = new LoadStats() ;
+    long start = System.nanoTime() ;
+    long deadline = start + TimeUnit.SECONDS.toNanos(settings.duration) ;
+    boolean virtual = "virtual".equals(settings.threads) && virtualThreadsAvailable() ;
+
+    System.out.println(String.format("LoadGenerator: %d bots -> %s:%d for %d s, strategy %s, %s protocol, goodbye rate %.2f, %s threads",
+        settings.bots, settings.host, settings.port, settings.duration,
+        settings.policy != null ? "server policy " + settings.policy : settings.strategy, settings.binary ? "binary" : "text",
+        settings.goodbyeRate, virtual ? "virtual" : "platform")) ;
+
+    // report progress from a daemon thread while the bots start and run
+    final LoadStats reporterStats = stats ;
+    final int reportInterval = Math.max(1, settings.reportInterval) ;
+    Thread reporter = new Thread(new Runnable() {
+      public void run() {
+        try {
+          while (true) {
+            Thread.sleep(reportInterval * 1000L) ;
+            synchronized (reporterStats) {
+              reporterStats.printInterval() ;
+            }
+          }
+        } catch (InterruptedException e) {}
+      }
+    }, "LoadReporter") ;
+    reporter.setDaemon(true) ;
+    reporter.start() ;
+
+    List<Thread> threads = new ArrayList<Thread>(settings.bots) ;
+    long rampNanos = TimeUnit.SECONDS.toNanos(settings.rampUp) ;
+    for (int i = 0; i < settings.bots; i++) {
+      if (rampNanos > 0) {
+        long startAt = start + rampNanos * i / settings.bots ;
+        long wait = startAt - System.nanoTime() ;
+        if (wait > 0) {
+          TimeUnit.NANOSECONDS.sleep(wait) ;
+        }
+      }
+      Thread thread = newThread(new Bot(i, settings, stats, deadline), "bot-" + i, virtual) ;
+      thread.start() ;
+      threads.add(thread) ;
+    }
+
+    // let games in progress finish; bots still waiting for an opponent are abandoned after read_timeout
+    long giveUp = deadline + TimeUnit.MILLISECONDS.toNanos(settings.readTimeout) ;
+    for (Thread thread : threads) {
+      long left = TimeUnit.NANOSECONDS.toMillis(giveUp - System.nanoTime()) ;
+      if (left <= 0) {
+        break ;
+      }
+      thread.join(left) ;
+    }
+
+    reporter.interrupt() ;
+    synchronized (stats) {
+      stats.printSummary(settings.hgrm) ;
+    }
+    System.exit(0) ;  // abandoned bots may still be blocked in a read
+  }
+
+  private static boolean virtualThreadsAvailable() {
+    try {
+      Thread.class.getMethod("ofVirtual") ;
+      return true ;
+    } catch (NoSuchMethodException e) {
+      return false ;
+    }
+  }
+
+  private static Thread newThread(Runnable bot, String name, boolean virtual) throws Exception {
+    if (virtual) {
+      // Thread.ofVirtual().name(name).unstarted(bot), looked up reflectively so this still compiles on Java 8+
+      Class<?> builderType = Class.forName("java.lang.Thread$Builder") ;
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null) ;
+      builder = builderType.getMethod("name", String.class).invoke(builder, name) ;
+      return (Thread) builderType.getMethod("unstarted", Runnable.class).invoke(builder, bot) ;
+    }
+    // thousands of bots: keep the platform thread stacks small
+    Thread thread = new Thread(null, bot, name, 256 * 1024) ;
+    thread.setDaemon(true) ;
+    return thread ;
+  }
+}
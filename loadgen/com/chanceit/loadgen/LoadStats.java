@@ -0,0 +1,118 @@
+package com.chanceit.loadgen;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/*
+ * What the bots measure, shared by all of them.
+ *
+ * Latencies are recorded in microseconds into HdrHistogram Recorders, so bots never contend on a lock.  The reporter
+ * thread takes an interval histogram from each Recorder every report_interval and adds it to the run's totals.
+ *
+ *   paired    : connect() to the "Opponent:" line (includes the server's fixed 1 second opponent notify delay)
+ *   response  : sending an answer to a prompt to the server's next line (includes the server's roll_time)
+ *   game      : "Opponent:" to "Final Score:"
+ */
+class LoadStats {
+
+  private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1) ;
+
+  static final class Latency {
+    final String name ;
+    final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_MICROS, 3) ;
+    final Histogram total = new Histogram(HIGHEST_TRACKABLE_MICROS, 3) ;  // reporter thread only
+    private Histogram interval ;
+
+    Latency(String name) {
+      this.name = name ;
+    }
+
+    void record(long startNanos) {
+      long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos) ;
+      recorder.recordValue(Math.min(micros, HIGHEST_TRACKABLE_MICROS)) ;
+    }
+
+    // reporter thread: roll the interval over into the totals
+    Histogram sample() {
+      interval = recorder.getIntervalHistogram(interval) ;
+      total.add(interval) ;
+      return interval ;
+    }
+  }
+
+  final Latency paired = new Latency("paired") ;
+  final Latency response = new Latency("response") ;
+  final Latency game = new Latency("game") ;
+
+  final LongAdder connects = new LongAdder() ;
+  final LongAdder connectFailures = new LongAdder() ;
+  final LongAdder gamesPlayed = new LongAdder() ;       // per bot, so two per game
+  final LongAdder goodbyesSent = new LongAdder() ;
+  final LongAdder goodbyesAccepted = new LongAdder() ;  // withdrawn before being paired
+  final LongAdder disconnects = new LongAdder() ;       // connection lost before "Final Score:"
+  final LongAdder busy = new LongAdder() ;              // turned away with SERVER BUSY, RETRY IN N s
+  final LongAdder activeBots = new LongAdder() ;
+
+  private long lastGames = 0 ;
+  private long lastReportNanos = System.nanoTime() ;
+  private final long startNanos = System.nanoTime() ;
+
+  // reporter thread
+  void printInterval() {
+    long now = System.nanoTime() ;
+    long games = gamesPlayed.sum() / 2 ;
+    double seconds = (now - lastReportNanos) / 1e9 ;
+    Histogram p = paired.sample(), r = response.sample(), g = game.sample() ;
+
+    System.out.println(String.format(
+        "[%4ds] bots: %d, games/sec: %.1f, games: %d, paired p50/p99: %s/%s ms, response p99: %s ms, game p50: %s ms, goodbyes: %d/%d, disconnects: %d, busy: %d, connect failures: %d",
+        TimeUnit.NANOSECONDS.toSeconds(now - startNanos),
+        activeBots.sum(),
+        (games - lastGames) / seconds,
+        games,
+        millis(p, 50), millis(p, 99), millis(r, 99), millis(g, 50),
+        goodbyesAccepted.sum(), goodbyesSent.sum(),
+        disconnects.sum(),
+        busy.sum(),
+        connectFailures.sum())) ;
+
+    lastGames = games ;
+    lastReportNanos = now ;
+  }
+
+  // reporter thread, after the bots have finished
+  void printSummary(String hgrmPrefix) throws IOException {
+    printInterval() ;
+    double seconds = (System.nanoTime() - startNanos) / 1e9 ;
+    long games = gamesPlayed.sum() / 2 ;
+
+    System.out.println("--------------------------------") ;
+    System.out.println(String.format("games: %d in %.1f s, %.1f games/sec", games, seconds, games / seconds)) ;
+    System.out.println(String.format("connects: %d, connect failures: %d, goodbyes accepted/sent: %d/%d, disconnects: %d, busy: %d",
+        connects.sum(), connectFailures.sum(), goodbyesAccepted.sum(), goodbyesSent.sum(), disconnects.sum(), busy.sum())) ;
+    System.out.println(String.format("%-10s %10s %10s %10s %10s %10s %10s %10s", "(ms)", "count", "p50", "p90", "p99", "p99.9", "max", "mean")) ;
+    for (Latency latency : new Latency[] { paired, response, game }) {
+      Histogram h = latency.total ;
+      System.out.println(String.format("%-10s %10d %10s %10s %10s %10s %10s %10.1f",
+          latency.name, h.getTotalCount(),
+          millis(h, 50), millis(h, 90), millis(h, 99), millis(h, 99.9),
+          String.format("%.1f", h.getMaxValue() / 1000.0), h.getMean() / 1000.0)) ;
+
+      if (hgrmPrefix != null) {
+        // the full percentile distribution, for plotting or comparing runs
+        try (PrintStream out = new PrintStream(new FileOutputStream(hgrmPrefix + "-" + latency.name + ".hgrm"))) {
+          h.outputPercentileDistribution(out, 1000.0) ;
+        }
+      }
+    }
+  }
+
+  private static String millis(Histogram h, double percentile) {
+    return (h.getTotalCount() == 0) ? "-" : String.format("%.1f", h.getValueAtPercentile(percentile) / 1000.0) ;
+  }
+}
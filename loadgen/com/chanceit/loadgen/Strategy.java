@@ -0,0 +1,52 @@
+package com.chanceit.loadgen;
+
+import java.util.Random;
+
+/*
+ * How a bot answers "chance-it? [Y/n]".
+ *
+ *   threshold:N  keep rolling until the turn is worth at least N           (default threshold:20)
+ *   rolls:N      roll N more times after the first roll, then stop
+ *   random:P     chance it with probability P (0.0 - 1.0)
+ *   mix          each game, pick one of threshold:10..30, rolls:1..4 or random:0.3..0.8 at random
+ */
+interface Strategy {
+
+  // true == "Y" (roll again), false == "n" (bank the turn)
+  boolean chanceIt(int rollNumber, int turnTotal, int myScore, int opponentScore) ;
+
+  static Strategy parse(String spec, final Random random) {
+    String[] parts = spec.split(":", 2) ;
+    String kind = parts[0].trim() ;
+
+    if ("threshold".equals(kind)) {
+      final int n = Integer.parseInt(parts[1].trim()) ;
+      return new Strategy() {
+        public boolean chanceIt(int rollNumber, int turnTotal, int myScore, int opponentScore) { return turnTotal < n ; }
+        public String toString() { return "threshold:" + n ; }
+      } ;
+    }
+    if ("rolls".equals(kind)) {
+      final int n = Integer.parseInt(parts[1].trim()) ;
+      return new Strategy() {
+        public boolean chanceIt(int rollNumber, int turnTotal, int myScore, int opponentScore) { return rollNumber <= n ; }
+        public String toString() { return "rolls:" + n ; }
+      } ;
+    }
+    if ("random".equals(kind)) {
+      final double p = Double.parseDouble(parts[1].trim()) ;
+      return new Strategy() {
+        public boolean chanceIt(int rollNumber, int turnTotal, int myScore, int opponentScore) { return random.nextDouble() < p ; }
+        public String toString() { return "random:" + p ; }
+      } ;
+    }
+    if ("mix".equals(kind)) {
+      switch (random.nextInt(3)) {
+        case 0  : return parse("threshold:" + (10 + random.nextInt(21)), random) ;
+        case 1  : return parse("rolls:" + (1 + random.nextInt(4)), random) ;
+        default : return parse("random:" + (0.3 + random.nextInt(6) / 10.0), random) ;
+      }
+    }
+    throw new IllegalArgumentException("unknown strategy: " + spec) ;
+  }
+}
@@ -1,9 +1,27 @@
 #!/bin/bash
+#
+# the database jars (c3p0 and the embedded H2 database, for persist=true) are fetched from Maven Central into lib
+# the first time.  For MySQL add its JDBC driver jar to lib.
+
+LIB=lib
+MAVEN=https://repo1.maven.org/maven2
+
+fetch() {
+  if [ ! -f "$LIB/$2-$3.jar" ]; then
+    echo "fetching $2-$3.jar..."
+    curl -sSfL -o "$LIB/$2-$3.jar" "$MAVEN/$1/$2/$3/$2-$3.jar" || exit 1
+  fi
+}
+
+mkdir -p $LIB
+fetch com/mchange c3p0 0.9.5.5
+fetch com/mchange mchange-commons-java 0.2.19
+fetch com/h2database h2 2.2.224
 
 echo "compiling..."
-javac com/chanceit/*.java
+javac -cp "$LIB/*" com/chanceit/*.java com/chanceit/engine/*.java com/chanceit/journal/*.java com/chanceit/metrics/*.java com/chanceit/timer/*.java com/chanceit/conpool/*.java
 
 echo "runing..."
 sleep 1
 
-java com/chanceit/ChanceItServer2
+java -cp ".:$LIB/*" com/chanceit/ChanceItServer2
@@ -0,0 +1,10 @@
+#!/bin/bash
+#
+# In-process Monte Carlo strategy simulator (see com/chanceit/sim/Simulator.java for the settings).
+#
+#   ./simulate.sh stop:20 stop:25 rolls:3 games=100000000
+
+echo "compiling..."
+javac com/chanceit/engine/*.java com/chanceit/sim/*.java || exit 1
+
+java com.chanceit.sim.Simulator "$@"
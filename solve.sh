@@ -0,0 +1,11 @@
+#!/bin/bash
+#
+# Exact optimal-policy solver (see com/chanceit/sim/Solver.java for the settings).  Writes a decision table that
+# ./simulate.sh can play as optimal:<file>.
+#
+#   ./solve.sh out=chanceit-policy.bin
+
+echo "compiling..."
+javac com/chanceit/engine/*.java com/chanceit/sim/*.java || exit 1
+
+java com.chanceit.sim.Solver "$@"
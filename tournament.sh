@@ -0,0 +1,10 @@
+#!/bin/bash
+#
+# In-process tournament runner (see com/chanceit/sim/Tournament.java for the settings).
+#
+#   ./tournament.sh format=swiss games=1001 stop:20 stop:25 stop:20:30 rolls:3 game_log=tournament.csv
+
+echo "compiling..."
+javac com/chanceit/engine/*.java com/chanceit/sim/*.java || exit 1
+
+java com.chanceit.sim.Tournament "$@"